@@ -0,0 +1,148 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.Files;
+
+/**
+ * Measures the dependency-to-prj.el pipeline as the number of dependencies grows.
+ *
+ * <p>Each stage is measured separately: reading the dependencies (which resolves sources and
+ * javadoc through a stub resolver with configurable latency), building the project file, and
+ * writing it.  Javadoc is referenced lazily so that unpacking is left to
+ * {@link UnpackJarBenchmark}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DependencyPipelineBenchmark {
+  /** The number of artifacts the synthetic project depends on. */
+  @Param({"10", "100", "1000", "10000"})
+  private int mDependencyCount;
+
+  /** How long each resolver call takes, in microseconds. */
+  @Param({"0", "200"})
+  private long mLatencyMicros;
+
+  /** The number of resolver threads. */
+  @Param({"1", "8"})
+  private int mResolverThreads;
+
+  /** A directory for the files the benchmark needs. */
+  private File mTempDir;
+
+  /** The maven environment with the synthetic project. */
+  private StubMavenEnvironment mMavenEnvironment;
+
+  /** The dependencies read from the synthetic project. */
+  private Collection<ProjectDependency> mDependencies;
+
+  /** The project file built from the dependencies. */
+  private JdeProjectFile mProjectFile;
+
+  /**
+   * Creates the synthetic project and precomputes the input of each stage.
+   *
+   * @throws Exception If there is an error.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    mTempDir = Files.createTempDir();
+    File resolvedFile = new File(mTempDir, "resolved.jar");
+    Files.touch(resolvedFile);
+    mMavenEnvironment = new StubMavenEnvironment(mDependencyCount, mLatencyMicros, resolvedFile);
+    mDependencies = readDependencies();
+    mProjectFile = buildProjectFile();
+  }
+
+  /**
+   * Removes the files created for the benchmark.
+   *
+   * @throws IOException If there is an error.
+   */
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  /**
+   * Reads the dependencies of the synthetic project, resolving their sources and javadoc.
+   *
+   * @return The dependencies.
+   * @throws MojoExecutionException If there is an error.
+   */
+  @Benchmark
+  public Collection<ProjectDependency> readDependencies() throws MojoExecutionException {
+    ProjectDependencyFactory dependencyFactory = new ProjectDependencyFactory(
+        mMavenEnvironment, new File(mTempDir, "javadoc"), new UserPathMapping());
+    dependencyFactory.setLazyJavadoc(true);
+    return new ProjectDependencyReader(mMavenEnvironment, dependencyFactory, mResolverThreads)
+        .getDependencies(true);
+  }
+
+  /**
+   * Builds a project file from the dependencies.
+   *
+   * @return The project file.
+   */
+  @Benchmark
+  public JdeProjectFile buildProjectFile() {
+    return new JdeProjectFileBuilder()
+        .withMavenProject(mMavenEnvironment.getCurrentProject())
+        .withDependencies(mDependencies)
+        .build();
+  }
+
+  /**
+   * Writes the project file to a stream that discards its output.
+   *
+   * @throws IOException If there is an error.
+   */
+  @Benchmark
+  public void writeProjectFile() throws IOException {
+    JdeProjectFileWriter writer = new JdeProjectFileWriter(new NullOutputStream());
+    writer.write(mProjectFile);
+    writer.close();
+  }
+
+  /**
+   * An output stream that discards everything written to it.
+   */
+  private static class NullOutputStream extends OutputStream {
+    /** {@inheritDoc} */
+    @Override
+    public void write(int b) {
+      // Discarded.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      // Discarded.
+    }
+  }
+}
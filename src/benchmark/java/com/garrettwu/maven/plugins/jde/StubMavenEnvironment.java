@@ -0,0 +1,216 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * A maven environment for benchmarks, with a synthetic project and a stub resolver.
+ *
+ * <p>The project depends on a configurable number of synthetic artifacts.  The resolver
+ * sleeps for a configurable latency on every call, then "finds" the sources jar of every
+ * other artifact (those with an even index) and the javadoc jar of every artifact; all of
+ * them point at the same existing file.  Unlike the <code>MockMavenEnvironment</code> used
+ * by the unit tests, it can be called any number of times from any number of threads.</p>
+ */
+public class StubMavenEnvironment implements MavenEnvironment {
+  /** The artifactId of each synthetic artifact, followed by its index. */
+  private static final String ARTIFACT_ID_PREFIX = "artifact";
+
+  /** A log that only reports warnings and errors. */
+  private final Log mLog;
+
+  /** The synthetic project. */
+  private final MavenProject mCurrentProject;
+
+  /** Creates classifier artifacts. */
+  private final ArtifactFactory mArtifactFactory;
+
+  /** Resolves classifier artifacts after a delay. */
+  private final ArtifactResolver mArtifactResolver;
+
+  /**
+   * Creates a new <code>StubMavenEnvironment</code> instance.
+   *
+   * @param dependencyCount The number of artifacts the project depends on.
+   * @param latencyMicros How long each resolver call takes, in microseconds.
+   * @param resolvedFile The file every successfully resolved artifact points at.
+   */
+  public StubMavenEnvironment(int dependencyCount, final long latencyMicros,
+      final File resolvedFile) {
+    mLog = new QuietLog();
+
+    Model model = new Model();
+    model.setGroupId("com.example");
+    model.setArtifactId("benchmark");
+    model.setVersion("1.0");
+    Build build = new Build();
+    build.setSourceDirectory("/project/src/main/java");
+    build.setTestSourceDirectory("/project/src/test/java");
+    build.setOutputDirectory("/project/target/classes");
+    build.setTestOutputDirectory("/project/target/test-classes");
+    model.setBuild(build);
+    mCurrentProject = new MavenProject(model);
+    mCurrentProject.setRemoteArtifactRepositories(Collections.emptyList());
+    Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+    for (int i = 0; i < dependencyCount; i++) {
+      Artifact artifact = createArtifact("com.example.group" + (i % 50),
+          ARTIFACT_ID_PREFIX + i, "1." + (i % 10), null);
+      artifact.setFile(new File("/repository/com/example/artifact" + i + ".jar"));
+      artifacts.add(artifact);
+    }
+    mCurrentProject.setArtifacts(artifacts);
+    mCurrentProject.setDependencyArtifacts(artifacts);
+
+    mArtifactFactory = (ArtifactFactory) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class<?>[] {ArtifactFactory.class},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!"createArtifactWithClassifier".equals(method.getName())) {
+              throw new UnsupportedOperationException(method.getName());
+            }
+            return createArtifact((String) args[0], (String) args[1], (String) args[2],
+                (String) args[4]);
+          }
+        });
+
+    mArtifactResolver = (ArtifactResolver) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class<?>[] {ArtifactResolver.class},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+            if (!"resolve".equals(method.getName())) {
+              throw new UnsupportedOperationException(method.getName());
+            }
+            if (latencyMicros > 0) {
+              TimeUnit.MICROSECONDS.sleep(latencyMicros);
+            }
+            Artifact artifact = (Artifact) args[0];
+            boolean available = !"sources".equals(artifact.getClassifier())
+                || hasSources(artifact.getArtifactId());
+            if (!available) {
+              throw new ArtifactNotFoundException("Not in the stub repository", artifact);
+            }
+            artifact.setFile(resolvedFile);
+            return null;
+          }
+        });
+  }
+
+  /**
+   * Determines whether a synthetic artifact has a sources jar: exactly the artifacts with an
+   * even index do, so half of the sources lookups succeed.
+   *
+   * @param artifactId The artifactId of a synthetic artifact.
+   * @return Whether the stub repository has its sources jar.
+   */
+  private static boolean hasSources(String artifactId) {
+    return 0 == Integer.parseInt(artifactId.substring(ARTIFACT_ID_PREFIX.length())) % 2;
+  }
+
+  /**
+   * Creates a synthetic jar artifact.
+   *
+   * @param groupId The groupId.
+   * @param artifactId The artifactId.
+   * @param version The version.
+   * @param classifier The classifier, or null.
+   * @return The artifact.
+   */
+  private static Artifact createArtifact(String groupId, String artifactId, String version,
+      String classifier) {
+    return new DefaultArtifact(groupId, artifactId, VersionRange.createFromVersion(version),
+        Artifact.SCOPE_COMPILE, "jar", classifier, new DefaultArtifactHandler("jar"));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Log getLog() {
+    return mLog;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public MavenProject getCurrentProject() {
+    return mCurrentProject;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ArtifactFactory getArtifactFactory() {
+    return mArtifactFactory;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ArtifactResolver getArtifactResolver() {
+    return mArtifactResolver;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ArtifactRepository getLocalArtifactRepository() {
+    return null;
+  }
+
+  /**
+   * Gets the synthetic artifacts the project depends on.
+   *
+   * @return The artifacts.
+   */
+  @SuppressWarnings("unchecked")
+  public Set<Artifact> getArtifacts() {
+    return mCurrentProject.getArtifacts();
+  }
+
+  /**
+   * A log that drops debug and info messages so they don't dominate the measurements.
+   */
+  private static class QuietLog extends SystemStreamLog {
+    /** {@inheritDoc} */
+    @Override
+    public boolean isDebugEnabled() {
+      return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isInfoEnabled() {
+      return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void debug(CharSequence content) {
+      // Dropped.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void info(CharSequence content) {
+      // Dropped.
+    }
+  }
+}
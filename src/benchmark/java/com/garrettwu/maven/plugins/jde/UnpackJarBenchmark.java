@@ -0,0 +1,121 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.Files;
+
+/**
+ * Measures unpacking generated javadoc jars of varying size into an empty directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UnpackJarBenchmark {
+  /** The number of html pages in the generated javadoc jar. */
+  @Param({"100", "1000", "10000"})
+  private int mPageCount;
+
+  /** The number of threads writing the contents of the jar. */
+  @Param({"1", "4"})
+  private int mUnpackThreads;
+
+  /** A directory for the files the benchmark needs. */
+  private File mTempDir;
+
+  /** The generated javadoc jar. */
+  private File mJarFile;
+
+  /** The directory the jar is unpacked into. */
+  private File mTargetDir;
+
+  /** The unpacker being measured. */
+  private JarUnpacker mJarUnpacker;
+
+  /**
+   * Generates a javadoc jar with pages spread over 20 packages.
+   *
+   * @throws IOException If there is an error.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+    mJarFile = new File(mTempDir, "generated-javadoc.jar");
+    mTargetDir = new File(mTempDir, "javadoc");
+    mJarUnpacker = new JarUnpacker(mUnpackThreads);
+
+    byte[] page = new byte[8 * 1024];
+    for (int i = 0; i < page.length; i++) {
+      page[i] = (byte) ('a' + i % 26);
+    }
+    JarOutputStream jar = new JarOutputStream(new FileOutputStream(mJarFile));
+    try {
+      for (int i = 0; i < mPageCount; i++) {
+        jar.putNextEntry(new JarEntry("com/example/package" + (i % 20) + "/Class" + i + ".html"));
+        jar.write(page);
+        jar.closeEntry();
+      }
+    } finally {
+      jar.close();
+    }
+  }
+
+  /**
+   * Empties the target directory before each unpack.
+   *
+   * @throws IOException If there is an error.
+   */
+  @Setup(Level.Invocation)
+  public void cleanTarget() throws IOException {
+    if (mTargetDir.exists()) {
+      Files.deleteRecursively(mTargetDir);
+    }
+    if (!mTargetDir.mkdirs()) {
+      throw new IOException("Could not create directory: " + mTargetDir.getPath());
+    }
+  }
+
+  /**
+   * Removes the files created for the benchmark.
+   *
+   * @throws IOException If there is an error.
+   */
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  /**
+   * Unpacks the generated jar.
+   *
+   * @return The number of bytes written.
+   * @throws IOException If there is an error.
+   */
+  @Benchmark
+  public long unpackJar() throws IOException {
+    return mJarUnpacker.unpack(mJarFile, mTargetDir);
+  }
+}
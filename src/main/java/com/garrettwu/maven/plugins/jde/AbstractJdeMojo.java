@@ -0,0 +1,1162 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * Base class of the goals of this plugin, holding the parameters that control how the
+ * sources and javadoc of project dependencies are resolved.
+ */
+public abstract class AbstractJdeMojo extends AbstractMojo {
+  /** The resolver backend using the Maven 2 artifact resolver. */
+  private static final String DEFAULT_BACKEND = "default";
+
+  /** The resolver backend using the Maven 3 repository system. */
+  private static final String AETHER_BACKEND = "aether";
+
+  /**
+   * A factory for maven artifacts.
+   *
+   * @component
+   */
+  private ArtifactFactory mArtifactFactory;
+
+  /**
+   * A utility that resolves artifacts (possibly downloading into the local repository).
+   *
+   * @component
+   */
+  private ArtifactResolver mArtifactResolver;
+
+  /**
+   * The local maven repository.
+   *
+   * @parameter default-value="${localRepository}"
+   * @required
+   * @readonly
+   */
+  private ArtifactRepository mLocalArtifactRepository;
+
+  /**
+   * The maven project this mojo is working on.
+   *
+   * @parameter property="mavenProject" default-value="${project}"
+   * @required
+   * @readonly
+   */
+  private MavenProject mMavenProject;
+
+  /**
+   * The current maven session, used to share resolved dependencies between modules.
+   *
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession mMavenSession;
+
+  /**
+   * Directory where javadocs for dependencies should unpacked.
+   *
+   * @parameter property="javadocDir" expression="${jde.javadoc.dir}" default-value="${basedir}/.jde/javadoc"
+   * @required
+   */
+  private File mJavadocDir;
+
+  /**
+   * A java properties file containing a mapping from groupId:artifactId:version to its javadoc.
+   *
+   * @parameter property="javadocPathsFile" expression="${jde.javadoc.paths}" default-value="${env.HOME}/.jde/javadoc.properties"
+   * @required
+   */
+  private File mJavadocPathsFile;
+
+  /**
+   * Include transitive dependencies in generated prj.el.
+   *
+   * @parameter property="transitiveMode" expression="${jde.transitive.mode}" default-value="false"
+   * @required
+   */
+  private boolean mTransitiveMode;
+
+  /**
+   * Reference javadoc jars in place instead of unpacking them into the javadoc directory.
+   *
+   * @parameter property="lazyJavadoc" expression="${jde.javadoc.lazy}" default-value="false"
+   * @required
+   */
+  private boolean mLazyJavadoc;
+
+  /**
+   * A javadoc store shared by every project, such as ~/.jde/store.  When set, each javadoc
+   * jar is unpacked once into the store instead of into the javadoc directory.
+   *
+   * @parameter property="javadocStore" expression="${jde.javadoc.store}"
+   */
+  private File mJavadocStore;
+
+  /**
+   * The size, in megabytes, the shared javadoc store is trimmed to.  Zero disables eviction.
+   *
+   * @parameter property="javadocStoreMaxSize" expression="${jde.javadoc.store.max.size}" default-value="4096"
+   * @required
+   */
+  private int mJavadocStoreMaxSize;
+
+  /**
+   * The number of threads used to write the contents of each javadoc jar being unpacked.
+   *
+   * @parameter property="unpackThreads" expression="${jde.unpack.threads}" default-value="1"
+   * @required
+   */
+  private int mUnpackThreads;
+
+  /**
+   * A java properties file recording sources and javadoc jars that could not be resolved.
+   *
+   * @parameter property="missingCacheFile" expression="${jde.missing.cache}" default-value="${env.HOME}/.jde/missing.properties"
+   */
+  private File mMissingCacheFile;
+
+  /**
+   * How long, in hours, a failed sources or javadoc lookup is remembered.  Zero disables the cache.
+   *
+   * @parameter property="missingCacheTtl" expression="${jde.missing.cache.ttl}" default-value="24"
+   * @required
+   */
+  private int mMissingCacheTtl;
+
+  /**
+   * How long, in seconds, a single attempt to resolve a sources or javadoc jar from a remote
+   * repository may take.  Zero lets attempts run without a timeout.
+   *
+   * @parameter property="resolveTimeout" expression="${jde.resolve.timeout}" default-value="30"
+   * @required
+   */
+  private int mResolveTimeout;
+
+  /**
+   * How long, in seconds, sources and javadoc jars may be resolved for in total.  Jars not
+   * resolved by then are left out of the project file.  Zero disables the deadline.
+   *
+   * @parameter property="resolveDeadline" expression="${jde.resolve.deadline}" default-value="300"
+   * @required
+   */
+  private int mResolveDeadline;
+
+  /**
+   * The number of times a failed attempt to resolve a jar is retried.  A jar whose attempt
+   * timed out is not retried until the next run.
+   *
+   * @parameter property="resolveRetries" expression="${jde.resolve.retries}" default-value="2"
+   * @required
+   */
+  private int mResolveRetries;
+
+  /**
+   * The delay, in milliseconds, before the first retry; it doubles with each retry.
+   *
+   * @parameter property="resolveBackoff" expression="${jde.resolve.backoff}" default-value="500"
+   * @required
+   */
+  private int mResolveBackoff;
+
+  /**
+   * The number of consecutive failures after which a remote repository is no longer queried
+   * for sources and javadoc.  Zero always queries it.
+   *
+   * @parameter property="repositoryFailureThreshold" expression="${jde.repository.failure.threshold}" default-value="3"
+   * @required
+   */
+  private int mRepositoryFailureThreshold;
+
+  /**
+   * How sources and javadoc jars are resolved: "default" resolves them one at a time with the
+   * Maven 2 artifact resolver; "aether" resolves them in one parallel batch with the Maven 3
+   * repository system, falling back to "default" on older versions of maven.
+   *
+   * @parameter property="resolverBackend" expression="${jde.resolver.backend}" default-value="default"
+   * @required
+   */
+  private String mResolverBackend;
+
+  /**
+   * The scopes of the dependencies to resolve sources and javadoc for, separated by commas,
+   * such as "compile,provided".  By default, every scope is resolved.
+   *
+   * @parameter property="resolveScopes" expression="${jde.resolve.scopes}" default-value=""
+   */
+  private String mResolveScopes;
+
+  /**
+   * Patterns of the dependencies to resolve sources and javadoc for, separated by commas.
+   * Each is groupId or groupId:artifactId, where * and ? are wildcards.  By default, every
+   * dependency is resolved.
+   *
+   * @parameter property="resolveIncludes" expression="${jde.resolve.includes}" default-value=""
+   */
+  private String mResolveIncludes;
+
+  /**
+   * Patterns of the dependencies not to resolve sources and javadoc for, separated by commas,
+   * in the same form as the includes.
+   *
+   * @parameter property="resolveExcludes" expression="${jde.resolve.excludes}" default-value=""
+   */
+  private String mResolveExcludes;
+
+  /** The filter compiled from the scopes, includes, and excludes by validateParameters(). */
+  private ResolutionFilter mResolutionFilter;
+
+  /**
+   * Only resolve the dependencies added or changed since the previous run, reusing what it
+   * recorded in the .jde directory of the project for the others.
+   *
+   * @parameter property="delta" expression="${jde.delta}" default-value="true"
+   * @required
+   */
+  private boolean mDelta;
+
+  /**
+   * Write a snapshot of the project file to the .jde directory of the project, so that
+   * ProjectFileRegenerator can rewrite it without maven.
+   *
+   * @parameter property="snapshot" expression="${jde.snapshot}" default-value="true"
+   * @required
+   */
+  private boolean mSnapshot;
+
+  /**
+   * An optional file to write a JSON report of timings and counters to.
+   *
+   * @parameter property="metricsReport" expression="${jde.metrics.report}"
+   */
+  private File mMetricsReport;
+
+  /**
+   * Sets the maven project this mojo works over.
+   *
+   * <p>The plugin framework will call this method with the correct maven project.</p>
+   *
+   * @param mavenProject The maven project.
+   */
+  public void setMavenProject(MavenProject mavenProject) {
+    mMavenProject = mavenProject;
+  }
+
+  /**
+   * Sets the maven session this mojo runs in.
+   *
+   * <p>The plugin framework will call this method with the current session.</p>
+   *
+   * @param mavenSession The maven session.
+   */
+  public void setMavenSession(MavenSession mavenSession) {
+    mMavenSession = mavenSession;
+  }
+
+  /**
+   * The directory used to unpack the javadoc for project dependencies.
+   *
+   * @param javadocDir The directory to unpack javadoc into.
+   */
+  public void setJavadocDir(File javadocDir) {
+    mJavadocDir = javadocDir;
+  }
+
+  /**
+   * The java properties file containing a mapping from artifact name
+   * (groupId:artifactId:version) to its javadoc location.
+   *
+   * <p>The javadoc location may be a filesystem path or a URL.</p>
+   *
+   * @param javadocPathsFile a <code>File</code> value
+   */
+  public void setJavadocPathsFile(File javadocPathsFile) {
+    mJavadocPathsFile = javadocPathsFile;
+  }
+
+  /**
+   * Determines whether to include transitive dependencies in generated prj.el
+   *
+   * @param transitiveMode whether transitive mode should be enabled
+   */
+  public void setTransitiveMode(boolean transitiveMode) {
+    mTransitiveMode = transitiveMode;
+  }
+
+  /**
+   * Determines whether javadoc jars are referenced in place instead of being unpacked.
+   *
+   * @param lazyJavadoc whether lazy javadoc mode should be enabled
+   */
+  public void setLazyJavadoc(boolean lazyJavadoc) {
+    mLazyJavadoc = lazyJavadoc;
+  }
+
+  /**
+   * Sets the javadoc store shared by every project.
+   *
+   * @param javadocStore The root of the store, or null to unpack into the javadoc directory.
+   */
+  public void setJavadocStore(File javadocStore) {
+    mJavadocStore = javadocStore;
+  }
+
+  /**
+   * Sets the size, in megabytes, the shared javadoc store is trimmed to.
+   *
+   * @param javadocStoreMaxSize The maximum size in megabytes, or zero to disable eviction.
+   */
+  public void setJavadocStoreMaxSize(int javadocStoreMaxSize) {
+    mJavadocStoreMaxSize = javadocStoreMaxSize;
+  }
+
+  /**
+   * Sets the number of threads used to write the contents of each javadoc jar.
+   *
+   * @param unpackThreads The number of unpack threads.
+   */
+  public void setUnpackThreads(int unpackThreads) {
+    mUnpackThreads = unpackThreads;
+  }
+
+  /**
+   * Sets the file used to remember sources and javadoc jars that could not be resolved.
+   *
+   * @param missingCacheFile The cache file, or null to keep the cache in memory only.
+   */
+  public void setMissingCacheFile(File missingCacheFile) {
+    mMissingCacheFile = missingCacheFile;
+  }
+
+  /**
+   * Sets how long, in hours, a failed sources or javadoc lookup is remembered.
+   *
+   * @param missingCacheTtl The time-to-live in hours, or zero to disable the cache.
+   */
+  public void setMissingCacheTtl(int missingCacheTtl) {
+    mMissingCacheTtl = missingCacheTtl;
+  }
+
+  /**
+   * Sets the file to write a JSON report of timings and counters to.
+   *
+   * @param metricsReport The report file, or null to only log a summary.
+   */
+  public void setMetricsReport(File metricsReport) {
+    mMetricsReport = metricsReport;
+  }
+
+  /**
+   * Sets how long a single attempt to resolve a jar may take.
+   *
+   * @param resolveTimeout The timeout in seconds, or zero for none.
+   */
+  public void setResolveTimeout(int resolveTimeout) {
+    mResolveTimeout = resolveTimeout;
+  }
+
+  /**
+   * Sets how long jars may be resolved for in total.
+   *
+   * @param resolveDeadline The deadline in seconds, or zero for none.
+   */
+  public void setResolveDeadline(int resolveDeadline) {
+    mResolveDeadline = resolveDeadline;
+  }
+
+  /**
+   * Sets the number of times a failed attempt to resolve a jar is retried.
+   *
+   * @param resolveRetries The number of retries.
+   */
+  public void setResolveRetries(int resolveRetries) {
+    mResolveRetries = resolveRetries;
+  }
+
+  /**
+   * Sets the delay before the first retry.
+   *
+   * @param resolveBackoff The delay in milliseconds.
+   */
+  public void setResolveBackoff(int resolveBackoff) {
+    mResolveBackoff = resolveBackoff;
+  }
+
+  /**
+   * Sets the number of consecutive failures after which a repository is no longer queried.
+   *
+   * @param repositoryFailureThreshold The number of failures, or zero to always query.
+   */
+  public void setRepositoryFailureThreshold(int repositoryFailureThreshold) {
+    mRepositoryFailureThreshold = repositoryFailureThreshold;
+  }
+
+  /**
+   * Sets how sources and javadoc jars are resolved.
+   *
+   * @param resolverBackend "default" or "aether".
+   */
+  public void setResolverBackend(String resolverBackend) {
+    mResolverBackend = resolverBackend;
+  }
+
+  /**
+   * Sets the scopes of the dependencies to resolve sources and javadoc for.
+   *
+   * @param resolveScopes The scopes separated by commas, or empty for every scope.
+   */
+  public void setResolveScopes(String resolveScopes) {
+    mResolveScopes = resolveScopes;
+  }
+
+  /**
+   * Sets the patterns of the dependencies to resolve sources and javadoc for.
+   *
+   * @param resolveIncludes The patterns separated by commas, or empty for every dependency.
+   */
+  public void setResolveIncludes(String resolveIncludes) {
+    mResolveIncludes = resolveIncludes;
+  }
+
+  /**
+   * Sets the patterns of the dependencies not to resolve sources and javadoc for.
+   *
+   * @param resolveExcludes The patterns separated by commas.
+   */
+  public void setResolveExcludes(String resolveExcludes) {
+    mResolveExcludes = resolveExcludes;
+  }
+
+  /**
+   * Sets whether only the dependencies added or changed since the previous run are resolved.
+   *
+   * @param delta Whether to reuse the dependencies resolved by the previous run.
+   */
+  public void setDelta(boolean delta) {
+    mDelta = delta;
+  }
+
+  /**
+   * Sets whether a snapshot of the project file is written for ProjectFileRegenerator.
+   *
+   * @param snapshot Whether to write a snapshot.
+   */
+  public void setSnapshot(boolean snapshot) {
+    mSnapshot = snapshot;
+  }
+
+  /**
+   * Gets the maven project this mojo works over.
+   *
+   * @return The maven project.
+   */
+  protected MavenProject getMavenProject() {
+    return mMavenProject;
+  }
+
+  /**
+   * Gets the current maven session.
+   *
+   * @return The maven session, or null if not known.
+   */
+  protected MavenSession getMavenSession() {
+    return mMavenSession;
+  }
+
+  /**
+   * Gets the cache of dependencies shared by every execution in the current maven session.
+   *
+   * @return The cache, or null if the session is not known.
+   */
+  protected SessionResolutionCache getSessionResolutionCache() {
+    return null == mMavenSession ? null : SessionResolutionCache.forSession(mMavenSession);
+  }
+
+  /**
+   * Gets the local maven repository.
+   *
+   * @return The local repository.
+   */
+  protected ArtifactRepository getLocalArtifactRepository() {
+    return mLocalArtifactRepository;
+  }
+
+  /**
+   * Gets the directory javadoc is unpacked into.
+   *
+   * @return The javadoc directory.
+   */
+  protected File getJavadocDir() {
+    return mJavadocDir;
+  }
+
+  /**
+   * Gets the java properties file mapping artifact names to their javadoc.
+   *
+   * @return The javadoc paths file.
+   */
+  protected File getJavadocPathsFile() {
+    return mJavadocPathsFile;
+  }
+
+  /**
+   * Gets whether transitive dependencies are included.
+   *
+   * @return Whether transitive mode is enabled.
+   */
+  protected boolean isTransitiveMode() {
+    return mTransitiveMode;
+  }
+
+  /**
+   * Gets whether javadoc jars are referenced in place instead of being unpacked.
+   *
+   * @return Whether lazy javadoc mode is enabled.
+   */
+  protected boolean isLazyJavadoc() {
+    return mLazyJavadoc;
+  }
+
+  /**
+   * Gets the root of the javadoc store shared by every project.
+   *
+   * @return The javadoc store, or null if javadoc is unpacked into the javadoc directory.
+   */
+  protected File getJavadocStore() {
+    return mJavadocStore;
+  }
+
+  /**
+   * Gets the filter deciding which dependencies get their sources and javadoc resolved.
+   *
+   * @return The filter, compiled by {@link #validateParameters()}.
+   */
+  protected ResolutionFilter getResolutionFilter() {
+    return mResolutionFilter;
+  }
+
+  /**
+   * Checks the parameters shared by all goals of this plugin.
+   *
+   * @throws MojoExecutionException If a parameter is invalid.
+   */
+  protected void validateParameters() throws MojoExecutionException {
+    // Make sure we know where to unpack javadoc files.
+    if (null == mJavadocDir) {
+      throw new MojoExecutionException("Required property ${jde.javadoc.dir} was not set.");
+    }
+    if (mUnpackThreads < 1) {
+      throw new MojoExecutionException("Property ${jde.unpack.threads} must be at least 1.");
+    }
+    if (mMissingCacheTtl < 0) {
+      throw new MojoExecutionException("Property ${jde.missing.cache.ttl} may not be negative.");
+    }
+    if (mJavadocStoreMaxSize < 0) {
+      throw new MojoExecutionException(
+          "Property ${jde.javadoc.store.max.size} may not be negative.");
+    }
+    if (!DEFAULT_BACKEND.equals(mResolverBackend) && !AETHER_BACKEND.equals(mResolverBackend)) {
+      throw new MojoExecutionException("Property ${jde.resolver.backend} must be \""
+          + DEFAULT_BACKEND + "\" or \"" + AETHER_BACKEND + "\".");
+    }
+    if (mResolveTimeout < 0) {
+      throw new MojoExecutionException("Property ${jde.resolve.timeout} may not be negative.");
+    }
+    if (mResolveDeadline < 0) {
+      throw new MojoExecutionException("Property ${jde.resolve.deadline} may not be negative.");
+    }
+    if (mResolveRetries < 0) {
+      throw new MojoExecutionException("Property ${jde.resolve.retries} may not be negative.");
+    }
+    if (mResolveBackoff < 0) {
+      throw new MojoExecutionException("Property ${jde.resolve.backoff} may not be negative.");
+    }
+    if (mRepositoryFailureThreshold < 0) {
+      throw new MojoExecutionException(
+          "Property ${jde.repository.failure.threshold} may not be negative.");
+    }
+    try {
+      mResolutionFilter = new ResolutionFilter(splitList(mResolveScopes),
+          splitList(mResolveIncludes), splitList(mResolveExcludes));
+    } catch (IllegalArgumentException e) {
+      throw new MojoExecutionException("Property ${jde.resolve.includes} or "
+          + "${jde.resolve.excludes} is malformed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Determines whether the javadoc directory may hold javadoc unpacked for other projects.
+   * The javadoc of artifacts removed from a project is only deleted if it is not shared.
+   *
+   * @param mavenProject The project.
+   * @return Whether the javadoc directory is shared; by default, whether it is outside the
+   *     base directory of the project.
+   */
+  protected boolean isJavadocDirShared(MavenProject mavenProject) {
+    File basedir = mavenProject.getBasedir();
+    return null == basedir
+        || !mJavadocDir.getAbsolutePath().startsWith(basedir.getAbsolutePath() + File.separator);
+  }
+
+  /**
+   * Configures the dependency factory before dependencies are resolved.  Goals override this
+   * to apply their own settings; the default does nothing.
+   *
+   * @param dependencyFactory The dependency factory.
+   */
+  protected void configureDependencyFactory(ProjectDependencyFactory dependencyFactory) {
+  }
+
+  /**
+   * Resolves the sources and javadoc of the dependencies of the project this mojo works over.
+   *
+   * @param transitive Whether to include transitive dependencies.
+   * @param resolverThreads The number of dependencies to resolve concurrently.
+   * @param metrics Records timings and counters.
+   * @return The resolved dependencies.
+   * @throws MojoExecutionException If the user path mapping could not be loaded.
+   */
+  protected Collection<ProjectDependency> resolveDependencies(boolean transitive,
+      int resolverThreads, ResolutionMetrics metrics) throws MojoExecutionException {
+    return resolveDependencies(mMavenProject, transitive, resolverThreads, metrics);
+  }
+
+  /**
+   * Resolves the sources and javadoc of the dependencies of a project.
+   *
+   * <p>The missing artifact cache, javadoc index, and resolution state are loaded before and
+   * saved after resolving, and the shared javadoc store, if any, is trimmed to its maximum
+   * size.  The unpacked javadoc of artifacts removed from the project is deleted.</p>
+   *
+   * @param mavenProject The project, with its dependencies resolved.
+   * @param transitive Whether to include transitive dependencies.
+   * @param resolverThreads The number of dependencies to resolve concurrently.
+   * @param metrics Records timings and counters.
+   * @return The resolved dependencies.
+   * @throws MojoExecutionException If the user path mapping could not be loaded.
+   */
+  protected Collection<ProjectDependency> resolveDependencies(MavenProject mavenProject,
+      boolean transitive, int resolverThreads, ResolutionMetrics metrics)
+      throws MojoExecutionException {
+    getLog().debug("Reading local maven environment...");
+    MavenEnvironment mavenEnvironment = null;
+    if (AETHER_BACKEND.equals(mResolverBackend)) {
+      mavenEnvironment = createAetherEnvironment(mavenProject);
+    }
+    if (null == mavenEnvironment) {
+      mavenEnvironment = new DefaultMavenEnvironment(
+          getLog(), mavenProject, mArtifactFactory, mArtifactResolver, mLocalArtifactRepository);
+    }
+
+    UserPathMapping javadocUserPathMapping = new UserPathMapping();
+    if (null != mJavadocPathsFile && mJavadocPathsFile.exists()) {
+      getLog().info("Loading user path mapping for javadocs: " + mJavadocPathsFile.getPath());
+      try {
+        loadUserPathMapping(javadocUserPathMapping, mJavadocPathsFile);
+      } catch (IOException e) {
+        throw new MojoExecutionException(
+            "Unable to load javadoc paths from " + mJavadocPathsFile.getPath(), e);
+      }
+    } else {
+      getLog().debug("No user path mapping for javadocs specified.");
+    }
+
+    MissingArtifactCache missingArtifactCache
+        = new MissingArtifactCache(TimeUnit.HOURS.toMillis(mMissingCacheTtl));
+    if (missingArtifactCache.isEnabled() && null != mMissingCacheFile
+        && mMissingCacheFile.exists()) {
+      getLog().debug("Loading missing artifact cache: " + mMissingCacheFile.getPath());
+      try {
+        loadMissingArtifactCache(missingArtifactCache, mMissingCacheFile);
+      } catch (IOException e) {
+        getLog().warn("Ignoring unreadable missing artifact cache " + mMissingCacheFile.getPath());
+      }
+    }
+
+    JavadocIndex javadocIndex = new JavadocIndex();
+    File javadocIndexFile = new File(mJavadocDir, JavadocIndex.FILE_NAME);
+    if (javadocIndexFile.exists()) {
+      try {
+        loadJavadocIndex(javadocIndex, javadocIndexFile);
+      } catch (IOException e) {
+        getLog().warn("Ignoring unreadable javadoc index " + javadocIndexFile.getPath());
+      }
+    }
+
+    ResolutionState resolutionState = null;
+    File resolutionStateFile = null;
+    if (mDelta && null != mavenProject.getBasedir()) {
+      resolutionState = new ResolutionState(TimeUnit.HOURS.toMillis(mMissingCacheTtl));
+      resolutionStateFile = new File(new File(mavenProject.getBasedir(), ".jde"),
+          transitive ? ResolutionState.TRANSITIVE_FILE_NAME : ResolutionState.FILE_NAME);
+      if (resolutionStateFile.exists()) {
+        try {
+          loadResolutionState(resolutionState, resolutionStateFile);
+        } catch (IOException e) {
+          getLog().warn("Ignoring unreadable resolution state " + resolutionStateFile.getPath());
+        }
+      }
+    }
+
+    getLog().info("Resolving project dependencies...");
+    long startNanos = System.nanoTime();
+    ProjectDependencyFactory dependencyFactory
+        = new ProjectDependencyFactory(mavenEnvironment, mJavadocDir, javadocUserPathMapping);
+    dependencyFactory.setMissingArtifactCache(missingArtifactCache);
+    dependencyFactory.setLazyJavadoc(mLazyJavadoc);
+    dependencyFactory.setUnpackThreads(mUnpackThreads);
+    dependencyFactory.setMetrics(metrics);
+    dependencyFactory.setJavadocIndex(javadocIndex);
+    List<String> pathRoots = new ArrayList<String>();
+    pathRoots.add(mLocalArtifactRepository.getBasedir());
+    pathRoots.add(mJavadocDir.getPath());
+    JavadocStore javadocStore = null;
+    if (null != mJavadocStore) {
+      javadocStore = new JavadocStore(mJavadocStore, mJavadocStoreMaxSize * 1024L * 1024L);
+      dependencyFactory.setJavadocStore(javadocStore);
+      pathRoots.add(mJavadocStore.getPath());
+    }
+    dependencyFactory.setPathRoots(pathRoots);
+    dependencyFactory.setSessionResolutionCache(getSessionResolutionCache());
+    ResolutionPolicy resolutionPolicy = new ResolutionPolicy(getLog(),
+        TimeUnit.SECONDS.toMillis(mResolveTimeout), TimeUnit.SECONDS.toMillis(mResolveDeadline),
+        mResolveRetries, mResolveBackoff, mRepositoryFailureThreshold);
+    dependencyFactory.setResolutionPolicy(resolutionPolicy);
+    dependencyFactory.setResolutionState(resolutionState);
+    if (null != mResolutionFilter && !mResolutionFilter.isEmpty()) {
+      dependencyFactory.setResolutionFilter(mResolutionFilter);
+    }
+    if (mavenEnvironment instanceof BatchArtifactResolver) {
+      dependencyFactory.setBatchArtifactResolver((BatchArtifactResolver) mavenEnvironment);
+    }
+    configureDependencyFactory(dependencyFactory);
+    ProjectDependencyReader dependencyReader
+        = new ProjectDependencyReader(mavenEnvironment, dependencyFactory, resolverThreads);
+    Collection<ProjectDependency> dependencies;
+    try {
+      dependencies = dependencyReader.getDependencies(transitive);
+    } finally {
+      resolutionPolicy.shutdown();
+    }
+    metrics.recordPhase("resolve", startNanos);
+
+    if (null != resolutionState) {
+      cleanupRemovedJavadoc(mavenProject, resolutionState, javadocIndex);
+      if (resolutionState.isModified()) {
+        try {
+          storeResolutionState(resolutionState, resolutionStateFile);
+        } catch (IOException e) {
+          getLog().warn("Unable to save resolution state to " + resolutionStateFile.getPath());
+        }
+      }
+    }
+
+    if (javadocIndex.isModified()) {
+      try {
+        storeJavadocIndex(javadocIndex, javadocIndexFile);
+      } catch (IOException e) {
+        getLog().warn("Unable to save javadoc index to " + javadocIndexFile.getPath());
+      }
+    }
+
+    if (null != javadocStore) {
+      // Keep everything the project file references, including entries that another module of
+      // this session unpacked or an earlier run recorded.
+      for (ProjectDependency dependency : dependencies) {
+        String javadocPath = dependency.getJavadocPath();
+        if (null != javadocPath && javadocStore.contains(javadocPath)) {
+          javadocStore.use(new File(javadocPath));
+        }
+      }
+      try {
+        long evicted = javadocStore.evict();
+        if (evicted > 0) {
+          getLog().info("Evicted " + evicted + " bytes of javadoc from " + mJavadocStore.getPath());
+        }
+      } catch (IOException e) {
+        getLog().warn("Unable to evict javadoc from " + mJavadocStore.getPath());
+      }
+    }
+
+    if (missingArtifactCache.isModified() && null != mMissingCacheFile) {
+      try {
+        storeMissingArtifactCache(missingArtifactCache, mMissingCacheFile);
+      } catch (IOException e) {
+        getLog().warn("Unable to save missing artifact cache to " + mMissingCacheFile.getPath());
+      }
+    }
+    return dependencies;
+  }
+
+  /**
+   * Deletes the javadoc unpacked for artifacts removed from a project since the previous run.
+   *
+   * <p>Javadoc is only deleted from a javadoc directory that is not shared with other
+   * projects, and only for artifacts that are no longer dependencies of the project at all
+   * (not just left out of this run, as transitive dependencies are in direct mode).</p>
+   *
+   * @param mavenProject The project.
+   * @param resolutionState The resolution state, with the removed artifacts queued.
+   * @param javadocIndex The index of the javadoc directories of the project.
+   */
+  private void cleanupRemovedJavadoc(MavenProject mavenProject,
+      ResolutionState resolutionState, JavadocIndex javadocIndex) {
+    Set<String> pendingCleanup = resolutionState.getPendingCleanup();
+    if (pendingCleanup.isEmpty() || isJavadocDirShared(mavenProject)) {
+      return;
+    }
+    Set<String> artifactNames = new HashSet<String>();
+    for (Object artifact : mavenProject.getArtifacts()) {
+      artifactNames.add(Artifacts.getName((Artifact) artifact));
+    }
+    for (String artifactId : pendingCleanup) {
+      String artifactName = Artifacts.getNameOfId(artifactId);
+      String relativeDir = javadocIndex.get(artifactName);
+      if (null != relativeDir && !artifactNames.contains(artifactName)) {
+        File artifactJavadocDir = new File(mJavadocDir, relativeDir);
+        getLog().info("Removing javadoc of removed dependency " + artifactName + ": "
+            + artifactJavadocDir.getPath());
+        try {
+          if (artifactJavadocDir.exists()) {
+            Files.deleteRecursively(artifactJavadocDir);
+          }
+        } catch (IOException e) {
+          getLog().warn("Unable to remove " + artifactJavadocDir.getPath());
+          continue;
+        }
+        javadocIndex.remove(artifactName);
+      }
+      resolutionState.removePendingCleanup(artifactId);
+    }
+  }
+
+  /**
+   * Creates a maven environment that resolves jars with the Maven 3 repository system.
+   *
+   * @param mavenProject The project.
+   * @return The environment, or null if the repository system is not available.
+   */
+  private MavenEnvironment createAetherEnvironment(MavenProject mavenProject) {
+    MavenEnvironment mavenEnvironment = null;
+    if (null != mMavenSession) {
+      try {
+        mavenEnvironment = AetherMavenEnvironment.create(getLog(), mavenProject,
+            mArtifactFactory, mArtifactResolver, mLocalArtifactRepository, mMavenSession);
+      } catch (LinkageError e) {
+        // The Aether classes are provided by Maven 3, and missing from Maven 2.
+        getLog().debug("Aether is not available: " + e);
+      }
+    }
+    if (null == mavenEnvironment) {
+      getLog().warn("The aether resolver backend needs Maven 3; using the default backend.");
+    }
+    return mavenEnvironment;
+  }
+
+  /**
+   * Builds a JDE project file for a project and writes it, along with a snapshot of what it
+   * was built from.
+   *
+   * @param mavenProject The project.
+   * @param dependencies The resolved dependencies of the project.
+   * @param projectFile The prj.el file to write.
+   * @param metrics Records timings.
+   * @throws MojoExecutionException If the file could not be written.
+   */
+  protected void writeProjectFile(MavenProject mavenProject,
+      Collection<ProjectDependency> dependencies, File projectFile, ResolutionMetrics metrics)
+      throws MojoExecutionException {
+    getLog().info("Building a JDE project file...");
+    long startNanos = System.nanoTime();
+    JdeProjectFileBuilder jdeProjectFileBuilder = new JdeProjectFileBuilder()
+        .withMavenProject(mavenProject)
+        .withDependencies(dependencies);
+    JdeProjectFile jdeProjectFile = jdeProjectFileBuilder.build();
+    metrics.recordPhase("build", startNanos);
+
+    getLog().info("Writing the JDE project file...");
+    startNanos = System.nanoTime();
+    try {
+      if (!JdeProjectFileWriter.writeFile(jdeProjectFile, projectFile)) {
+        getLog().info("JDE project file is unchanged: " + projectFile.getPath());
+      }
+    } catch (IOException e) {
+      throw new MojoExecutionException(
+          "Error writing project file to " + projectFile.getPath(), e);
+    }
+    metrics.recordPhase("write", startNanos);
+
+    if (mSnapshot && null != mavenProject.getBasedir()) {
+      File snapshotFile = new File(new File(mavenProject.getBasedir(), ".jde"),
+          ProjectSnapshot.FILE_NAME);
+      try {
+        writeSnapshot(mavenProject, dependencies, projectFile, snapshotFile);
+      } catch (IOException e) {
+        getLog().warn("Unable to write snapshot to " + snapshotFile.getPath());
+      }
+    }
+  }
+
+  /**
+   * Writes a snapshot of a project file, for rewriting it without maven.
+   *
+   * @param mavenProject The project.
+   * @param dependencies The resolved dependencies of the project.
+   * @param projectFile The prj.el file.
+   * @param snapshotFile The snapshot file to write.
+   * @throws IOException If there is an error.
+   */
+  private void writeSnapshot(MavenProject mavenProject,
+      Collection<ProjectDependency> dependencies, File projectFile, File snapshotFile)
+      throws IOException {
+    // Note which javadoc came from the user mapping, so the regenerator can drop it if the
+    // mapping is removed.
+    UserPathMapping javadocUserPathMapping = new UserPathMapping();
+    if (null != mJavadocPathsFile && mJavadocPathsFile.exists()) {
+      loadUserPathMapping(javadocUserPathMapping, mJavadocPathsFile);
+    }
+    List<String> mappedArtifacts = new ArrayList<String>();
+    for (ProjectDependency dependency : dependencies) {
+      String artifactName = dependency.getGroupId() + ":" + dependency.getArtifactId() + ":"
+          + dependency.getVersion();
+      if (javadocUserPathMapping.contains(artifactName)) {
+        mappedArtifacts.add(artifactName);
+      }
+    }
+
+    Build build = mavenProject.getBuild();
+    final ProjectSnapshot snapshot = new ProjectSnapshot(projectFile.getAbsoluteFile(),
+        null == mJavadocPathsFile ? null : mJavadocPathsFile.getAbsoluteFile(),
+        Arrays.asList(build.getSourceDirectory(), build.getTestSourceDirectory()),
+        Arrays.asList(build.getOutputDirectory(), build.getTestOutputDirectory()),
+        dependencies, mappedArtifacts);
+    AtomicFileOutputStream.replace(snapshotFile, new AtomicFileOutputStream.Contents() {
+      @Override
+      public void writeTo(OutputStream outputStream) throws IOException {
+        snapshot.write(outputStream);
+      }
+    });
+  }
+
+  /**
+   * Logs a summary of the metrics, and writes them to the metrics report if one is set.
+   *
+   * @param metrics The metrics to report.
+   */
+  protected void reportMetrics(ResolutionMetrics metrics) {
+    metrics.logSummary(getLog());
+    if (null != mMetricsReport) {
+      try {
+        writeMetricsReport(metrics, mMetricsReport);
+      } catch (IOException e) {
+        getLog().warn("Unable to write metrics report to " + mMetricsReport.getPath());
+      }
+    }
+  }
+
+  /**
+   * Splits a parameter holding a list separated by commas.
+   *
+   * @param value The parameter, or null if not set.
+   * @return The elements of the list, without whitespace or empty elements.
+   */
+  private static List<String> splitList(String value) {
+    if (null == value) {
+      return Collections.emptyList();
+    }
+    return Lists.newArrayList(Splitter.on(',').trimResults().omitEmptyStrings().split(value));
+  }
+
+  /**
+   * Loads a user path file.
+   *
+   * @param userPathMapping The target mapping for the loaded file.
+   * @param userPathFile The file containing the mapping to load.
+   * @return The user path mapping loaded from the file.
+   * @throws IOException If there is an error.
+   */
+  private static void loadUserPathMapping(UserPathMapping userPathMapping, File userPathFile)
+      throws IOException {
+    FileInputStream fileInputStream = null;
+    try {
+      fileInputStream = new FileInputStream(userPathFile);
+      userPathMapping.load(fileInputStream);
+    } finally {
+      if (null != fileInputStream) {
+        fileInputStream.close();
+      }
+    }
+  }
+
+  /**
+   * Loads a missing artifact cache file.
+   *
+   * @param missingArtifactCache The target cache for the loaded file.
+   * @param cacheFile The file containing the cache to load.
+   * @throws IOException If there is an error.
+   */
+  private static void loadMissingArtifactCache(MissingArtifactCache missingArtifactCache,
+      File cacheFile) throws IOException {
+    FileInputStream fileInputStream = null;
+    try {
+      fileInputStream = new FileInputStream(cacheFile);
+      missingArtifactCache.load(fileInputStream);
+    } finally {
+      if (null != fileInputStream) {
+        fileInputStream.close();
+      }
+    }
+  }
+
+  /**
+   * Stores a missing artifact cache to a file, creating its directory if necessary.
+   *
+   * <p>The file is shared by every build on the machine, so failures other builds stored
+   * since it was loaded are merged in first, and it is replaced atomically.</p>
+   *
+   * @param missingArtifactCache The cache to store.
+   * @param cacheFile The file to store the cache in.
+   * @throws IOException If there is an error.
+   */
+  private static void storeMissingArtifactCache(final MissingArtifactCache missingArtifactCache,
+      File cacheFile) throws IOException {
+    if (cacheFile.exists()) {
+      FileInputStream fileInputStream = new FileInputStream(cacheFile);
+      try {
+        missingArtifactCache.merge(fileInputStream);
+      } finally {
+        fileInputStream.close();
+      }
+    }
+    AtomicFileOutputStream.replace(cacheFile, new AtomicFileOutputStream.Contents() {
+      @Override
+      public void writeTo(OutputStream outputStream) throws IOException {
+        missingArtifactCache.store(outputStream);
+      }
+    });
+  }
+
+  /**
+   * Loads a javadoc index file.
+   *
+   * @param javadocIndex The target index for the loaded file.
+   * @param indexFile The file containing the index to load.
+   * @throws IOException If there is an error.
+   */
+  private static void loadJavadocIndex(JavadocIndex javadocIndex, File indexFile)
+      throws IOException {
+    FileInputStream fileInputStream = null;
+    try {
+      fileInputStream = new FileInputStream(indexFile);
+      javadocIndex.load(fileInputStream);
+    } finally {
+      if (null != fileInputStream) {
+        fileInputStream.close();
+      }
+    }
+  }
+
+  /**
+   * Stores a javadoc index to a file, creating its directory if necessary.  The file is
+   * replaced atomically, so a concurrent build never reads a partial index.
+   *
+   * @param javadocIndex The index to store.
+   * @param indexFile The file to store the index in.
+   * @throws IOException If there is an error.
+   */
+  private static void storeJavadocIndex(final JavadocIndex javadocIndex, File indexFile)
+      throws IOException {
+    AtomicFileOutputStream.replace(indexFile, new AtomicFileOutputStream.Contents() {
+      @Override
+      public void writeTo(OutputStream outputStream) throws IOException {
+        javadocIndex.store(outputStream);
+      }
+    });
+  }
+
+  /**
+   * Loads a resolution state file.
+   *
+   * @param resolutionState The target state for the loaded file.
+   * @param stateFile The file containing the state to load.
+   * @throws IOException If there is an error.
+   */
+  private static void loadResolutionState(ResolutionState resolutionState, File stateFile)
+      throws IOException {
+    FileInputStream fileInputStream = null;
+    try {
+      fileInputStream = new FileInputStream(stateFile);
+      resolutionState.load(fileInputStream);
+    } finally {
+      if (null != fileInputStream) {
+        fileInputStream.close();
+      }
+    }
+  }
+
+  /**
+   * Stores a resolution state to a file, creating its directory if necessary.  The file is
+   * replaced atomically, so an interrupted run never leaves a partial state behind.
+   *
+   * @param resolutionState The state to store.
+   * @param stateFile The file to store the state in.
+   * @throws IOException If there is an error.
+   */
+  private static void storeResolutionState(final ResolutionState resolutionState,
+      File stateFile) throws IOException {
+    AtomicFileOutputStream.replace(stateFile, new AtomicFileOutputStream.Contents() {
+      @Override
+      public void writeTo(OutputStream outputStream) throws IOException {
+        resolutionState.store(outputStream);
+      }
+    });
+  }
+
+  /**
+   * Writes a JSON report of timings and counters to a file, creating its directory if
+   * necessary.
+   *
+   * @param metrics The metrics to report.
+   * @param reportFile The file to write the report to.
+   * @throws IOException If there is an error.
+   */
+  private static void writeMetricsReport(ResolutionMetrics metrics, File reportFile)
+      throws IOException {
+    Files.createParentDirs(reportFile);
+    Writer writer = Files.newWriter(reportFile, Charsets.UTF_8);
+    try {
+      metrics.writeJson(writer);
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,175 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * A maven environment that resolves classifier jars in batches with the repository system of
+ * Maven 3 (Aether).
+ *
+ * <p>All of the jars of a batch are handed to the repository system in one call, so its
+ * connector downloads them in parallel over shared connections, using the mirrors, proxies,
+ * credentials, and timeouts of the maven session.  Everything else is done by the Maven 2
+ * components of a {@link DefaultMavenEnvironment}.</p>
+ */
+public class AetherMavenEnvironment extends DefaultMavenEnvironment
+    implements BatchArtifactResolver {
+  /** The extension of classifier jars. */
+  private static final String JAR_EXTENSION = "jar";
+
+  /** The repository system. */
+  private final RepositorySystem mRepositorySystem;
+
+  /** The repository session of the maven session. */
+  private final RepositorySystemSession mRepositorySession;
+
+  /**
+   * Creates a new <code>AetherMavenEnvironment</code> instance.
+   *
+   * @param log The maven logger.
+   * @param currentProject The current maven project.
+   * @param artifactFactory The maven artifact factory.
+   * @param artifactResolver The maven artifact resolver.
+   * @param localArtifactRepository The local maven repository of artifacts.
+   * @param repositorySystem The repository system.
+   * @param repositorySession The repository session.
+   */
+  public AetherMavenEnvironment(Log log, MavenProject currentProject,
+      ArtifactFactory artifactFactory, ArtifactResolver artifactResolver,
+      ArtifactRepository localArtifactRepository, RepositorySystem repositorySystem,
+      RepositorySystemSession repositorySession) {
+    super(log, currentProject, artifactFactory, artifactResolver, localArtifactRepository);
+    if (null == repositorySystem) {
+      throw new IllegalArgumentException("repositorySystem may not be null");
+    }
+    if (null == repositorySession) {
+      throw new IllegalArgumentException("repositorySession may not be null");
+    }
+    mRepositorySystem = repositorySystem;
+    mRepositorySession = repositorySession;
+  }
+
+  /**
+   * Creates an environment using the repository system of the maven running the plugin.
+   *
+   * @param log The maven logger.
+   * @param currentProject The current maven project.
+   * @param artifactFactory The maven artifact factory.
+   * @param artifactResolver The maven artifact resolver.
+   * @param localArtifactRepository The local maven repository of artifacts.
+   * @param mavenSession The maven session.
+   * @return The environment, or null if maven has no repository system (before Maven 3).
+   */
+  public static AetherMavenEnvironment create(Log log, MavenProject currentProject,
+      ArtifactFactory artifactFactory, ArtifactResolver artifactResolver,
+      ArtifactRepository localArtifactRepository, MavenSession mavenSession) {
+    Object repositorySession;
+    try {
+      // MavenSession.getRepositorySession() only exists in Maven 3.
+      Method getRepositorySession = mavenSession.getClass().getMethod("getRepositorySession");
+      repositorySession = getRepositorySession.invoke(mavenSession);
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      return null;
+    } catch (InvocationTargetException e) {
+      return null;
+    }
+    if (!(repositorySession instanceof RepositorySystemSession)) {
+      return null;
+    }
+    Object repositorySystem;
+    try {
+      repositorySystem = mavenSession.getContainer().lookup(RepositorySystem.class.getName());
+    } catch (ComponentLookupException e) {
+      return null;
+    }
+    if (!(repositorySystem instanceof RepositorySystem)) {
+      return null;
+    }
+    return new AetherMavenEnvironment(log, currentProject, artifactFactory, artifactResolver,
+        localArtifactRepository, (RepositorySystem) repositorySystem,
+        (RepositorySystemSession) repositorySession);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Map<String, File> resolveClassifiers(Multimap<Artifact, String> classifiers) {
+    List<RemoteRepository> repositories = getRemoteRepositories();
+    List<String> keys = new ArrayList<String>(classifiers.size());
+    List<ArtifactRequest> requests = new ArrayList<ArtifactRequest>(classifiers.size());
+    for (Map.Entry<Artifact, String> entry : classifiers.entries()) {
+      Artifact artifact = entry.getKey();
+      keys.add(Artifacts.getClassifierKey(artifact, entry.getValue()));
+      requests.add(new ArtifactRequest(new DefaultArtifact(artifact.getGroupId(),
+          artifact.getArtifactId(), entry.getValue(), JAR_EXTENSION, artifact.getVersion()),
+          repositories, null));
+    }
+
+    List<ArtifactResult> results;
+    try {
+      results = mRepositorySystem.resolveArtifacts(mRepositorySession, requests);
+    } catch (ArtifactResolutionException e) {
+      // Thrown if any jar is not resolved; the results still hold the ones that were.
+      results = e.getResults();
+    }
+
+    // The results are in the order of the requests.
+    Map<String, File> files = new HashMap<String, File>();
+    for (int i = 0; i < results.size(); i++) {
+      ArtifactResult result = results.get(i);
+      if (result.isResolved()) {
+        files.put(keys.get(i), result.getArtifact().getFile());
+      } else if (result.isMissing()) {
+        files.put(keys.get(i), null);
+      } else {
+        getLog().debug("Unable to resolve " + keys.get(i) + ": " + result.getExceptions());
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Gets the remote repositories of the current project, with the mirrors, proxies, and
+   * credentials of the session applied.
+   *
+   * @return The remote repositories.
+   */
+  private List<RemoteRepository> getRemoteRepositories() {
+    List<RemoteRepository> repositories = new ArrayList<RemoteRepository>();
+    List<?> remoteArtifactRepositories = getCurrentProject().getRemoteArtifactRepositories();
+    if (null != remoteArtifactRepositories) {
+      for (Object remoteArtifactRepository : remoteArtifactRepositories) {
+        ArtifactRepository repository = (ArtifactRepository) remoteArtifactRepository;
+        repositories.add(new RemoteRepository.Builder(
+            repository.getId(), "default", repository.getUrl()).build());
+      }
+    }
+    return mRepositorySystem.newResolutionRepositories(mRepositorySession, repositories);
+  }
+}
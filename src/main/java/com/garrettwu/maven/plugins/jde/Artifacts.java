@@ -26,4 +26,52 @@ public final class Artifacts {
         .append(artifact.getVersion())
         .toString();
   }
+
+  /**
+   * The full id of the artifact, "groupId:artifactId:version:type" followed by
+   * ":classifier" if it has one.  Unlike the name, this tells apart the jars of one version
+   * with different classifiers, such as a tests jar next to the main jar.
+   *
+   * @param artifact An artifact.
+   * @return Its full id.
+   */
+  public static String getId(Artifact artifact) {
+    StringBuilder id = new StringBuilder(getName(artifact))
+        .append(":")
+        .append(artifact.getType());
+    if (null != artifact.getClassifier()) {
+      id.append(":").append(artifact.getClassifier());
+    }
+    return id.toString();
+  }
+
+  /**
+   * Gets the name of an artifact from its full id.
+   *
+   * @param id The full id of an artifact, as returned by {@link #getId(Artifact)}, or its
+   *     name.
+   * @return The name, "groupId:artifactId:version".
+   */
+  public static String getNameOfId(String id) {
+    int end = -1;
+    for (int i = 0; i < 3; i++) {
+      end = id.indexOf(':', end + 1);
+      if (end < 0) {
+        return id;
+      }
+    }
+    return id.substring(0, end);
+  }
+
+  /**
+   * A key identifying the jar with a given classifier of an artifact, consisting of
+   * "groupId:artifactId:version:classifier".
+   *
+   * @param artifact An artifact.
+   * @param classifier The classifier of the jar, such as "sources".
+   * @return The key.
+   */
+  public static String getClassifierKey(Artifact artifact, String classifier) {
+    return getName(artifact) + ":" + classifier;
+  }
 }
@@ -0,0 +1,184 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import com.google.common.io.Files;
+
+/**
+ * An output stream that replaces a file atomically when it is closed.
+ *
+ * <p>Bytes are written through a large buffer to a temporary file in the same directory as
+ * the target.  When the stream is closed, the temporary file is synced to disk and renamed
+ * over the target, so readers (such as Emacs) never see a partially written file.  If the
+ * new contents are identical to the existing file, the target is left untouched so file
+ * watchers are not triggered.</p>
+ *
+ * <p>Call {@link #abort()} before closing to discard everything written instead, or use
+ * {@link #replace(File, Contents)}, which does so if writing fails.</p>
+ */
+public class AtomicFileOutputStream extends OutputStream {
+  /** The size of the buffer in front of the temporary file. */
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  /** The file to replace. */
+  private final File mTargetFile;
+
+  /** The temporary file being written. */
+  private final File mTempFile;
+
+  /** The channel to the temporary file. */
+  private final FileChannel mChannel;
+
+  /** The buffered stream to the temporary file. */
+  private final OutputStream mOutputStream;
+
+  /** Whether the written contents should be discarded. */
+  private boolean mAborted;
+
+  /** Whether the stream has been closed. */
+  private boolean mClosed;
+
+  /** Whether closing the stream changed the target file. */
+  private boolean mChanged;
+
+  /**
+   * Creates a new <code>AtomicFileOutputStream</code> instance.
+   *
+   * @param targetFile The file to replace when the stream is closed.
+   * @throws IOException If the temporary file could not be created.
+   */
+  public AtomicFileOutputStream(File targetFile) throws IOException {
+    mTargetFile = targetFile.getAbsoluteFile();
+    File directory = mTargetFile.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException("Could not create directory: " + directory.getPath());
+    }
+    mTempFile = File.createTempFile("." + mTargetFile.getName() + ".", ".tmp", directory);
+    mChannel = new FileOutputStream(mTempFile).getChannel();
+    mOutputStream = new BufferedOutputStream(Channels.newOutputStream(mChannel), BUFFER_SIZE);
+    mAborted = false;
+    mClosed = false;
+    mChanged = false;
+  }
+
+  /**
+   * Replaces a file atomically with new contents.  If writing the contents fails, the file is
+   * left untouched.
+   *
+   * @param targetFile The file to replace.
+   * @param contents Writes the new contents of the file.
+   * @return Whether the file was changed.
+   * @throws IOException If there is an error.
+   */
+  public static boolean replace(File targetFile, Contents contents) throws IOException {
+    AtomicFileOutputStream outputStream = new AtomicFileOutputStream(targetFile);
+    boolean written = false;
+    try {
+      contents.writeTo(outputStream);
+      written = true;
+    } finally {
+      if (!written) {
+        outputStream.abort();
+      }
+      outputStream.close();
+    }
+    return outputStream.isChanged();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(int b) throws IOException {
+    mOutputStream.write(b);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    mOutputStream.write(bytes, offset, length);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void flush() throws IOException {
+    mOutputStream.flush();
+  }
+
+  /**
+   * Discards everything written so far.  Closing the stream will then leave the target file
+   * untouched.
+   */
+  public void abort() {
+    mAborted = true;
+  }
+
+  /**
+   * Determines whether closing the stream replaced the target file.
+   *
+   * @return Whether the target file was changed.
+   */
+  public boolean isChanged() {
+    return mChanged;
+  }
+
+  /**
+   * Syncs the written contents to disk and moves them over the target file, unless the
+   * stream was aborted or the contents are identical to the target.
+   *
+   * @throws IOException If there is an error.
+   */
+  @Override
+  public void close() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    mClosed = true;
+    boolean committed = false;
+    try {
+      try {
+        if (!mAborted) {
+          mOutputStream.flush();
+          mChannel.force(true);
+        }
+      } finally {
+        mChannel.close();
+      }
+      if (mAborted || (mTargetFile.isFile() && Files.equal(mTempFile, mTargetFile))) {
+        return;
+      }
+      // On platforms where renaming over an existing file fails, fall back to removing it
+      // first (which gives up atomicity there).
+      if (!mTempFile.renameTo(mTargetFile)
+          && !(mTargetFile.delete() && mTempFile.renameTo(mTargetFile))) {
+        throw new IOException("Could not move " + mTempFile.getPath()
+            + " to " + mTargetFile.getPath());
+      }
+      committed = true;
+      mChanged = true;
+    } finally {
+      if (!committed && mTempFile.exists() && !mTempFile.delete()) {
+        mTempFile.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Writes the new contents of a file replaced by {@link AtomicFileOutputStream#replace}.
+   */
+  public interface Contents {
+    /**
+     * Writes the contents.  The stream is closed by the caller.
+     *
+     * @param outputStream The stream to write the contents to.
+     * @throws IOException If there is an error.
+     */
+    void writeTo(OutputStream outputStream) throws IOException;
+  }
+}
@@ -0,0 +1,26 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+
+import com.google.common.collect.Multimap;
+
+/**
+ * Resolves the classifier jars (sources, javadoc) of many artifacts in a single request, so
+ * the underlying repository system can download them in parallel.
+ */
+public interface BatchArtifactResolver {
+  /**
+   * Resolves classifier jars for a set of artifacts.
+   *
+   * @param classifiers The classifiers to resolve, for each artifact.
+   * @return The resolved jars, keyed by {@link Artifacts#getClassifierKey(Artifact, String)}.
+   *     A jar no repository has maps to null; a jar that could not be resolved for another
+   *     reason (such as a transfer error) is left out.
+   */
+  Map<String, File> resolveClassifiers(Multimap<Artifact, String> classifiers);
+}
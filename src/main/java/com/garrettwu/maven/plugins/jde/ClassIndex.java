@@ -0,0 +1,173 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+
+/**
+ * An index from class names to the classpath entries that contain them, which editors can
+ * search without opening any jars.
+ *
+ * <p>The index is written as a UTF-8 text file.  A header line is followed by one line per
+ * classpath entry, <code>#jar&lt;TAB&gt;number&lt;TAB&gt;path</code>, and then one line per
+ * class, <code>SimpleName&lt;TAB&gt;fully.qualified.Name&lt;TAB&gt;number</code>.  All lines
+ * are sorted, so a class can be found by binary search on its simple name.</p>
+ */
+public class ClassIndex {
+  /** The first line of an index file. */
+  public static final String HEADER = "# jde class index 1";
+
+  /** The prefix of the lines listing classpath entries. */
+  public static final String CLASS_PATH_PREFIX = "#jar\t";
+
+  /** The size of the character buffer in front of the output stream. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The indexed classpath entries. */
+  private final List<String> mClassPaths;
+
+  /** The fully qualified names of the classes in each classpath entry. */
+  private final List<List<String>> mClassNames;
+
+  /**
+   * Creates a new <code>ClassIndex</code> instance.
+   *
+   * @param classPaths The indexed classpath entries.
+   * @param classNames The fully qualified names of the classes in each entry, in order.
+   */
+  public ClassIndex(List<String> classPaths, List<List<String>> classNames) {
+    if (classPaths.size() != classNames.size()) {
+      throw new IllegalArgumentException("There must be class names for each class path");
+    }
+    mClassPaths = Collections.unmodifiableList(new ArrayList<String>(classPaths));
+    mClassNames = Collections.unmodifiableList(new ArrayList<List<String>>(classNames));
+  }
+
+  /**
+   * Gets the indexed classpath entries.
+   *
+   * @return The classpath entries.
+   */
+  public List<String> getClassPaths() {
+    return mClassPaths;
+  }
+
+  /**
+   * Gets the fully qualified names of the classes in a classpath entry.
+   *
+   * @param index The position of the classpath entry.
+   * @return The class names.
+   */
+  public List<String> getClassNames(int index) {
+    return mClassNames.get(index);
+  }
+
+  /**
+   * Gets the fully qualified names of the classes in a classpath entry.
+   *
+   * @param classPath The path of the classpath entry.
+   * @return The class names, or null if the entry is not in this index.
+   */
+  public List<String> getClassNames(String classPath) {
+    int index = mClassPaths.indexOf(classPath);
+    return index < 0 ? null : mClassNames.get(index);
+  }
+
+  /**
+   * Gets the number of indexed classes.
+   *
+   * @return The number of classes over all classpath entries.
+   */
+  public int size() {
+    int size = 0;
+    for (List<String> classNames : mClassNames) {
+      size += classNames.size();
+    }
+    return size;
+  }
+
+  /**
+   * Reads an index previously written with {@link #write(OutputStream)}.
+   *
+   * @param inputStream The input stream.
+   * @return The index.
+   * @throws IOException If there is an error, or the stream does not hold a class index.
+   */
+  public static ClassIndex read(InputStream inputStream) throws IOException {
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(inputStream, Charsets.UTF_8), BUFFER_SIZE);
+    if (!HEADER.equals(reader.readLine())) {
+      throw new IOException("Not a class index");
+    }
+    List<String> classPaths = new ArrayList<String>();
+    List<List<String>> classNames = new ArrayList<List<String>>();
+    String line;
+    while (null != (line = reader.readLine())) {
+      try {
+        if (line.startsWith(CLASS_PATH_PREFIX)) {
+          int tab = line.indexOf('\t', CLASS_PATH_PREFIX.length());
+          if (Integer.parseInt(line.substring(CLASS_PATH_PREFIX.length(), tab))
+              != classPaths.size()) {
+            throw new IOException("Classpath entries out of order: " + line);
+          }
+          classPaths.add(line.substring(tab + 1));
+          classNames.add(new ArrayList<String>());
+        } else {
+          int firstTab = line.indexOf('\t');
+          int lastTab = line.lastIndexOf('\t');
+          classNames.get(Integer.parseInt(line.substring(lastTab + 1)))
+              .add(line.substring(firstTab + 1, lastTab));
+        }
+      } catch (RuntimeException e) {
+        // Bad numbers, missing tabs, and unknown classpath entries.
+        throw new IOException("Malformed class index line: " + line, e);
+      }
+    }
+    return new ClassIndex(classPaths, classNames);
+  }
+
+  /**
+   * Writes the index to an output stream.
+   *
+   * @param outputStream The output stream.
+   * @throws IOException If there is an error.
+   */
+  public void write(OutputStream outputStream) throws IOException {
+    String[] lines = new String[size()];
+    int line = 0;
+    for (int i = 0; i < mClassPaths.size(); i++) {
+      String suffix = "\t" + i;
+      for (String className : mClassNames.get(i)) {
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        lines[line++] = simpleName + "\t" + className + suffix;
+      }
+    }
+    Arrays.sort(lines);
+
+    Writer writer = new BufferedWriter(
+        new OutputStreamWriter(outputStream, Charsets.UTF_8), BUFFER_SIZE);
+    writer.write(HEADER);
+    writer.write('\n');
+    for (int i = 0; i < mClassPaths.size(); i++) {
+      writer.write(CLASS_PATH_PREFIX + i + "\t" + mClassPaths.get(i) + "\n");
+    }
+    for (String classLine : lines) {
+      writer.write(classLine);
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+}
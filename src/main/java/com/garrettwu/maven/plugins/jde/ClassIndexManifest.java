@@ -0,0 +1,101 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Records the {@link JarStamp} of each jar in a {@link ClassIndex}, so a later run only
+ * rescans the jars that were added or changed since.
+ *
+ * <p>This class is safe for use by multiple threads.</p>
+ */
+public class ClassIndexManifest {
+  /** The suffix appended to the class index file name to name its manifest. */
+  public static final String FILE_SUFFIX = ".manifest";
+
+  /** The stamps of the indexed jars, by path. */
+  private final Map<String, JarStamp> mStamps;
+
+  /**
+   * Creates a new, empty <code>ClassIndexManifest</code> instance.
+   */
+  public ClassIndexManifest() {
+    mStamps = new HashMap<String, JarStamp>();
+  }
+
+  /**
+   * Loads the manifest from an input stream in java properties format.  Malformed entries
+   * are ignored, so their jars are rescanned.
+   *
+   * @param inputStream The contents of a java properties file.
+   * @throws IOException If there is an error reading from the stream.
+   */
+  public synchronized void load(InputStream inputStream) throws IOException {
+    Properties properties = new Properties();
+    properties.load(inputStream);
+    for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+      String[] fields = entry.getValue().toString().split(",", -1);
+      if (3 != fields.length) {
+        continue;
+      }
+      try {
+        mStamps.put(entry.getKey().toString(),
+            new JarStamp(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+      } catch (NumberFormatException e) {
+        continue;
+      }
+    }
+  }
+
+  /**
+   * Stores the manifest to an output stream in java properties format.
+   *
+   * @param outputStream The stream to write to.
+   * @throws IOException If there is an error writing to the stream.
+   */
+  public synchronized void store(OutputStream outputStream) throws IOException {
+    Properties properties = new Properties();
+    for (Map.Entry<String, JarStamp> entry : mStamps.entrySet()) {
+      JarStamp stamp = entry.getValue();
+      properties.setProperty(entry.getKey(),
+          stamp.getSize() + "," + stamp.getLastModified() + "," + stamp.getHash());
+    }
+    PropertiesFiles.store(properties, outputStream, "Stamps of the jars in the class index");
+  }
+
+  /**
+   * Gets the stamp of an indexed jar.
+   *
+   * @param path The path of the jar.
+   * @return Its stamp when it was last indexed, or null if it was not.
+   */
+  public synchronized JarStamp get(String path) {
+    return mStamps.get(path);
+  }
+
+  /**
+   * Records the stamp of an indexed jar.
+   *
+   * @param path The path of the jar.
+   * @param stamp Its stamp.
+   */
+  public synchronized void put(String path, JarStamp stamp) {
+    mStamps.put(path, stamp);
+  }
+
+  /**
+   * Forgets every jar not in a collection of paths.
+   *
+   * @param paths The paths of the jars to keep.
+   */
+  public synchronized void retain(Collection<String> paths) {
+    mStamps.keySet().retainAll(paths);
+  }
+}
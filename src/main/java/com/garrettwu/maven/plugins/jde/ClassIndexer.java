@@ -0,0 +1,251 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Builds a {@link ClassIndex} by listing the classes in each classpath entry.
+ *
+ * <p>Jars are listed from their central directory only, so no entry is decompressed.
+ * Directories of classes are walked.  Nested, anonymous, package-info, and module-info
+ * classes are left out.  Entries are listed concurrently by a configurable number of
+ * threads.</p>
+ */
+public class ClassIndexer {
+  /** The suffix of class file names. */
+  private static final String CLASS_SUFFIX = ".class";
+
+  /** The number of classpath entries listed concurrently. */
+  private final int mThreads;
+
+  /**
+   * Creates a new <code>ClassIndexer</code> instance.
+   *
+   * @param threads The number of classpath entries listed concurrently.
+   */
+  public ClassIndexer(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1");
+    }
+    mThreads = threads;
+  }
+
+  /**
+   * Indexes the classes in a list of classpath entries.  Entries that do not exist are
+   * indexed as empty.
+   *
+   * @param classPaths The paths of jars or directories of classes.
+   * @return The index.
+   * @throws IOException If a classpath entry could not be read.
+   */
+  public ClassIndex index(List<String> classPaths) throws IOException {
+    return update(classPaths, null, null);
+  }
+
+  /**
+   * Indexes the classes in a list of classpath entries, reusing the classes of jars that
+   * have not changed since a previous index was built.
+   *
+   * <p>A jar is reused if it is in the previous index and matches its stamp in the manifest.
+   * Added and changed jars, and all directories, are scanned.  The manifest is updated with
+   * the stamps of the scanned jars, and forgets jars no longer on the classpath.</p>
+   *
+   * @param classPaths The paths of jars or directories of classes.
+   * @param previous The previous index, or null to scan every entry.
+   * @param manifest The stamps of the jars in the previous index, or null to not record any.
+   * @return The index.
+   * @throws IOException If a classpath entry could not be read.
+   */
+  public ClassIndex update(List<String> classPaths, ClassIndex previous,
+      final ClassIndexManifest manifest) throws IOException {
+    List<List<String>> classNames
+        = new ArrayList<List<String>>(Collections.<List<String>>nCopies(classPaths.size(), null));
+    List<Integer> changed = new ArrayList<Integer>();
+    for (int i = 0; i < classPaths.size(); i++) {
+      List<String> unchanged = getUnchangedClasses(classPaths.get(i), previous, manifest);
+      if (null == unchanged) {
+        changed.add(i);
+      } else {
+        classNames.set(i, unchanged);
+      }
+    }
+
+    List<Callable<List<String>>> scans = new ArrayList<Callable<List<String>>>(changed.size());
+    for (int i : changed) {
+      final File classPath = new File(classPaths.get(i));
+      scans.add(new Callable<List<String>>() {
+        @Override
+        public List<String> call() throws IOException {
+          if (null != manifest && classPath.isFile()) {
+            manifest.put(classPath.getPath(), JarStamp.of(classPath));
+          }
+          return listClasses(classPath);
+        }
+      });
+    }
+    List<List<String>> scanned = scan(scans);
+    for (int i = 0; i < changed.size(); i++) {
+      classNames.set(changed.get(i), scanned.get(i));
+    }
+
+    if (null != manifest) {
+      manifest.retain(classPaths);
+    }
+    return new ClassIndex(classPaths, classNames);
+  }
+
+  /**
+   * Gets the classes of a jar from a previous index, if the jar has not changed since.
+   *
+   * @param classPath The path of a classpath entry.
+   * @param previous The previous index, or null.
+   * @param manifest The stamps of the jars in the previous index, or null.
+   * @return The classes in the jar, or null if it must be scanned.
+   * @throws IOException If the jar could not be read.
+   */
+  private static List<String> getUnchangedClasses(String classPath, ClassIndex previous,
+      ClassIndexManifest manifest) throws IOException {
+    if (null == previous || null == manifest) {
+      return null;
+    }
+    File file = new File(classPath);
+    JarStamp stamp = manifest.get(classPath);
+    List<String> classNames = previous.getClassNames(classPath);
+    if (null == stamp || null == classNames || !file.isFile() || !stamp.matches(file)) {
+      return null;
+    }
+    if (stamp.getLastModified() != file.lastModified()) {
+      // Same contents, new timestamp: refresh the stamp so we don't hash it next time.
+      manifest.put(classPath, new JarStamp(stamp.getSize(), file.lastModified(), stamp.getHash()));
+    }
+    return classNames;
+  }
+
+  /**
+   * Runs scans of classpath entries, concurrently if more than one thread is configured.
+   *
+   * @param scans The scans.
+   * @return The results of the scans, in order.
+   * @throws IOException If a classpath entry could not be read.
+   */
+  private List<List<String>> scan(List<Callable<List<String>>> scans) throws IOException {
+    List<List<String>> results = new ArrayList<List<String>>(scans.size());
+    if (1 == mThreads || scans.size() < 2) {
+      for (Callable<List<String>> scan : scans) {
+        try {
+          results.add(scan.call());
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return results;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(mThreads, scans.size()),
+        new ThreadFactoryBuilder().setNameFormat("jde-indexer-%d").setDaemon(true).build());
+    try {
+      for (Future<List<String>> future : executor.invokeAll(scans)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while indexing classes", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
+  /**
+   * Lists the top-level classes in a classpath entry.
+   *
+   * @param classPath A jar or a directory of classes.
+   * @return The fully qualified class names, or an empty list if the entry does not exist.
+   * @throws IOException If the entry could not be read.
+   */
+  public static List<String> listClasses(File classPath) throws IOException {
+    List<String> classNames = new ArrayList<String>();
+    if (classPath.isDirectory()) {
+      listClasses(classPath, "", classNames);
+    } else if (classPath.isFile()) {
+      ZipFile zipFile = new ZipFile(classPath);
+      try {
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          String className = getClassName(entries.nextElement().getName());
+          if (null != className) {
+            classNames.add(className);
+          }
+        }
+      } finally {
+        zipFile.close();
+      }
+    }
+    return classNames;
+  }
+
+  /**
+   * Lists the top-level classes under a directory of classes.
+   *
+   * @param directory The directory.
+   * @param path The path of the directory relative to the classpath entry.
+   * @param classNames The list to add the fully qualified class names to.
+   */
+  private static void listClasses(File directory, String path, List<String> classNames) {
+    File[] files = directory.listFiles();
+    if (null == files) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isDirectory()) {
+        listClasses(file, path + file.getName() + "/", classNames);
+      } else {
+        String className = getClassName(path + file.getName());
+        if (null != className) {
+          classNames.add(className);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the name of the top-level class stored at a path within a classpath entry.
+   *
+   * @param path The path, with forward slashes.
+   * @return The fully qualified class name, or null if the path is not a top-level class.
+   */
+  static String getClassName(String path) {
+    if (!path.endsWith(CLASS_SUFFIX) || path.indexOf('$') >= 0
+        || path.startsWith("META-INF/")) {
+      return null;
+    }
+    String className = path.substring(0, path.length() - CLASS_SUFFIX.length()).replace('/', '.');
+    if (className.equals("module-info") || className.endsWith("package-info")) {
+      return null;
+    }
+    return className;
+  }
+}
@@ -0,0 +1,163 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.util.Collection;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * A path stored as a prefix shared with many other paths (such as the root of the local
+ * maven repository) followed by a suffix of its own.
+ *
+ * <p>Prefixes are interned, so every path under the same root refers to a single copy of
+ * it.  Large dependency graphs hold thousands of paths under a handful of roots, and this
+ * keeps only the part that differs per path.</p>
+ */
+public final class CompactPath {
+  /** Interns shared prefixes. */
+  private static final Interner<String> PREFIXES = Interners.newWeakInterner();
+
+  /** The shared prefix, ending with a separator, or the empty string if there is none. */
+  private final String mPrefix;
+
+  /** The rest of the path. */
+  private final String mSuffix;
+
+  /**
+   * Creates a new <code>CompactPath</code> instance.
+   *
+   * @param prefix The shared prefix.
+   * @param suffix The rest of the path.
+   */
+  private CompactPath(String prefix, String suffix) {
+    mPrefix = prefix;
+    mSuffix = suffix;
+  }
+
+  /**
+   * Creates a compact path, sharing the longest of a set of root directories it is under.
+   *
+   * @param path A path, or null.
+   * @param roots Root directories that many paths are under.
+   * @return The compact path, or null if the path was null.
+   */
+  public static CompactPath of(String path, Collection<String> roots) {
+    if (null == path) {
+      return null;
+    }
+    String prefix = "";
+    for (String root : roots) {
+      String rootPrefix = root.endsWith(File.separator) ? root : root + File.separator;
+      if (rootPrefix.length() > prefix.length() && path.startsWith(rootPrefix)) {
+        prefix = rootPrefix;
+      }
+    }
+    if (prefix.isEmpty()) {
+      return new CompactPath(prefix, path);
+    }
+    return new CompactPath(PREFIXES.intern(prefix), path.substring(prefix.length()));
+  }
+
+  /**
+   * Gets the shared prefix of this path.
+   *
+   * @return The prefix, ending with a separator, or the empty string if there is none.
+   */
+  public String getPrefix() {
+    return mPrefix;
+  }
+
+  /**
+   * Gets the part of this path after its shared prefix.
+   *
+   * @return The suffix.
+   */
+  public String getSuffix() {
+    return mSuffix;
+  }
+
+  /**
+   * Creates a compact path without a shared prefix, for paths that are not under a shared
+   * root (such as the build directories of a project).
+   *
+   * @param path A path, or null.
+   * @return The compact path, or null if the path was null.
+   */
+  public static CompactPath of(String path) {
+    return null == path ? null : new CompactPath("", path);
+  }
+
+  /**
+   * Compares the full paths, without building them.
+   *
+   * @param other Another object.
+   * @return Whether it is a compact path with the same full path.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof CompactPath)) {
+      return false;
+    }
+    CompactPath that = (CompactPath) other;
+    if (mPrefix.equals(that.mPrefix)) {
+      return mSuffix.equals(that.mSuffix);
+    }
+    int length = length();
+    if (length != that.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (charAt(i) != that.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the hash code of the full path, without building it.
+   *
+   * @return The same hash code as the full path string.
+   */
+  @Override
+  public int hashCode() {
+    int hash = mPrefix.hashCode();
+    for (int i = 0; i < mSuffix.length(); i++) {
+      hash = 31 * hash + mSuffix.charAt(i);
+    }
+    return hash;
+  }
+
+  /**
+   * Gets the length of the full path.
+   *
+   * @return The number of characters in the prefix and the suffix.
+   */
+  private int length() {
+    return mPrefix.length() + mSuffix.length();
+  }
+
+  /**
+   * Gets a character of the full path.
+   *
+   * @param index The index of the character in the full path.
+   * @return The character.
+   */
+  private char charAt(int index) {
+    int prefixLength = mPrefix.length();
+    return index < prefixLength ? mPrefix.charAt(index) : mSuffix.charAt(index - prefixLength);
+  }
+
+  /**
+   * Gets the full path.
+   *
+   * @return The prefix followed by the suffix.
+   */
+  @Override
+  public String toString() {
+    return mPrefix.isEmpty() ? mSuffix : mPrefix + mSuffix;
+  }
+}
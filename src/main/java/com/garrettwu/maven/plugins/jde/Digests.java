@@ -0,0 +1,43 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility methods for computing content digests.
+ */
+public final class Digests {
+  /** No constructor available for a utility class. */
+  private Digests() {}
+
+  /**
+   * Creates a new SHA-1 message digest.
+   *
+   * @return A SHA-1 digest.
+   */
+  public static MessageDigest newSha1() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      // Every java platform is required to support SHA-1.
+      throw new RuntimeException("SHA-1 is not available", e);
+    }
+  }
+
+  /**
+   * Encodes bytes as a lower-case hex string.
+   *
+   * @param bytes The bytes.
+   * @return The hex encoding.
+   */
+  public static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+      hex.append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -0,0 +1,113 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lock on a directory of unpacked javadoc, held both within this JVM and across processes,
+ * so concurrent builds never unpack into the same directory at the same time.
+ */
+final class EntryLock {
+  /**
+   * Locks held within this JVM, by lock file path.  File locks are held per process, so
+   * threads of the same process must also exclude each other.
+   */
+  private static final ConcurrentMap<String, ReentrantLock> LOCKS
+      = new ConcurrentHashMap<String, ReentrantLock>();
+
+  /** The lock held within this JVM. */
+  private final ReentrantLock mLock;
+
+  /** The open lock file. */
+  private final RandomAccessFile mFile;
+
+  /** The lock held on the lock file. */
+  private final FileLock mFileLock;
+
+  /**
+   * Creates a new <code>EntryLock</code> instance.
+   *
+   * @param lock The lock held within this JVM.
+   * @param file The open lock file.
+   * @param fileLock The lock held on the lock file.
+   */
+  private EntryLock(ReentrantLock lock, RandomAccessFile file, FileLock fileLock) {
+    mLock = lock;
+    mFile = file;
+    mFileLock = fileLock;
+  }
+
+  /**
+   * Gets the lock file guarding a directory, which is kept next to it.
+   *
+   * @param directory The directory.
+   * @return Its lock file.
+   */
+  static File getLockFile(File directory) {
+    return new File(directory.getParentFile(), directory.getName() + ".lock");
+  }
+
+  /**
+   * Acquires the lock on a directory.
+   *
+   * @param lockFile The lock file guarding the directory.
+   * @param wait Whether to wait for the lock if it is held elsewhere.
+   * @return The lock, or null if it is held elsewhere and we did not wait.
+   * @throws IOException If there is an error.
+   */
+  static EntryLock acquire(File lockFile, boolean wait) throws IOException {
+    String key = lockFile.getAbsolutePath();
+    ReentrantLock lock = LOCKS.get(key);
+    if (null == lock) {
+      ReentrantLock newLock = new ReentrantLock();
+      lock = LOCKS.putIfAbsent(key, newLock);
+      if (null == lock) {
+        lock = newLock;
+      }
+    }
+    if (wait) {
+      lock.lock();
+    } else if (!lock.tryLock()) {
+      return null;
+    }
+
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(lockFile, "rw");
+      FileLock fileLock = wait ? file.getChannel().lock() : file.getChannel().tryLock();
+      if (null == fileLock) {
+        file.close();
+        lock.unlock();
+        return null;
+      }
+      return new EntryLock(lock, file, fileLock);
+    } catch (IOException e) {
+      if (null != file) {
+        file.close();
+      }
+      lock.unlock();
+      throw e;
+    }
+  }
+
+  /**
+   * Releases the lock.
+   *
+   * @throws IOException If there is an error.
+   */
+  void release() throws IOException {
+    try {
+      mFileLock.release();
+      mFile.close();
+    } finally {
+      mLock.unlock();
+    }
+  }
+}
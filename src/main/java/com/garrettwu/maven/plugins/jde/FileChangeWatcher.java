@@ -0,0 +1,107 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches a set of files for changes by polling their modification times and sizes.
+ *
+ * <p>The plugin targets Java 6, which has no file system notification API, and the files
+ * watched (poms and properties files) are few, so polling is cheap.  A file that is created
+ * or deleted also counts as changed.</p>
+ */
+public class FileChangeWatcher {
+  /** The last seen state of each watched file. */
+  private final Map<File, String> mStates;
+
+  /**
+   * Creates a new <code>FileChangeWatcher</code> instance watching no files.
+   */
+  public FileChangeWatcher() {
+    mStates = new LinkedHashMap<File, String>();
+  }
+
+  /**
+   * Starts watching a file, if it is not already watched.
+   *
+   * @param file The file to watch.
+   */
+  public void watch(File file) {
+    if (!mStates.containsKey(file)) {
+      mStates.put(file, getState(file));
+    }
+  }
+
+  /**
+   * Gets the watched files.
+   *
+   * @return The watched files.
+   */
+  public Set<File> getFiles() {
+    return mStates.keySet();
+  }
+
+  /**
+   * Checks the watched files for changes since they were last checked.
+   *
+   * @return The files that changed.
+   */
+  public Set<File> poll() {
+    Set<File> changed = new LinkedHashSet<File>();
+    for (Map.Entry<File, String> entry : mStates.entrySet()) {
+      String state = getState(entry.getKey());
+      if (!state.equals(entry.getValue())) {
+        entry.setValue(state);
+        changed.add(entry.getKey());
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Waits until at least one watched file changes, and then until no file has changed for a
+   * quiet period, so an editor saving several files (or one file several times) causes a
+   * single regeneration.
+   *
+   * @param pollMillis How often to check the files, in milliseconds.
+   * @param debounceMillis How long the files must stay unchanged, in milliseconds.
+   * @return All files that changed while waiting.
+   * @throws InterruptedException If the thread is interrupted while waiting.
+   */
+  public Set<File> awaitChanges(long pollMillis, long debounceMillis)
+      throws InterruptedException {
+    Set<File> changed = poll();
+    while (changed.isEmpty()) {
+      Thread.sleep(pollMillis);
+      changed.addAll(poll());
+    }
+    long quietSince = System.currentTimeMillis();
+    while (System.currentTimeMillis() - quietSince < debounceMillis) {
+      Thread.sleep(Math.min(pollMillis, debounceMillis));
+      Set<File> more = poll();
+      if (!more.isEmpty()) {
+        changed.addAll(more);
+        quietSince = System.currentTimeMillis();
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Gets the state of a file that determines whether it changed.
+   *
+   * @param file The file.
+   * @return Its state.
+   */
+  private static String getState(File file) {
+    if (!file.exists()) {
+      return "";
+    }
+    return file.lastModified() + ":" + file.length();
+  }
+}
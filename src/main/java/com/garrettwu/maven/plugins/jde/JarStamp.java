@@ -0,0 +1,158 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import com.google.common.io.Files;
+
+/**
+ * Identifies the contents of a jar file by its size, modification time, and SHA-1 hash.
+ *
+ * <p>A stamp is written next to data derived from a jar (for example, the directory the jar
+ * was unpacked into) so later runs can tell whether the derived data is still current
+ * without redoing the work.  The size and modification time are checked first, so the hash
+ * only needs to be recomputed when the jar appears to have changed.</p>
+ */
+public final class JarStamp {
+  /** The name of the stamp file written into an unpacked directory. */
+  public static final String FILE_NAME = ".jde-stamp";
+
+  /** The size of the jar in bytes. */
+  private final long mSize;
+
+  /** The modification time of the jar. */
+  private final long mLastModified;
+
+  /** The hex-encoded SHA-1 hash of the jar contents. */
+  private final String mHash;
+
+  /**
+   * Creates a new <code>JarStamp</code> instance.
+   *
+   * @param size The size of the jar in bytes.
+   * @param lastModified The modification time of the jar.
+   * @param hash The hex-encoded SHA-1 hash of the jar contents.
+   */
+  public JarStamp(long size, long lastModified, String hash) {
+    mSize = size;
+    mLastModified = lastModified;
+    mHash = hash;
+  }
+
+  /**
+   * Computes the stamp of a jar file.
+   *
+   * @param jarFile The jar file.
+   * @return Its stamp.
+   * @throws IOException If the jar could not be read.
+   */
+  public static JarStamp of(File jarFile) throws IOException {
+    return new JarStamp(jarFile.length(), jarFile.lastModified(), hash(jarFile));
+  }
+
+  /**
+   * Reads a stamp previously written with {@link #write(File)}.
+   *
+   * @param stampFile The stamp file.
+   * @return The stamp, or null if the file does not exist or is not a valid stamp.
+   * @throws IOException If the file exists but could not be read.
+   */
+  public static JarStamp read(File stampFile) throws IOException {
+    if (!stampFile.isFile()) {
+      return null;
+    }
+    Properties properties = new Properties();
+    FileInputStream inputStream = new FileInputStream(stampFile);
+    try {
+      properties.load(inputStream);
+    } finally {
+      inputStream.close();
+    }
+    String hash = properties.getProperty("sha1");
+    try {
+      return new JarStamp(Long.parseLong(properties.getProperty("size")),
+          Long.parseLong(properties.getProperty("lastModified")), hash);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes this stamp to a file.
+   *
+   * @param stampFile The stamp file.
+   * @throws IOException If there is an error.
+   */
+  public void write(File stampFile) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("size", Long.toString(mSize));
+    properties.setProperty("lastModified", Long.toString(mLastModified));
+    properties.setProperty("sha1", mHash);
+    FileOutputStream outputStream = new FileOutputStream(stampFile);
+    try {
+      properties.store(outputStream, "Stamp of the jar this directory was derived from");
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Determines whether a jar file is the one this stamp was taken from.
+   *
+   * <p>The jar's size and modification time are compared first.  Only if those differ is
+   * the jar hashed, so a jar that was merely touched still matches.</p>
+   *
+   * @param jarFile The jar file.
+   * @return Whether the jar has the same contents as when the stamp was taken.
+   * @throws IOException If the jar could not be read.
+   */
+  public boolean matches(File jarFile) throws IOException {
+    if (jarFile.length() == mSize && jarFile.lastModified() == mLastModified) {
+      return true;
+    }
+    return jarFile.length() == mSize && hash(jarFile).equals(mHash);
+  }
+
+  /**
+   * Gets the size of the jar in bytes.
+   *
+   * @return The size.
+   */
+  public long getSize() {
+    return mSize;
+  }
+
+  /**
+   * Gets the modification time of the jar.
+   *
+   * @return The modification time.
+   */
+  public long getLastModified() {
+    return mLastModified;
+  }
+
+  /**
+   * Gets the hex-encoded SHA-1 hash of the jar contents.
+   *
+   * @return The hash.
+   */
+  public String getHash() {
+    return mHash;
+  }
+
+  /**
+   * Computes the hex-encoded SHA-1 hash of a file.
+   *
+   * @param file The file.
+   * @return The hash.
+   * @throws IOException If the file could not be read.
+   */
+  public static String hash(File file) throws IOException {
+    return Digests.toHex(Files.getDigest(file, Digests.newSha1()));
+  }
+}
@@ -0,0 +1,298 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Unpacks the contents of jar files into directories.
+ *
+ * <p>The directory tree for a jar is created up front, and the file entries are then written
+ * by a configurable number of threads.  Each thread copies entries through a direct byte
+ * buffer borrowed from a pool that is reused across jars, so no per-entry streams or buffers
+ * are allocated beyond the channels themselves.</p>
+ *
+ * <p>This class is safe for use by multiple threads.</p>
+ */
+public class JarUnpacker {
+  /** The size of each pooled buffer. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The number of threads used to write the entries of a single jar. */
+  private final int mThreads;
+
+  /** Direct buffers available for copying entries. */
+  private final BlockingQueue<ByteBuffer> mBufferPool;
+
+  /**
+   * Creates a new <code>JarUnpacker</code> instance.
+   *
+   * @param threads The number of threads used to write the entries of a single jar.
+   */
+  public JarUnpacker(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1");
+    }
+    mThreads = threads;
+    mBufferPool = new ArrayBlockingQueue<ByteBuffer>(threads);
+  }
+
+  /**
+   * Unpacks a jar file into a target directory, which must already exist.
+   *
+   * <p>Existing files in the target directory are overwritten.</p>
+   *
+   * @param jarFile The jar to unpack.
+   * @param targetDirectory The directory to put the unpacked contents in.
+   * @return The number of bytes written.
+   * @throws IOException If there is an error.
+   */
+  public long unpack(File jarFile, File targetDirectory) throws IOException {
+    ZipFile zipFile = new ZipFile(jarFile);
+    try {
+      List<ZipEntry> fileEntries = createDirectories(zipFile, targetDirectory);
+      if (1 == mThreads || fileEntries.size() < 2) {
+        return new EntryWriter(zipFile, fileEntries, targetDirectory, new AtomicInteger()).call();
+      }
+      return unpackConcurrently(zipFile, fileEntries, targetDirectory);
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  /**
+   * Creates every directory needed to unpack a jar.
+   *
+   * @param zipFile The open jar.
+   * @param targetDirectory The directory the jar is unpacked into.
+   * @return The entries of the jar that are files.
+   * @throws IOException If an entry is invalid or a directory could not be created.
+   */
+  private static List<ZipEntry> createDirectories(ZipFile zipFile, File targetDirectory)
+      throws IOException {
+    List<ZipEntry> fileEntries = new ArrayList<ZipEntry>(zipFile.size());
+    SortedSet<String> directories = new TreeSet<String>();
+    for (Enumeration<? extends ZipEntry> entries = zipFile.entries();
+         entries.hasMoreElements();) {
+      ZipEntry entry = entries.nextElement();
+      String name = entry.getName();
+      checkEntryName(name);
+      if (entry.isDirectory()) {
+        directories.add(name);
+      } else {
+        fileEntries.add(entry);
+        int slash = name.lastIndexOf('/');
+        if (slash > 0) {
+          directories.add(name.substring(0, slash + 1));
+        }
+      }
+    }
+    // mkdirs() creates parents too, so only the deepest directories need to be created.
+    String previous = null;
+    for (String directory : directories) {
+      if (null != previous && !directory.startsWith(previous)) {
+        mkdirs(new File(targetDirectory, previous));
+      }
+      previous = directory;
+    }
+    if (null != previous) {
+      mkdirs(new File(targetDirectory, previous));
+    }
+    return fileEntries;
+  }
+
+  /**
+   * Writes file entries with a pool of threads.
+   *
+   * @param zipFile The open jar.
+   * @param fileEntries The file entries to write.
+   * @param targetDirectory The directory the jar is unpacked into.
+   * @return The number of bytes written.
+   * @throws IOException If there is an error.
+   */
+  private long unpackConcurrently(ZipFile zipFile, List<ZipEntry> fileEntries,
+      File targetDirectory) throws IOException {
+    int threads = Math.min(mThreads, fileEntries.size());
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder()
+            .setNameFormat("jde-unpacker-%d")
+            .setDaemon(true)
+            .build());
+    try {
+      AtomicInteger nextEntry = new AtomicInteger();
+      List<Future<Long>> futures = new ArrayList<Future<Long>>(threads);
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(
+            new EntryWriter(zipFile, fileEntries, targetDirectory, nextEntry)));
+      }
+      long bytes = 0;
+      for (Future<Long> future : futures) {
+        try {
+          bytes += future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while unpacking " + zipFile.getName(), e);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+          }
+          throw new IOException("Unable to unpack " + zipFile.getName(), e.getCause());
+        }
+      }
+      return bytes;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Borrows a buffer from the pool, allocating one if none is available.
+   *
+   * @return A cleared direct buffer.
+   */
+  private ByteBuffer borrowBuffer() {
+    ByteBuffer buffer = mBufferPool.poll();
+    if (null == buffer) {
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Returns a buffer to the pool.  Buffers beyond the pool's capacity are dropped.
+   *
+   * @param buffer The buffer.
+   */
+  private void returnBuffer(ByteBuffer buffer) {
+    mBufferPool.offer(buffer);
+  }
+
+  /**
+   * Rejects entry names that would be written outside the target directory.
+   *
+   * @param name The name of a jar entry.
+   * @throws IOException If the name is absolute or contains a parent directory reference.
+   */
+  private static void checkEntryName(String name) throws IOException {
+    if (name.startsWith("/") || name.equals("..") || name.startsWith("../")
+        || name.contains("/../") || name.endsWith("/..")) {
+      throw new IOException("Refusing to unpack entry outside the target directory: " + name);
+    }
+  }
+
+  /**
+   * Creates a directory and its parents if they do not already exist.
+   *
+   * @param directory The directory.
+   * @throws IOException If the directory could not be created.
+   */
+  private static void mkdirs(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException("Could not make directory: " + directory.getPath());
+    }
+  }
+
+  /**
+   * Writes file entries, claiming the next unwritten entry from a shared counter until none
+   * are left.
+   */
+  private class EntryWriter implements Callable<Long> {
+    /** The open jar. */
+    private final ZipFile mZipFile;
+    /** The file entries to write. */
+    private final List<ZipEntry> mFileEntries;
+    /** The directory the jar is unpacked into. */
+    private final File mTargetDirectory;
+    /** The index of the next entry to be claimed by any writer. */
+    private final AtomicInteger mNextEntry;
+
+    /**
+     * Creates a new <code>EntryWriter</code> instance.
+     *
+     * @param zipFile The open jar.
+     * @param fileEntries The file entries to write.
+     * @param targetDirectory The directory the jar is unpacked into.
+     * @param nextEntry The index of the next entry to be claimed by any writer.
+     */
+    public EntryWriter(ZipFile zipFile, List<ZipEntry> fileEntries, File targetDirectory,
+        AtomicInteger nextEntry) {
+      mZipFile = zipFile;
+      mFileEntries = fileEntries;
+      mTargetDirectory = targetDirectory;
+      mNextEntry = nextEntry;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long call() throws IOException {
+      ByteBuffer buffer = borrowBuffer();
+      try {
+        long bytes = 0;
+        for (int i = mNextEntry.getAndIncrement(); i < mFileEntries.size();
+             i = mNextEntry.getAndIncrement()) {
+          if (Thread.interrupted()) {
+            throw new IOException("Interrupted while unpacking " + mZipFile.getName());
+          }
+          bytes += write(mFileEntries.get(i), buffer);
+        }
+        return bytes;
+      } finally {
+        returnBuffer(buffer);
+      }
+    }
+
+    /**
+     * Copies a single entry to its file.
+     *
+     * @param entry The entry.
+     * @param buffer The buffer to copy through.
+     * @return The number of bytes written.
+     * @throws IOException If there is an error.
+     */
+    private long write(ZipEntry entry, ByteBuffer buffer) throws IOException {
+      ReadableByteChannel in = Channels.newChannel(mZipFile.getInputStream(entry));
+      try {
+        FileChannel out = new FileOutputStream(
+            new File(mTargetDirectory, entry.getName())).getChannel();
+        try {
+          long bytes = 0;
+          buffer.clear();
+          while (in.read(buffer) >= 0 || buffer.position() > 0) {
+            buffer.flip();
+            bytes += out.write(buffer);
+            buffer.compact();
+          }
+          return bytes;
+        } finally {
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+    }
+  }
+}
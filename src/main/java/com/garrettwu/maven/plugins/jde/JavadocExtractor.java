@@ -0,0 +1,191 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts individual pages or packages from a javadoc jar on demand.
+ *
+ * <p>When the plugin runs in lazy javadoc mode, the prj.el file points at the javadoc jars
+ * instead of unpacked directories.  Emacs can then run this class to extract just the page
+ * it is about to display:</p>
+ *
+ * <pre>
+ * java -cp jde-maven-plugin.jar com.garrettwu.maven.plugins.jde.JavadocExtractor \
+ *     /path/to/foo-javadoc.jar /path/to/cache/dir com/foo/Bar.html
+ * </pre>
+ *
+ * <p>The last argument may name a single page (<code>com/foo/Bar.html</code>) or a package
+ * (<code>com/foo/</code> or <code>com.foo</code>), in which case every page directly in the
+ * package is extracted.  The files at the root of the jar (style sheets, package lists) are
+ * always extracted too so the pages render correctly.  The absolute path of the requested
+ * page (or of the package summary) is printed to standard output.</p>
+ *
+ * <p>Entries are read with random access through the jar's central directory, and entries
+ * already extracted are not written again.  This class only depends on the JDK so it can be
+ * run with nothing but the plugin jar on the classpath.</p>
+ */
+public final class JavadocExtractor {
+  /** The size of the buffer used to copy entries. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The javadoc jar. */
+  private final File mJarFile;
+
+  /** The directory to extract into. */
+  private final File mTargetDirectory;
+
+  /**
+   * Creates a new <code>JavadocExtractor</code> instance.
+   *
+   * @param jarFile The javadoc jar.
+   * @param targetDirectory The directory to extract into.
+   */
+  public JavadocExtractor(File jarFile, File targetDirectory) {
+    mJarFile = jarFile;
+    mTargetDirectory = targetDirectory;
+  }
+
+  /**
+   * Extracts a page or a package from the javadoc jar.
+   *
+   * @param name The path of a page within the jar, or the name of a package.
+   * @return The extracted page, or the package summary page of an extracted package.
+   * @throws IOException If the page or package is not in the jar, or there is an error.
+   */
+  public File extract(String name) throws IOException {
+    ZipFile zipFile = new ZipFile(mJarFile);
+    try {
+      extractRootFiles(zipFile);
+
+      ZipEntry entry = zipFile.getEntry(name);
+      if (null != entry && !entry.isDirectory()) {
+        return extractEntry(zipFile, entry);
+      }
+
+      String packagePath = toPackagePath(name);
+      int extracted = 0;
+      for (Enumeration<? extends ZipEntry> entries = zipFile.entries();
+           entries.hasMoreElements();) {
+        ZipEntry packageEntry = entries.nextElement();
+        if (!packageEntry.isDirectory() && isDirectlyIn(packageEntry.getName(), packagePath)) {
+          extractEntry(zipFile, packageEntry);
+          extracted++;
+        }
+      }
+      if (0 == extracted) {
+        throw new IOException("No page or package named " + name + " in " + mJarFile.getPath());
+      }
+      return new File(mTargetDirectory, packagePath + "package-summary.html");
+    } finally {
+      zipFile.close();
+    }
+  }
+
+  /**
+   * Extracts the files at the root of the jar.
+   *
+   * @param zipFile The open javadoc jar.
+   * @throws IOException If there is an error.
+   */
+  private void extractRootFiles(ZipFile zipFile) throws IOException {
+    for (Enumeration<? extends ZipEntry> entries = zipFile.entries();
+         entries.hasMoreElements();) {
+      ZipEntry entry = entries.nextElement();
+      if (!entry.isDirectory() && isDirectlyIn(entry.getName(), "")) {
+        extractEntry(zipFile, entry);
+      }
+    }
+  }
+
+  /**
+   * Extracts a single entry, unless it has already been extracted.
+   *
+   * @param zipFile The open javadoc jar.
+   * @param entry The entry to extract.
+   * @return The extracted file.
+   * @throws IOException If there is an error.
+   */
+  private File extractEntry(ZipFile zipFile, ZipEntry entry) throws IOException {
+    File outputFile = new File(mTargetDirectory, entry.getName());
+    if (!outputFile.getCanonicalPath().startsWith(
+            mTargetDirectory.getCanonicalPath() + File.separator)) {
+      throw new IOException("Entry " + entry.getName() + " is outside the target directory");
+    }
+    if (outputFile.isFile() && outputFile.length() == entry.getSize()) {
+      return outputFile;
+    }
+    File parent = outputFile.getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+      throw new IOException("Could not make directory: " + parent.getPath());
+    }
+    InputStream inputStream = zipFile.getInputStream(entry);
+    try {
+      OutputStream outputStream = new BufferedOutputStream(
+          new FileOutputStream(outputFile), BUFFER_SIZE);
+      try {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while (-1 != (read = inputStream.read(buffer))) {
+          outputStream.write(buffer, 0, read);
+        }
+      } finally {
+        outputStream.close();
+      }
+    } finally {
+      inputStream.close();
+    }
+    return outputFile;
+  }
+
+  /**
+   * Converts a package name or path into a jar path ending with a slash.
+   *
+   * @param name A package name (<code>com.foo</code>) or path (<code>com/foo</code>).
+   * @return The package path (<code>com/foo/</code>).
+   */
+  private static String toPackagePath(String name) {
+    String path = name.indexOf('/') < 0 ? name.replace('.', '/') : name;
+    return path.endsWith("/") ? path : path + "/";
+  }
+
+  /**
+   * Determines whether an entry lies directly in a directory (not in a subdirectory).
+   *
+   * @param entryName The name of the entry.
+   * @param directoryPath The directory path, ending in a slash, or empty for the root.
+   * @return Whether the entry lies directly in the directory.
+   */
+  private static boolean isDirectlyIn(String entryName, String directoryPath) {
+    return entryName.startsWith(directoryPath)
+        && entryName.indexOf('/', directoryPath.length()) < 0;
+  }
+
+  /**
+   * Runs the extractor from the command line.
+   *
+   * @param args The javadoc jar, the target directory, and the page or package to extract.
+   */
+  public static void main(String[] args) {
+    if (3 != args.length) {
+      System.err.println("Usage: JavadocExtractor <javadoc jar> <target dir> <page or package>");
+      System.exit(2);
+    }
+    try {
+      File page = new JavadocExtractor(new File(args[0]), new File(args[1])).extract(args[2]);
+      System.out.println(page.getAbsolutePath());
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+  }
+}
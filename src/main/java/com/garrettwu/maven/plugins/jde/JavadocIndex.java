@@ -0,0 +1,118 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Records which directory under the javadoc directory holds the unpacked javadoc of each
+ * artifact.
+ *
+ * <p>Entries are keyed by artifact name (groupId:artifactId:version).  Directories are
+ * stored relative to the javadoc directory, with forward slashes as separators, so the index
+ * stays valid if the javadoc directory is moved.</p>
+ *
+ * <p>This class is safe for use by multiple resolver threads.</p>
+ */
+public class JavadocIndex {
+  /** The name of the index file within the javadoc directory. */
+  public static final String FILE_NAME = "index.properties";
+
+  /** A mapping from artifact name to its javadoc directory. */
+  private final SortedMap<String, String> mDirectories;
+
+  /** Whether the index has changed since it was loaded. */
+  private boolean mModified;
+
+  /**
+   * Creates a new, empty <code>JavadocIndex</code> instance.
+   */
+  public JavadocIndex() {
+    mDirectories = new TreeMap<String, String>();
+    mModified = false;
+  }
+
+  /**
+   * Loads the index from an input stream in java properties format.
+   *
+   * @param inputStream The contents of a java properties file.
+   * @throws IOException If there is an error reading from the stream.
+   */
+  public synchronized void load(InputStream inputStream) throws IOException {
+    Properties properties = new Properties();
+    properties.load(inputStream);
+    for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+      mDirectories.put(entry.getKey().toString(), entry.getValue().toString());
+    }
+  }
+
+  /**
+   * Stores the index to an output stream in java properties format.
+   *
+   * @param outputStream The stream to write to.
+   * @throws IOException If there is an error writing to the stream.
+   */
+  public synchronized void store(OutputStream outputStream) throws IOException {
+    Properties properties = new Properties();
+    properties.putAll(mDirectories);
+    PropertiesFiles.store(properties, outputStream, "Javadoc directories by artifact name");
+    mModified = false;
+  }
+
+  /**
+   * Determines whether the index has changed since it was loaded or stored.
+   *
+   * @return Whether the index should be stored again.
+   */
+  public synchronized boolean isModified() {
+    return mModified;
+  }
+
+  /**
+   * Gets the javadoc directory of an artifact.
+   *
+   * @param artifactName The name of the artifact (groupId:artifactId:version).
+   * @return The directory relative to the javadoc directory, or null if it is not indexed.
+   */
+  public synchronized String get(String artifactName) {
+    return mDirectories.get(artifactName);
+  }
+
+  /**
+   * Records the javadoc directory of an artifact.
+   *
+   * @param artifactName The name of the artifact (groupId:artifactId:version).
+   * @param directory The directory relative to the javadoc directory.
+   */
+  public synchronized void put(String artifactName, String directory) {
+    if (!directory.equals(mDirectories.put(artifactName, directory))) {
+      mModified = true;
+    }
+  }
+
+  /**
+   * Forgets the javadoc directory of an artifact.
+   *
+   * @param artifactName The name of the artifact (groupId:artifactId:version).
+   */
+  public synchronized void remove(String artifactName) {
+    if (null != mDirectories.remove(artifactName)) {
+      mModified = true;
+    }
+  }
+
+  /**
+   * Gets a snapshot of all indexed artifacts and their directories.
+   *
+   * @return The javadoc directories, sorted by artifact name.
+   */
+  public synchronized SortedMap<String, String> getDirectories() {
+    return new TreeMap<String, String>(mDirectories);
+  }
+}
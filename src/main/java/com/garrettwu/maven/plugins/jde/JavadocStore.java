@@ -0,0 +1,337 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.io.Files;
+
+/**
+ * A javadoc directory shared by every project on a machine.
+ *
+ * <p>Each javadoc jar is unpacked once into
+ * <code>root/groupId/artifactId/version/hash</code>, where the hash is taken from the jar
+ * contents, and every project references that copy.  A <code>.complete</code> marker is
+ * written into an entry once it is fully unpacked; entries without one are unpacked again.</p>
+ *
+ * <p>Each entry has a lock file next to it, so concurrent builds (in this or other processes)
+ * never unpack the same jar at the same time.  The marker's modification time is updated,
+ * under the lock, whenever an entry is used, and {@link #evict()} removes the least recently
+ * used entries once the store grows beyond its maximum size.  An entry used after eviction
+ * picked it is kept.</p>
+ *
+ * <p>This class is safe for use by multiple threads.</p>
+ */
+public class JavadocStore {
+  /** The name of the marker written into a fully unpacked entry. */
+  public static final String COMPLETE_FILE_NAME = ".complete";
+
+  /** The name of the file next to an entry's version directory stamping the jar. */
+  private static final String JAR_STAMP_FILE_NAME = "jar.stamp";
+
+  /** The number of hex characters of the jar hash used to name an entry. */
+  private static final int HASH_LENGTH = 16;
+
+  /** The root directory of the store. */
+  private final File mRoot;
+
+  /** The size in bytes the store is trimmed to by {@link #evict()}. */
+  private final long mMaxBytes;
+
+  /** Entries used through this instance, which are never evicted by it. */
+  private final Set<File> mUsedEntries;
+
+  /**
+   * Creates a new <code>JavadocStore</code> instance.
+   *
+   * @param root The root directory of the store.
+   * @param maxBytes The size in bytes the store is trimmed to, or zero for no limit.
+   */
+  public JavadocStore(File root, long maxBytes) {
+    if (null == root) {
+      throw new IllegalArgumentException("root may not be null");
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("maxBytes may not be negative");
+    }
+    mRoot = root;
+    mMaxBytes = maxBytes;
+    mUsedEntries = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+  }
+
+  /**
+   * Gets the root directory of the store.
+   *
+   * @return The root directory.
+   */
+  public File getRoot() {
+    return mRoot;
+  }
+
+  /**
+   * Determines whether a path is within the store.
+   *
+   * @param path A path, such as the javadoc path of a dependency.
+   * @return Whether it is under the root of the store.
+   */
+  public boolean contains(String path) {
+    return path.startsWith(mRoot.getPath() + File.separator);
+  }
+
+  /**
+   * Marks an entry unpacked by an earlier run as used, so it is not evicted.
+   *
+   * @param entry The directory of the entry.
+   * @return Whether the entry is still in the store and fully unpacked, or false if it could
+   *     not be locked.
+   */
+  public boolean use(File entry) {
+    File marker = new File(entry, COMPLETE_FILE_NAME);
+    if (!marker.isFile()) {
+      return false;
+    }
+    try {
+      EntryLock lock = EntryLock.acquire(EntryLock.getLockFile(entry), true);
+      try {
+        // It may have been evicted while we waited for the lock.
+        if (!marker.isFile()) {
+          return false;
+        }
+        mUsedEntries.add(entry);
+        marker.setLastModified(System.currentTimeMillis());
+        return true;
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Gets the directory holding the contents of a javadoc jar, unpacking it if needed.
+   *
+   * @param groupId The group id of the artifact.
+   * @param artifactId The artifact id of the artifact.
+   * @param version The version of the artifact.
+   * @param jarFile The javadoc jar.
+   * @param unpacker Unpacks the jar if it is not in the store yet.
+   * @param metrics Records store hits and misses, and the bytes unpacked.
+   * @return The directory the jar is unpacked in.
+   * @throws IOException If there is an error.
+   */
+  public File unpack(String groupId, String artifactId, String version, File jarFile,
+      JarUnpacker unpacker, ResolutionMetrics metrics) throws IOException {
+    File versionDir = new File(new File(new File(mRoot, groupId), artifactId), version);
+    if (!versionDir.isDirectory() && !versionDir.mkdirs() && !versionDir.isDirectory()) {
+      throw new IOException("Could not create directory: " + versionDir.getPath());
+    }
+    File entry = new File(versionDir, getJarHash(versionDir, jarFile).substring(0, HASH_LENGTH));
+    mUsedEntries.add(entry);
+
+    File marker = new File(entry, COMPLETE_FILE_NAME);
+    // Hits are locked too, so an entry is never handed out while it is being evicted.
+    EntryLock lock = EntryLock.acquire(EntryLock.getLockFile(entry), true);
+    try {
+      // Another build may have unpacked it while we waited for the lock.
+      boolean hit = marker.isFile();
+      metrics.countCacheLookup("javadoc-store", hit);
+      if (hit) {
+        marker.setLastModified(System.currentTimeMillis());
+        return entry;
+      }
+      if (entry.exists()) {
+        Files.deleteRecursively(entry);
+      }
+      if (!entry.mkdirs()) {
+        throw new IOException("Could not create directory: " + entry.getPath());
+      }
+      long size = unpacker.unpack(jarFile, entry);
+      metrics.count(ResolutionMetrics.BYTES_UNPACKED, size);
+      writeMarker(marker, size);
+      return entry;
+    } finally {
+      lock.release();
+    }
+  }
+
+  /**
+   * Removes the least recently used entries until the store is no larger than its maximum
+   * size.  Entries used through this instance, entries that are still being unpacked,
+   * entries locked by another build, and entries used since the store was listed are kept.
+   *
+   * @return The number of bytes removed.
+   * @throws IOException If there is an error.
+   */
+  public long evict() throws IOException {
+    if (0 == mMaxBytes) {
+      return 0L;
+    }
+    List<File> markers = findMarkers();
+    long total = 0;
+    final Map<File, Long> lastUsed = new HashMap<File, Long>();
+    for (File marker : markers) {
+      total += readMarker(marker);
+      lastUsed.put(marker, marker.lastModified());
+    }
+    Collections.sort(markers, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        long aTime = lastUsed.get(a);
+        long bTime = lastUsed.get(b);
+        return aTime < bTime ? -1 : (aTime == bTime ? 0 : 1);
+      }
+    });
+
+    long removed = 0;
+    for (File marker : markers) {
+      if (total - removed <= mMaxBytes) {
+        break;
+      }
+      File entry = marker.getParentFile();
+      if (mUsedEntries.contains(entry)) {
+        continue;
+      }
+      EntryLock lock = EntryLock.acquire(EntryLock.getLockFile(entry), false);
+      if (null == lock) {
+        continue;
+      }
+      try {
+        if (!marker.isFile() || marker.lastModified() != lastUsed.get(marker)) {
+          // Another build used it since we looked, so it is no longer least recently used.
+          continue;
+        }
+        long size = readMarker(marker);
+        // Drop the marker first, so a partial delete is never mistaken for an entry.
+        if (!marker.delete()) {
+          continue;
+        }
+        Files.deleteRecursively(entry);
+        removed += size;
+      } finally {
+        lock.release();
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Gets the hash of a jar, reusing the stamp recorded for its version if the jar has not
+   * changed since.
+   *
+   * @param versionDir The directory holding the entries for the jar's version.
+   * @param jarFile The jar.
+   * @return The hex-encoded hash of the jar.
+   * @throws IOException If there is an error.
+   */
+  private static String getJarHash(File versionDir, File jarFile) throws IOException {
+    File stampFile = new File(versionDir, JAR_STAMP_FILE_NAME);
+    JarStamp stamp = JarStamp.read(stampFile);
+    if (null != stamp && jarFile.length() == stamp.getSize()
+        && jarFile.lastModified() == stamp.getLastModified()) {
+      return stamp.getHash();
+    }
+    stamp = JarStamp.of(jarFile);
+    File tempFile = File.createTempFile(".jar", ".stamp", versionDir);
+    stamp.write(tempFile);
+    if (!tempFile.renameTo(stampFile)) {
+      // Another build updated the stamp first; ours only saves hashing next time.
+      tempFile.delete();
+    }
+    return stamp.getHash();
+  }
+
+  /**
+   * Finds the markers of all complete entries in the store.
+   *
+   * @return The markers.
+   */
+  private List<File> findMarkers() {
+    List<File> markers = new ArrayList<File>();
+    for (File groupDir : listDirectories(mRoot)) {
+      for (File artifactDir : listDirectories(groupDir)) {
+        for (File versionDir : listDirectories(artifactDir)) {
+          for (File entry : listDirectories(versionDir)) {
+            File marker = new File(entry, COMPLETE_FILE_NAME);
+            if (marker.isFile()) {
+              markers.add(marker);
+            }
+          }
+        }
+      }
+    }
+    return markers;
+  }
+
+  /**
+   * Lists the subdirectories of a directory.
+   *
+   * @param dir A directory.
+   * @return Its subdirectories, or an empty array if it cannot be listed.
+   */
+  private static File[] listDirectories(File dir) {
+    File[] files = dir.listFiles();
+    if (null == files) {
+      return new File[0];
+    }
+    List<File> directories = new ArrayList<File>(files.length);
+    for (File file : files) {
+      if (file.isDirectory()) {
+        directories.add(file);
+      }
+    }
+    return directories.toArray(new File[directories.size()]);
+  }
+
+  /**
+   * Writes the marker of a complete entry.
+   *
+   * @param marker The marker file.
+   * @param size The number of bytes in the entry.
+   * @throws IOException If there is an error.
+   */
+  private static void writeMarker(File marker, long size) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("size", Long.toString(size));
+    FileOutputStream outputStream = new FileOutputStream(marker);
+    try {
+      properties.store(outputStream, "Unpacked javadoc");
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Reads the size recorded in the marker of a complete entry.
+   *
+   * @param marker The marker file.
+   * @return The number of bytes in the entry, or zero if unknown.
+   * @throws IOException If there is an error.
+   */
+  private static long readMarker(File marker) throws IOException {
+    Properties properties = new Properties();
+    FileInputStream inputStream = new FileInputStream(marker);
+    try {
+      properties.load(inputStream);
+    } finally {
+      inputStream.close();
+    }
+    try {
+      return Long.parseLong(properties.getProperty("size", "0"));
+    } catch (NumberFormatException e) {
+      return 0L;
+    }
+  }
+}
@@ -4,16 +4,22 @@ package com.garrettwu.maven.plugins.jde;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
-import org.apache.maven.artifact.factory.ArtifactFactory;
-import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.artifact.resolver.ArtifactResolver;
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
 import org.apache.maven.plugin.MojoExecutionException;
-import org.apache.maven.project.MavenProject;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
 
 /**
  * Goal which generates a prj.el file used by the Emacs JDE package.
@@ -21,81 +27,63 @@ import org.apache.maven.project.MavenProject;
  * @goal jde
  * @requiresDependencyResolution test
  */
-public class JdeMojo extends AbstractMojo {
+public class JdeMojo extends AbstractJdeMojo {
   /**
-   * A factory for maven artifacts.
-   *
-   * @component
-   */
-  private ArtifactFactory mArtifactFactory;
-
-  /**
-   * A utility that resolves artifacts (possibly downloading into the local repository).
-   *
-   * @component
-   */
-  private ArtifactResolver mArtifactResolver;
-
-  /**
-   * The local maven repository.
+   * Location of the prj.el file to generate.
    *
-   * @parameter default-value="${localRepository}"
+   * @parameter property="projectFile" expression="${jde.project.file}" default-value="${basedir}/prj.el"
    * @required
-   * @readonly
    */
-  private ArtifactRepository mLocalArtifactRepository;
+  private File mProjectFile;
 
   /**
-   * The maven project this mojo is working on.
+   * Look up sources and javadoc jars in the local repository only, without consulting the
+   * artifact resolver.  Jars not found are looked for again on the next run, so jars
+   * downloaded later (e.g. by jde:prefetch) are picked up.
    *
-   * @parameter property="mavenProject" default-value="${project}"
+   * @parameter property="offlineFast" expression="${jde.offline.fast}" default-value="false"
    * @required
-   * @readonly
    */
-  private MavenProject mMavenProject;
+  private boolean mOfflineFast;
 
   /**
-   * Location of the prj.el file to generate.
+   * In offline-fast mode, resolve jars missing from the local repository as usual.
    *
-   * @parameter property="projectFile" expression="${jde.project.file}" default-value="${basedir}/prj.el"
+   * @parameter property="remoteFallback" expression="${jde.remote.fallback}" default-value="false"
    * @required
    */
-  private File mProjectFile;
+  private boolean mRemoteFallback;
 
   /**
-   * Directory where javadocs for dependencies should unpacked.
+   * The maximum number of dependencies to resolve sources and javadoc for concurrently.
    *
-   * @parameter property="javadocDir" expression="${jde.javadoc.dir}" default-value="${basedir}/.jde/javadoc"
+   * @parameter property="resolverThreads" expression="${jde.resolver.threads}" default-value="1"
    * @required
    */
-  private File mJavadocDir;
+  private int mResolverThreads;
 
   /**
-   * A java properties file containing a mapping from groupId:artifactId:version to its javadoc.
+   * A file recording the fingerprint of the inputs used to generate the prj.el file.
    *
-   * @parameter property="javadocPathsFile" expression="${jde.javadoc.paths}" default-value="${env.HOME}/.jde/javadoc.properties"
-   * @required
+   * @parameter property="fingerprintFile" expression="${jde.fingerprint.file}" default-value="${basedir}/.jde/prj.el.fingerprint"
    */
-  private File mJavadocPathsFile;
+  private File mFingerprintFile;
 
   /**
-   * Include transitive dependencies in generated prj.el.
+   * Regenerate the prj.el file even if its inputs have not changed.
    *
-   * @parameter property="transitiveMode" expression="${jde.transitive.mode}" default-value="false"
+   * @parameter property="force" expression="${jde.force}" default-value="false"
    * @required
    */
-  private boolean mTransitiveMode;
+  private boolean mForce;
 
   /**
-   * Sets the maven project this mojo works over.
+   * An index of the classes in the dependencies, written alongside prj.el, so editors can
+   * look up classes without opening jars.  No index is written if this is not set.
    *
-   * <p>The plugin framework will call this method with the correct maven project.</p>
-   *
-   * @param mavenProject The maven project.
+   * @parameter property="classIndexFile" expression="${jde.class.index.file}"
    */
-  public void setMavenProject(MavenProject mavenProject) {
-    mMavenProject = mavenProject;
-  }
+  private File mClassIndexFile;
 
   /**
    * Sets the output prj.el file this plugin should write.
@@ -110,33 +98,59 @@ public class JdeMojo extends AbstractMojo {
   }
 
   /**
-   * The directory used to unpack the javadoc for project dependencies.
+   * Determines whether sources and javadoc jars are looked up in the local repository only.
+   *
+   * @param offlineFast whether offline-fast mode should be enabled
+   */
+  public void setOfflineFast(boolean offlineFast) {
+    mOfflineFast = offlineFast;
+  }
+
+  /**
+   * Determines whether offline-fast mode falls back to the artifact resolver for jars that
+   * are not in the local repository.
+   *
+   * @param remoteFallback whether remote fallback should be enabled
+   */
+  public void setRemoteFallback(boolean remoteFallback) {
+    mRemoteFallback = remoteFallback;
+  }
+
+  /**
+   * Sets the maximum number of dependencies whose sources and javadoc are resolved
+   * concurrently.  A value of 1 resolves dependencies one at a time.
    *
-   * @param javadocDir The directory to unpack javadoc into.
+   * @param resolverThreads The number of resolver threads.
    */
-  public void setJavadocDir(File javadocDir) {
-    mJavadocDir = javadocDir;
+  public void setResolverThreads(int resolverThreads) {
+    mResolverThreads = resolverThreads;
   }
 
   /**
-   * The java properties file containing a mapping from artifact name
-   * (groupId:artifactId:version) to its javadoc location.
+   * Sets the file recording the fingerprint of the inputs used to generate the prj.el file.
    *
-   * <p>The javadoc location may be a filesystem path or a URL.</p>
+   * @param fingerprintFile The fingerprint file, or null to always regenerate.
+   */
+  public void setFingerprintFile(File fingerprintFile) {
+    mFingerprintFile = fingerprintFile;
+  }
+
+  /**
+   * Determines whether to regenerate the prj.el file even if its inputs have not changed.
    *
-   * @param javadocPathsFile a <code>File</code> value
+   * @param force whether regeneration should be forced
    */
-  public void setJavadocPathsFile(File javadocPathsFile) {
-    mJavadocPathsFile = javadocPathsFile;
+  public void setForce(boolean force) {
+    mForce = force;
   }
 
   /**
-   * Determines whether to include transitive dependencies in generated prj.el
+   * Sets the file to write an index of the classes in the dependencies to.
    *
-   * @param transitiveMode whether transitive mode should be enabled
+   * @param classIndexFile The class index file, or null to not write one.
    */
-  public void setTransitiveMode(boolean transitiveMode) {
-    mTransitiveMode = transitiveMode;
+  public void setClassIndexFile(File classIndexFile) {
+    mClassIndexFile = classIndexFile;
   }
 
   /**
@@ -150,89 +164,261 @@ public class JdeMojo extends AbstractMojo {
     if (null == mProjectFile) {
       throw new MojoExecutionException("Required property ${jde.project.file} was not set.");
     }
-    // Make sure we know where to unpack javadoc files.
-    if (null == mJavadocDir) {
-      throw new MojoExecutionException("Required property ${jde.javadoc.dir} was not set.");
+    validateParameters();
+    if (mResolverThreads < 1) {
+      throw new MojoExecutionException("Property ${jde.resolver.threads} must be at least 1.");
     }
 
-    getLog().debug("Reading local maven environment...");
-    MavenEnvironment mavenEnvironment = new DefaultMavenEnvironment(
-        getLog(), mMavenProject, mArtifactFactory, mArtifactResolver, mLocalArtifactRepository);
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    long startNanos = System.nanoTime();
+    String fingerprint = null;
+    if (null != mFingerprintFile) {
+      try {
+        fingerprint = computeFingerprint();
+        if (!mForce && mProjectFile.exists()
+            && (null == mClassIndexFile || mClassIndexFile.exists())
+            && fingerprint.equals(ProjectFingerprint.read(mFingerprintFile))
+            && useStoreEntries()) {
+          getLog().info("JDE project file is up to date: " + mProjectFile.getPath());
+          return;
+        }
+      } catch (IOException e) {
+        throw new MojoExecutionException("Unable to fingerprint the project inputs", e);
+      }
+      metrics.recordPhase("fingerprint", startNanos);
+    }
+
+    Collection<ProjectDependency> dependencies =
+      resolveDependencies(isTransitiveMode(), mResolverThreads, metrics);
 
-    UserPathMapping javadocUserPathMapping = new UserPathMapping();
-    if (null != mJavadocPathsFile && mJavadocPathsFile.exists()) {
-      getLog().info("Loading user path mapping for javadocs: " + mJavadocPathsFile.getPath());
+    writeProjectFile(getMavenProject(), dependencies, mProjectFile, metrics);
+
+    if (null != mClassIndexFile) {
+      getLog().info("Writing the class index...");
+      startNanos = System.nanoTime();
       try {
-        loadUserPathMapping(javadocUserPathMapping, mJavadocPathsFile);
+        writeClassIndex(dependencies, mClassIndexFile);
       } catch (IOException e) {
         throw new MojoExecutionException(
-            "Unable to load javadoc paths from " + mJavadocPathsFile.getPath(), e);
+            "Error writing class index to " + mClassIndexFile.getPath(), e);
       }
-    } else {
-      getLog().debug("No user path mapping for javadocs specified.");
+      metrics.recordPhase("class-index", startNanos);
     }
 
-    getLog().info("Resolving project dependencies...");
-    ProjectDependencyFactory dependencyFactory
-        = new ProjectDependencyFactory(mavenEnvironment, mJavadocDir, javadocUserPathMapping);
-    ProjectDependencyReader dependencyReader
-        = new ProjectDependencyReader(mavenEnvironment, dependencyFactory);
-    Collection<ProjectDependency> dependencies =
-      dependencyReader.getDependencies(mTransitiveMode);
+    if (null != fingerprint && metrics.getCount(ResolutionPolicy.UNAVAILABLE) > 0) {
+      // Leave the project file out of date, so the next run resolves the missing jars.
+      getLog().warn("Some sources and javadoc could not be resolved in time; "
+          + "they will be resolved again next run.");
+    } else if (null != fingerprint
+        && metrics.getCount(ProjectDependencyFactory.OFFLINE_MISSING) > 0) {
+      // Likewise, so the next run picks up the jars a prefetch downloads meanwhile.
+      getLog().info("Some sources and javadoc are not in the local repository yet; "
+          + "they will be looked for again next run.");
+    } else if (null != fingerprint) {
+      try {
+        writeStoreEntries(dependencies);
+        ProjectFingerprint.write(fingerprint, mFingerprintFile);
+      } catch (IOException e) {
+        getLog().warn("Unable to save fingerprint to " + mFingerprintFile.getPath());
+      }
+    }
 
-    getLog().info("Building a JDE project file...");
-    JdeProjectFileBuilder jdeProjectFileBuilder = new JdeProjectFileBuilder()
-        .withMavenProject(mMavenProject)
-        .withDependencies(dependencies);
-    JdeProjectFile jdeProjectFile = jdeProjectFileBuilder.build();
+    reportMetrics(metrics);
+  }
 
-    getLog().info("Writing the JDE project file...");
-    try {
-      writeProjectFile(jdeProjectFile, mProjectFile);
-    } catch (IOException e) {
-      throw new MojoExecutionException(
-          "Error writing project file to " + mProjectFile.getPath(), e);
+  @Override
+  protected void configureDependencyFactory(ProjectDependencyFactory dependencyFactory) {
+    dependencyFactory.setOfflineFast(mOfflineFast);
+    dependencyFactory.setRemoteFallback(mRemoteFallback);
+  }
+
+  /**
+   * Gets the file listing the javadoc store entries the prj.el file references, which is kept
+   * next to the fingerprint file.
+   *
+   * @return The file.
+   */
+  private File getStoreEntriesFile() {
+    return new File(mFingerprintFile.getPath() + ".store");
+  }
+
+  /**
+   * Records the javadoc store entries the prj.el file references, so that runs that find it up
+   * to date can check they have not been evicted since.
+   *
+   * @param dependencies The dependencies written to the prj.el file.
+   * @throws IOException If there is an error.
+   */
+  private void writeStoreEntries(Collection<ProjectDependency> dependencies) throws IOException {
+    File storeEntriesFile = getStoreEntriesFile();
+    if (null == getJavadocStore()) {
+      if (storeEntriesFile.exists() && !storeEntriesFile.delete()) {
+        throw new IOException("Could not delete " + storeEntriesFile.getPath());
+      }
+      return;
+    }
+    JavadocStore javadocStore = new JavadocStore(getJavadocStore(), 0L);
+    StringBuilder entries = new StringBuilder();
+    for (ProjectDependency dependency : dependencies) {
+      String javadocPath = dependency.getJavadocPath();
+      if (null != javadocPath && javadocStore.contains(javadocPath)) {
+        entries.append(javadocPath).append('\n');
+      }
     }
+    Files.createParentDirs(storeEntriesFile.getAbsoluteFile());
+    Files.write(entries, storeEntriesFile, Charsets.UTF_8);
   }
 
   /**
-   * Loads a user path file.
+   * Marks the javadoc store entries the prj.el file references as used, so other projects do
+   * not evict them.
    *
-   * @param userPathMapping The target mapping for the loaded file.
-   * @param userPathFile The file containing the mapping to load.
-   * @return The user path mapping loaded from the file.
+   * @return Whether every entry is still in the store; if not, the prj.el file must be
+   *     generated again.
+   * @throws IOException If there is an error reading the list of entries.
+   */
+  private boolean useStoreEntries() throws IOException {
+    if (null == getJavadocStore()) {
+      return true;
+    }
+    File storeEntriesFile = getStoreEntriesFile();
+    if (!storeEntriesFile.isFile()) {
+      return false;
+    }
+    JavadocStore javadocStore = new JavadocStore(getJavadocStore(), 0L);
+    for (String entry : Files.readLines(storeEntriesFile, Charsets.UTF_8)) {
+      if (!entry.isEmpty() && !javadocStore.use(new File(entry))) {
+        getLog().info("Javadoc was evicted from the store since the last run: " + entry);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes the fingerprint of everything that determines the generated prj.el file: the
+   * project model, the resolved dependency artifacts, the user path mappings, and the
+   * parameters of this goal that affect the output.
+   *
+   * @return The fingerprint.
+   * @throws IOException If there is an error reading an input.
+   */
+  private String computeFingerprint() throws IOException {
+    ProjectFingerprint fingerprint = new ProjectFingerprint()
+        .add("version", JdeProjectFileBuilder.VERSION)
+        .add("projectFile", mProjectFile.getAbsolutePath())
+        .add("javadocDir", getJavadocDir().getAbsolutePath())
+        .add("javadocDirExists", String.valueOf(getJavadocDir().isDirectory()))
+        .add("transitiveMode", String.valueOf(isTransitiveMode()))
+        .add("lazyJavadoc", String.valueOf(isLazyJavadoc()))
+        .add("offlineFast", String.valueOf(mOfflineFast))
+        .add("remoteFallback", String.valueOf(mRemoteFallback))
+        .add("classIndexFile", null == mClassIndexFile ? "" : mClassIndexFile.getAbsolutePath())
+        .add("javadocStore", null == getJavadocStore() ? "" : getJavadocStore().getAbsolutePath())
+        .add("resolutionFilter", String.valueOf(getResolutionFilter()))
+        .addFile("javadocPathsFile", getJavadocPathsFile());
+
+    StringWriter model = new StringWriter();
+    new MavenXpp3Writer().write(model, getMavenProject().getModel());
+    fingerprint.add("model", model.toString());
+
+    Set<?> artifacts = isTransitiveMode()
+        ? getMavenProject().getArtifacts() : getMavenProject().getDependencyArtifacts();
+    SortedSet<String> artifactKeys = new TreeSet<String>();
+    for (Object artifact : artifacts) {
+      if (artifact instanceof Artifact) {
+        File file = ((Artifact) artifact).getFile();
+        artifactKeys.add(Artifacts.getName((Artifact) artifact) + "|"
+            + (null == file ? "" : file.getPath() + "|" + file.lastModified()));
+      }
+    }
+    for (String artifactKey : artifactKeys) {
+      fingerprint.add("artifact", artifactKey);
+    }
+    return fingerprint.toHex();
+  }
+
+  /**
+   * Writes an index of the classes in the project dependencies.
+   *
+   * <p>Only jars added or changed since the last run are scanned; the rest are taken from
+   * the existing index, as recorded by its manifest.</p>
+   *
+   * @param dependencies The project dependencies.
+   * @param indexFile The file to write the index to.
    * @throws IOException If there is an error.
    */
-  private static void loadUserPathMapping(UserPathMapping userPathMapping, File userPathFile)
+  private void writeClassIndex(Collection<ProjectDependency> dependencies, File indexFile)
       throws IOException {
-    FileInputStream fileInputStream = null;
+    List<String> classPaths = new ArrayList<String>(dependencies.size());
+    for (ProjectDependency dependency : dependencies) {
+      classPaths.add(dependency.getClassPath());
+    }
+
+    File manifestFile = new File(indexFile.getPath() + ClassIndexManifest.FILE_SUFFIX);
+    ClassIndex previousIndex = null;
+    ClassIndexManifest manifest = new ClassIndexManifest();
+    if (indexFile.exists() && manifestFile.exists()) {
+      try {
+        previousIndex = readClassIndex(indexFile);
+        loadClassIndexManifest(manifest, manifestFile);
+      } catch (IOException e) {
+        getLog().warn("Rebuilding unreadable class index " + indexFile.getPath());
+        previousIndex = null;
+        manifest = new ClassIndexManifest();
+      }
+    }
+
+    final ClassIndex classIndex = new ClassIndexer(Runtime.getRuntime().availableProcessors())
+        .update(classPaths, previousIndex, manifest);
+    final ClassIndexManifest updatedManifest = manifest;
+    getLog().debug("Indexed " + classIndex.size() + " classes in " + classPaths.size()
+        + " classpath entries.");
+
+    AtomicFileOutputStream.replace(indexFile, new AtomicFileOutputStream.Contents() {
+      @Override
+      public void writeTo(OutputStream outputStream) throws IOException {
+        classIndex.write(outputStream);
+      }
+    });
+    AtomicFileOutputStream.replace(manifestFile, new AtomicFileOutputStream.Contents() {
+      @Override
+      public void writeTo(OutputStream outputStream) throws IOException {
+        updatedManifest.store(outputStream);
+      }
+    });
+  }
+
+  /**
+   * Reads a class index file.
+   *
+   * @param indexFile The file containing the index.
+   * @return The index.
+   * @throws IOException If there is an error.
+   */
+  private static ClassIndex readClassIndex(File indexFile) throws IOException {
+    FileInputStream fileInputStream = new FileInputStream(indexFile);
     try {
-      fileInputStream = new FileInputStream(userPathFile);
-      userPathMapping.load(fileInputStream);
+      return ClassIndex.read(fileInputStream);
     } finally {
-      if (null != fileInputStream) {
-        fileInputStream.close();
-      }
+      fileInputStream.close();
     }
   }
 
   /**
-   * Writes a JDE project file to the filesystem at a specified location.
+   * Loads a class index manifest file.
    *
-   * @param projectFile The JDE project file to write.
-   * @param targetFile The target file in the filesystem.
+   * @param manifest The target manifest for the loaded file.
+   * @param manifestFile The file containing the manifest to load.
    * @throws IOException If there is an error.
    */
-  private static void writeProjectFile(JdeProjectFile projectFile, File targetFile)
+  private static void loadClassIndexManifest(ClassIndexManifest manifest, File manifestFile)
       throws IOException {
-    JdeProjectFileWriter writer = null;
+    FileInputStream fileInputStream = new FileInputStream(manifestFile);
     try {
-      writer = new JdeProjectFileWriter(new FileOutputStream(targetFile));
-      writer.write(projectFile);
+      manifest.load(fileInputStream);
     } finally {
-      if (null != writer) {
-        writer.close();
-      }
+      fileInputStream.close();
     }
   }
 }
@@ -6,19 +6,22 @@ import java.util.List;
 
 /**
  * A JDE project file (prj.el file).
+ *
+ * <p>Paths are kept in their compact form, so a project with many dependencies does not
+ * build a string for every path before writing them out.</p>
  */
 public class JdeProjectFile {
   /** The jde project file version. */
   private final String mVersion;
 
   /** The list of paths to source used by the maven project. */
-  private final List<String> mSourcePaths;
+  private final List<CompactPath> mSourcePaths;
 
   /** The list of paths to classes and jars used by the maven project. */
-  private final List<String> mClassPaths;
+  private final List<CompactPath> mClassPaths;
 
   /** The list of paths/urls to javadoc describing code used by the maven project. */
-  private final List<String> mJavadocPaths;
+  private final List<CompactPath> mJavadocPaths;
 
   /**
    * Creates a new <code>JdeProjectFile</code> instance.
@@ -29,7 +32,7 @@ public class JdeProjectFile {
    * @param javadocPaths A list of paths or urls to javadoc.
    */
   public JdeProjectFile(String version,
-      List<String> sourcePaths, List<String> classPaths, List<String> javadocPaths) {
+      List<CompactPath> sourcePaths, List<CompactPath> classPaths, List<CompactPath> javadocPaths) {
     mVersion = version;
     mSourcePaths = sourcePaths;
     mClassPaths = classPaths;
@@ -50,7 +53,7 @@ public class JdeProjectFile {
    *
    * @return A list of paths.
    */
-  public List<String> getSourcePaths() {
+  public List<CompactPath> getSourcePaths() {
     return mSourcePaths;
   }
 
@@ -59,7 +62,7 @@ public class JdeProjectFile {
    *
    * @return A list of paths.
    */
-  public List<String> getClassPaths() {
+  public List<CompactPath> getClassPaths() {
     return mClassPaths;
   }
 
@@ -68,7 +71,7 @@ public class JdeProjectFile {
    *
    * @return A list of paths and/or urls.
    */
-  public List<String> getJavadocPaths() {
+  public List<CompactPath> getJavadocPaths() {
     return mJavadocPaths;
   }
 }
@@ -18,6 +18,12 @@ public class JdeProjectFileBuilder {
   /** The maven project. */
   private MavenProject mMavenProject;
 
+  /** The source directories of the project, used when there is no maven project. */
+  private List<String> mSourceDirectories;
+
+  /** The output directories of the project, used when there is no maven project. */
+  private List<String> mOutputDirectories;
+
   /** The maven project dependencies. */
   private Collection<ProjectDependency> mDependencies;
 
@@ -26,6 +32,8 @@ public class JdeProjectFileBuilder {
    */
   public JdeProjectFileBuilder() {
     mMavenProject = null;
+    mSourceDirectories = null;
+    mOutputDirectories = null;
     mDependencies = null;
   }
 
@@ -40,6 +48,21 @@ public class JdeProjectFileBuilder {
     return this;
   }
 
+  /**
+   * Sets the build directories of the project directly, for building a project file without
+   * a maven project.  They are ignored if a maven project is set.
+   *
+   * @param sourceDirectories The main and test source directories.
+   * @param outputDirectories The main and test output directories.
+   * @return This builder instance so you can chain configuration method calls.
+   */
+  public JdeProjectFileBuilder withBuildDirectories(List<String> sourceDirectories,
+      List<String> outputDirectories) {
+    mSourceDirectories = sourceDirectories;
+    mOutputDirectories = outputDirectories;
+    return this;
+  }
+
   /**
    * Sets the maven dependencies for the project.
    *
@@ -57,37 +80,46 @@ public class JdeProjectFileBuilder {
    * @return A new JDE project file.
    */
   public JdeProjectFile build() {
-    if (null == mMavenProject) {
-      throw new RuntimeException("Must set maven project");
+    if (null == mMavenProject && (null == mSourceDirectories || null == mOutputDirectories)) {
+      throw new RuntimeException("Must set maven project or build directories");
     }
     if (null == mDependencies) {
       throw new RuntimeException("Must set dependencies");
     }
 
-    List<String> sourcePaths = new ArrayList<String>();
-    List<String> classPaths = new ArrayList<String>();
-    List<String> javadocPaths = new ArrayList<String>();
+    List<CompactPath> sourcePaths = new ArrayList<CompactPath>();
+    List<CompactPath> classPaths = new ArrayList<CompactPath>();
+    List<CompactPath> javadocPaths = new ArrayList<CompactPath>();
 
     // Add paths for local project.
-    sourcePaths.add(mMavenProject.getBuild().getSourceDirectory());
-    sourcePaths.add(mMavenProject.getBuild().getTestSourceDirectory());
-    classPaths.add(mMavenProject.getBuild().getOutputDirectory());
-    classPaths.add(mMavenProject.getBuild().getTestOutputDirectory());
+    if (null != mMavenProject) {
+      sourcePaths.add(CompactPath.of(mMavenProject.getBuild().getSourceDirectory()));
+      sourcePaths.add(CompactPath.of(mMavenProject.getBuild().getTestSourceDirectory()));
+      classPaths.add(CompactPath.of(mMavenProject.getBuild().getOutputDirectory()));
+      classPaths.add(CompactPath.of(mMavenProject.getBuild().getTestOutputDirectory()));
+    } else {
+      for (String sourceDirectory : mSourceDirectories) {
+        sourcePaths.add(CompactPath.of(sourceDirectory));
+      }
+      for (String outputDirectory : mOutputDirectories) {
+        classPaths.add(CompactPath.of(outputDirectory));
+      }
+    }
     // TODO: Add paths for the local project's javadoc.
 
     // Add paths for project dependencies.
     for (ProjectDependency dependency : mDependencies) {
       // Add source path.
       if (dependency.isSourceAvailable()) {
-        sourcePaths.add(dependency.getSourcePath());
+        sourcePaths.add(dependency.getCompactSourcePath());
       }
 
       // Add class path.
-      classPaths.add(dependency.getClassPath());
+      classPaths.add(dependency.getCompactClassPath());
 
       // Add javadoc path.
       if (dependency.isJavadocAvailable()) {
-        javadocPaths.add(dependency.getJavadocPath());
+        javadocPaths.add(dependency.getCompactJavadocPath());
       }
     }
     return new JdeProjectFile(VERSION, sourcePaths, classPaths, javadocPaths);
@@ -2,35 +2,62 @@
 
 package com.garrettwu.maven.plugins.jde;
 
+import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.Arrays;
+import java.io.OutputStreamWriter;
+import java.util.List;
 
-import com.garrettwu.lisp.LispElement;
-import com.garrettwu.lisp.LispIdentifier;
-import com.garrettwu.lisp.LispList;
-import com.garrettwu.lisp.LispQuotedElement;
-import com.garrettwu.lisp.LispString;
-
-import com.google.common.base.Function;
-import com.google.common.collect.Lists;
+import com.google.common.base.Charsets;
 
 /**
  * Writes JDE project files (prj.el files) to an output stream.
+ *
+ * <p>The lisp forms are streamed to the output as they are generated, so the memory used
+ * does not grow with the number of paths in the project file.</p>
  */
 public class JdeProjectFileWriter implements Closeable {
-  /** The print writer connected to the output stream. */
-  private final PrintWriter mPrintWriter;
+  /** The size of the character buffer in front of the output stream. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The lisp writer connected to the output stream. */
+  private final LispWriter mLispWriter;
 
   /**
    * Creates a project file writer that sends output to a given <code>outputStream</code>.
    *
+   * <p>The project file is encoded in UTF-8.</p>
+   *
    * @param outputStream The output stream to write the project file to.
    */
   public JdeProjectFileWriter(OutputStream outputStream) {
-    mPrintWriter = new PrintWriter(outputStream);
+    mLispWriter = new LispWriter(new BufferedWriter(
+        new OutputStreamWriter(outputStream, Charsets.UTF_8), BUFFER_SIZE));
+  }
+
+  /**
+   * Writes a project file to the filesystem at a specified location.
+   *
+   * <p>The file is replaced atomically, and is left untouched if its contents would not
+   * change.</p>
+   *
+   * @param projectFile The project file to write.
+   * @param targetFile The file to write it to.
+   * @return Whether the contents of the file changed.
+   * @throws IOException If there is an error.
+   */
+  public static boolean writeFile(final JdeProjectFile projectFile, File targetFile)
+      throws IOException {
+    return AtomicFileOutputStream.replace(targetFile, new AtomicFileOutputStream.Contents() {
+      @Override
+      public void writeTo(OutputStream outputStream) throws IOException {
+        JdeProjectFileWriter writer = new JdeProjectFileWriter(outputStream);
+        writer.write(projectFile);
+        writer.flush();
+      }
+    });
   }
 
   /**
@@ -41,114 +68,110 @@ public class JdeProjectFileWriter implements Closeable {
    */
   public void write(JdeProjectFile projectFile) throws IOException {
     // Print the version element.
-    LispElement versionElement = new LispList(
-        Arrays.<LispElement>asList(
-            new LispIdentifier("jde-project-file-version"),
-            new LispString("1.0")));
-    mPrintWriter.println(versionElement.toString());
+    mLispWriter.startList()
+        .identifier("jde-project-file-version")
+        .string("1.0")
+        .endList()
+        .newline();
 
     // Set variables.
-    LispElement setVariablesElement = new LispList(
-        Arrays.<LispElement>asList(
-            new LispIdentifier("jde-set-variables"),
-
-            // Print the source paths.
-            new LispQuotedElement(
-                new LispList(
-                    Arrays.<LispElement>asList(
-                        new LispIdentifier("jde-sourcepath"),
-                        new LispList(
-                            Arrays.<LispElement>asList(
-                                new LispIdentifier("append"),
-                                new LispIdentifier("jde-sourcepath"),
-                                new LispQuotedElement(
-                                    new LispList(
-                                        Lists.transform(projectFile.getSourcePaths(),
-                                            new StringToLispTransform())))))))),
-
-            // Print the class paths.
-            new LispQuotedElement(
-                new LispList(
-                    Arrays.<LispElement>asList(
-                        new LispIdentifier("jde-global-classpath"),
-                        new LispList(
-                            Arrays.<LispElement>asList(
-                                new LispIdentifier("append"),
-                                new LispIdentifier("jde-global-classpath"),
-                                new LispQuotedElement(
-                                    new LispList(
-                                        Lists.transform(projectFile.getClassPaths(),
-                                            new StringToLispTransform())))))))),
-
-            // Print the javadoc paths.
-            new LispQuotedElement(
-                new LispList(
-                    Arrays.<LispElement>asList(
-                        new LispIdentifier("jde-help-docsets"),
-                        new LispList(
-                            Arrays.<LispElement>asList(
-                                new LispIdentifier("append"),
-                                new LispIdentifier("jde-help-docsets"),
-                                new LispQuotedElement(
-                                    new LispList(
-                                        Lists.transform(projectFile.getJavadocPaths(),
-                                            new JdeJavadocLispTransform()))))))))));
-
-    // Print out the variables
-    mPrintWriter.println(setVariablesElement.toString());
+    mLispWriter.startList().identifier("jde-set-variables");
+
+    // Print the source paths.
+    startAppendVariable("jde-sourcepath");
+    for (CompactPath sourcePath : projectFile.getSourcePaths()) {
+      mLispWriter.string(sourcePath.getPrefix(), sourcePath.getSuffix());
+    }
+    endAppendVariable();
+
+    // Print the class paths.
+    startAppendVariable("jde-global-classpath");
+    for (CompactPath classPath : projectFile.getClassPaths()) {
+      mLispWriter.string(classPath.getPrefix(), classPath.getSuffix());
+    }
+    endAppendVariable();
+
+    // Print the javadoc paths.
+    startAppendVariable("jde-help-docsets");
+    writeJavadocDocsets(projectFile.getJavadocPaths());
+    endAppendVariable();
+
+    mLispWriter.endList().newline();
+    mLispWriter.flush();
   }
 
   /**
-   * Closes the writer and all resources associated with it (will close the underlying
-   * output stream).
+   * Starts a quoted variable setting that appends to the variable's current value.
+   *
+   * <pre>
+   * '(variable (append variable '(
+   * </pre>
    *
+   * @param variable The name of the JDE variable.
    * @throws IOException If there is an error.
    */
-  @Override
-  public void close() throws IOException {
-    mPrintWriter.close();
+  private void startAppendVariable(String variable) throws IOException {
+    mLispWriter.quote().startList()
+        .identifier(variable)
+        .startList()
+        .identifier("append")
+        .identifier(variable)
+        .quote().startList();
   }
 
-  /** {@inheritDoc} */
-  @Override
-  protected void finalize() throws Throwable {
-    close();
-    super.finalize();
+  /**
+   * Ends a variable setting started with {@link #startAppendVariable(String)}.
+   *
+   * @throws IOException If there is an error.
+   */
+  private void endAppendVariable() throws IOException {
+    mLispWriter.endList().endList().endList();
   }
 
   /**
-   * A function that transforms a String into a Lisp string.
+   * Writes each javadoc path as a lisp list for the JDE docsets variable.
+   *
+   * <pre>
+   * ("User (javadoc)" "/path/to/javadoc" nil)
+   * </pre>
+   *
+   * @param javadocDirPaths Paths to directories of javadoc files.
+   * @throws IOException If there is an error.
    */
-  private static class StringToLispTransform implements Function<String, LispElement> {
-    /** {@inheritDoc} */
-    @Override
-    public LispElement apply(String from) {
-      return new LispString(from);
+  private void writeJavadocDocsets(List<CompactPath> javadocDirPaths) throws IOException {
+    for (CompactPath javadocDirPath : javadocDirPaths) {
+      mLispWriter.startList()
+          .string("User (javadoc)")
+          .string(javadocDirPath.getPrefix(), javadocDirPath.getSuffix())
+          .identifier("nil")
+          .endList();
     }
   }
 
   /**
-   * A function that transforms a path to a javadoc directory into a Lisp element
-   * suitable for the JDE javadoc variable setting in emacs.
+   * Flushes everything written so far to the underlying output stream.
+   *
+   * @throws IOException If there is an error.
    */
-  private static class JdeJavadocLispTransform implements Function<String, LispElement> {
-    /**
-     * Each javadoc path string must be transformed into an lisp list for JDE.
-     *
-     * <pre>
-     * ("User (javadoc)" "/path/to/javadoc" nil)
-     * </pre>
-     *
-     * @param javadocDirPath A path to a directory of javadoc files.
-     * @return A Lisp element that the JDE emacs package can read.
-     */
-    @Override
-    public LispElement apply(String javadocDirPath) {
-      return new LispList(
-          Arrays.<LispElement>asList(
-              new LispString("User (javadoc)"),
-              new LispString(javadocDirPath),
-              new LispIdentifier("nil")));
-    }
+  public void flush() throws IOException {
+    mLispWriter.flush();
+  }
+
+  /**
+   * Closes the writer and all resources associated with it (will close the underlying
+   * output stream).
+   *
+   * @throws IOException If there is an error.
+   */
+  @Override
+  public void close() throws IOException {
+    mLispWriter.close();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void finalize() throws Throwable {
+    close();
+    super.finalize();
   }
 }
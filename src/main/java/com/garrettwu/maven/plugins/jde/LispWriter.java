@@ -0,0 +1,173 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes lisp forms token by token to a character stream.
+ *
+ * <p>Elements are separated by single spaces, and strings are escaped so Emacs reads them
+ * back verbatim.  Nothing is buffered beyond what the underlying writer buffers, so the
+ * memory used does not depend on the size of the forms written.</p>
+ */
+public class LispWriter implements Closeable, Flushable {
+  /** The underlying character stream. */
+  private final Writer mWriter;
+
+  /** Whether the next element must be separated from the previous one by a space. */
+  private boolean mNeedsSeparator;
+
+  /**
+   * Creates a new <code>LispWriter</code> instance.
+   *
+   * @param writer The character stream to write to.
+   */
+  public LispWriter(Writer writer) {
+    mWriter = writer;
+    mNeedsSeparator = false;
+  }
+
+  /**
+   * Starts a list: <code>(</code>.
+   *
+   * @return This writer so you can chain calls.
+   * @throws IOException If there is an error.
+   */
+  public LispWriter startList() throws IOException {
+    separate();
+    mWriter.write('(');
+    mNeedsSeparator = false;
+    return this;
+  }
+
+  /**
+   * Ends the current list: <code>)</code>.
+   *
+   * @return This writer so you can chain calls.
+   * @throws IOException If there is an error.
+   */
+  public LispWriter endList() throws IOException {
+    mWriter.write(')');
+    mNeedsSeparator = true;
+    return this;
+  }
+
+  /**
+   * Quotes the next element: <code>'</code>.
+   *
+   * @return This writer so you can chain calls.
+   * @throws IOException If there is an error.
+   */
+  public LispWriter quote() throws IOException {
+    separate();
+    mWriter.write('\'');
+    mNeedsSeparator = false;
+    return this;
+  }
+
+  /**
+   * Writes an identifier (symbol), such as <code>nil</code> or <code>jde-sourcepath</code>.
+   *
+   * @param identifier The identifier.
+   * @return This writer so you can chain calls.
+   * @throws IOException If there is an error.
+   */
+  public LispWriter identifier(String identifier) throws IOException {
+    separate();
+    mWriter.write(identifier);
+    mNeedsSeparator = true;
+    return this;
+  }
+
+  /**
+   * Writes a string literal, escaping backslashes and double quotes.
+   *
+   * @param string The contents of the string.
+   * @return This writer so you can chain calls.
+   * @throws IOException If there is an error.
+   */
+  public LispWriter string(String string) throws IOException {
+    separate();
+    mWriter.write('"');
+    writeEscaped(string);
+    mWriter.write('"');
+    mNeedsSeparator = true;
+    return this;
+  }
+
+  /**
+   * Writes a string literal made of two parts, without joining them first.
+   *
+   * @param first The first part of the contents of the string.
+   * @param second The rest of the contents of the string.
+   * @return This writer so you can chain calls.
+   * @throws IOException If there is an error.
+   */
+  public LispWriter string(String first, String second) throws IOException {
+    separate();
+    mWriter.write('"');
+    writeEscaped(first);
+    writeEscaped(second);
+    mWriter.write('"');
+    mNeedsSeparator = true;
+    return this;
+  }
+
+  /**
+   * Ends the current line.
+   *
+   * @return This writer so you can chain calls.
+   * @throws IOException If there is an error.
+   */
+  public LispWriter newline() throws IOException {
+    mWriter.write('\n');
+    mNeedsSeparator = false;
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void flush() throws IOException {
+    mWriter.flush();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    mWriter.close();
+  }
+
+  /**
+   * Writes a space if the previous element needs to be separated from the next.
+   *
+   * @throws IOException If there is an error.
+   */
+  private void separate() throws IOException {
+    if (mNeedsSeparator) {
+      mWriter.write(' ');
+    }
+  }
+
+  /**
+   * Writes the contents of a string literal, escaping backslashes and double quotes.
+   *
+   * @param string The contents.
+   * @throws IOException If there is an error.
+   */
+  private void writeEscaped(String string) throws IOException {
+    int start = 0;
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if ('"' == c || '\\' == c) {
+        mWriter.write(string, start, i - start);
+        mWriter.write('\\');
+        start = i;
+      }
+    }
+    mWriter.write(string, start, string.length() - start);
+  }
+}
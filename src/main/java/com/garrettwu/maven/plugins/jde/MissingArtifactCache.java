@@ -0,0 +1,217 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Remembers which classifier artifacts (sources, javadoc) could not be resolved, so that
+ * repeated runs do not ask the remote repositories for them again.
+ *
+ * <p>Entries are keyed by artifact name (groupId:artifactId:version) and classifier, and
+ * expire after a configurable time-to-live.  A cache with a time-to-live of zero is
+ * disabled: it never reports an artifact as missing and never records anything.</p>
+ *
+ * <p>This class is safe for use by multiple resolver threads.</p>
+ */
+public class MissingArtifactCache {
+  /** How long a failed lookup is remembered, in milliseconds. */
+  private final long mTtlMillis;
+
+  /** A mapping from artifact name and classifier to the time the lookup failed. */
+  private final Map<String, Long> mMissingSince;
+
+  /** The artifact names and classifiers resolved since the cache was loaded. */
+  private final Set<String> mFound;
+
+  /** Whether the cache has changed since it was loaded. */
+  private boolean mModified;
+
+  /**
+   * Creates a new, empty <code>MissingArtifactCache</code> instance.
+   *
+   * @param ttlMillis How long a failed lookup is remembered, in milliseconds.
+   */
+  public MissingArtifactCache(long ttlMillis) {
+    if (ttlMillis < 0) {
+      throw new IllegalArgumentException("ttlMillis may not be negative");
+    }
+    mTtlMillis = ttlMillis;
+    mMissingSince = new HashMap<String, Long>();
+    mFound = new HashSet<String>();
+    mModified = false;
+  }
+
+  /**
+   * Determines whether this cache records anything at all.
+   *
+   * @return Whether the cache is enabled.
+   */
+  public boolean isEnabled() {
+    return mTtlMillis > 0;
+  }
+
+  /**
+   * Loads previously recorded failures from an input stream.
+   *
+   * <p>The format of the contents of the stream should be a java properties file where the
+   * key is an artifact name and classifier, and the value is the time of the failure in
+   * milliseconds since the epoch.  Malformed entries are ignored.</p>
+   *
+   * @param inputStream The contents of a java properties file.
+   * @throws IOException If there is an error reading from the stream.
+   */
+  public synchronized void load(InputStream inputStream) throws IOException {
+    Properties properties = new Properties();
+    properties.load(inputStream);
+    for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+      try {
+        mMissingSince.put(entry.getKey().toString(), Long.valueOf(entry.getValue().toString()));
+      } catch (NumberFormatException e) {
+        // Drop the malformed entry; it will be looked up again.
+        mModified = true;
+      }
+    }
+  }
+
+  /**
+   * Merges in the failures stored by other builds sharing the cache file since it was loaded.
+   *
+   * <p>Failures of jars this cache has since seen resolved are left out; otherwise the later
+   * of the two failure times is kept.  The contents of the stream are in the format read by
+   * {@link #load(InputStream)}.</p>
+   *
+   * @param inputStream The current contents of the cache file.
+   * @throws IOException If there is an error reading from the stream.
+   */
+  public synchronized void merge(InputStream inputStream) throws IOException {
+    Properties properties = new Properties();
+    properties.load(inputStream);
+    for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+      String key = entry.getKey().toString();
+      if (mFound.contains(key)) {
+        continue;
+      }
+      try {
+        long missingSince = Long.parseLong(entry.getValue().toString());
+        Long current = mMissingSince.get(key);
+        if (null == current || missingSince > current) {
+          mMissingSince.put(key, missingSince);
+        }
+      } catch (NumberFormatException e) {
+        // Leave the malformed entry out.
+      }
+    }
+  }
+
+  /**
+   * Stores the unexpired failures to an output stream in java properties format.
+   *
+   * @param outputStream The stream to write to.
+   * @throws IOException If there is an error writing to the stream.
+   */
+  public synchronized void store(OutputStream outputStream) throws IOException {
+    long now = System.currentTimeMillis();
+    Properties properties = new Properties();
+    for (Map.Entry<String, Long> entry : mMissingSince.entrySet()) {
+      if (!isExpired(entry.getValue(), now)) {
+        properties.setProperty(entry.getKey(), entry.getValue().toString());
+      }
+    }
+    PropertiesFiles.store(properties, outputStream,
+        "Classifier artifacts that could not be resolved");
+    mModified = false;
+  }
+
+  /**
+   * Determines whether the cache has changed since it was loaded or stored.
+   *
+   * @return Whether the cache should be stored again.
+   */
+  public synchronized boolean isModified() {
+    return mModified;
+  }
+
+  /**
+   * Determines whether a classifier artifact recently failed to resolve.
+   *
+   * @param artifactName The name of the artifact (groupId:artifactId:version).
+   * @param classifier The classifier, such as "sources" or "javadoc".
+   * @return Whether the lookup failed within the time-to-live.
+   */
+  public synchronized boolean isMissing(String artifactName, String classifier) {
+    if (!isEnabled()) {
+      return false;
+    }
+    String key = getKey(artifactName, classifier);
+    Long missingSince = mMissingSince.get(key);
+    if (null == missingSince) {
+      return false;
+    }
+    if (isExpired(missingSince, System.currentTimeMillis())) {
+      mMissingSince.remove(key);
+      mModified = true;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Records that a classifier artifact failed to resolve.
+   *
+   * @param artifactName The name of the artifact (groupId:artifactId:version).
+   * @param classifier The classifier, such as "sources" or "javadoc".
+   */
+  public synchronized void markMissing(String artifactName, String classifier) {
+    if (!isEnabled()) {
+      return;
+    }
+    String key = getKey(artifactName, classifier);
+    mMissingSince.put(key, System.currentTimeMillis());
+    mFound.remove(key);
+    mModified = true;
+  }
+
+  /**
+   * Records that a classifier artifact was resolved, forgetting any earlier failure.
+   *
+   * @param artifactName The name of the artifact (groupId:artifactId:version).
+   * @param classifier The classifier, such as "sources" or "javadoc".
+   */
+  public synchronized void markFound(String artifactName, String classifier) {
+    String key = getKey(artifactName, classifier);
+    mFound.add(key);
+    if (null != mMissingSince.remove(key)) {
+      mModified = true;
+    }
+  }
+
+  /**
+   * Determines whether a failure recorded at a given time has expired.
+   *
+   * @param missingSince The time the failure was recorded.
+   * @param now The current time.
+   * @return Whether the failure should be forgotten.
+   */
+  private boolean isExpired(long missingSince, long now) {
+    return now - missingSince >= mTtlMillis || missingSince > now;
+  }
+
+  /**
+   * Gets the cache key for a classifier artifact.
+   *
+   * @param artifactName The name of the artifact.
+   * @param classifier The classifier.
+   * @return The cache key.
+   */
+  private static String getKey(String artifactName, String classifier) {
+    return artifactName + ":" + classifier;
+  }
+}
@@ -0,0 +1,59 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.util.Collection;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Goal which downloads the sources and javadoc of every transitive dependency into the local
+ * repository, and unpacks the javadoc, without generating a prj.el file.
+ *
+ * <p>Run it in the background (for example <code>mvn jde:prefetch &amp;</code>) while using
+ * <code>jde:jde</code> with jde.offline.fast set, so prj.el is generated immediately from
+ * whatever is already local.  Until every jar is local, each run of <code>jde:jde</code>
+ * looks for the missing ones again (the project file is not considered up to date), so a later
+ * run picks up the rest.</p>
+ *
+ * @goal prefetch
+ * @requiresDependencyResolution test
+ */
+public class PrefetchMojo extends AbstractJdeMojo {
+  /**
+   * The maximum number of dependencies to download sources and javadoc for concurrently.
+   *
+   * @parameter property="prefetchThreads" expression="${jde.prefetch.threads}" default-value="2"
+   * @required
+   */
+  private int mPrefetchThreads;
+
+  /**
+   * Sets the maximum number of dependencies whose sources and javadoc are downloaded
+   * concurrently.  Keep this low to leave bandwidth for other work.
+   *
+   * @param prefetchThreads The number of prefetch threads.
+   */
+  public void setPrefetchThreads(int prefetchThreads) {
+    mPrefetchThreads = prefetchThreads;
+  }
+
+  /**
+   * Executes the plugin's goal to prefetch the sources and javadoc of all dependencies.
+   *
+   * @throws MojoExecutionException If there is a fatal error during execution of the plugin.
+   */
+  @Override
+  public void execute() throws MojoExecutionException {
+    validateParameters();
+    if (mPrefetchThreads < 1) {
+      throw new MojoExecutionException("Property ${jde.prefetch.threads} must be at least 1.");
+    }
+
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    Collection<ProjectDependency> dependencies =
+      resolveDependencies(true, mPrefetchThreads, metrics);
+    getLog().info("Prefetched sources and javadoc for " + dependencies.size() + " dependencies.");
+    reportMetrics(metrics);
+  }
+}
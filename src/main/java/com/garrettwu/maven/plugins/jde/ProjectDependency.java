@@ -2,10 +2,22 @@
 
 package com.garrettwu.maven.plugins.jde;
 
+import java.util.Collections;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 /**
  * A project dependency declared as part of a maven project.
+ *
+ * <p>The groupId, artifactId, and version are interned, and paths are held as
+ * {@link CompactPath}s, since a large dependency graph repeats the same tokens and
+ * repository roots across thousands of dependencies.</p>
  */
 public class ProjectDependency {
+  /** Interns the groupId, artifactId, and version tokens shared between dependencies. */
+  private static final Interner<String> TOKENS = Interners.newWeakInterner();
+
   /** The groupId of the dependency. */
   private final String mGroupId;
 
@@ -16,13 +28,13 @@ public class ProjectDependency {
   private final String mVersion;
 
   /** The path to the source, or null if not known. */
-  private final String mSourcePath;
+  private final CompactPath mSourcePath;
 
   /** The path to the classes or jar. */
-  private final String mClassPath;
+  private final CompactPath mClassPath;
 
   /** The path or url to the javadocs, or null if not known. */
-  private final String mJavadocPath;
+  private final CompactPath mJavadocPath;
 
   /**
    * Creates a new <code>ProjectDependency</code> instance.
@@ -36,9 +48,27 @@ public class ProjectDependency {
    */
   public ProjectDependency(String groupId, String artifactId, String version,
       String sourcePath, String classPath, String javadocPath) {
-    mGroupId = groupId;
-    mArtifactId = artifactId;
-    mVersion = version;
+    this(groupId, artifactId, version,
+        CompactPath.of(sourcePath, Collections.<String>emptyList()),
+        CompactPath.of(classPath, Collections.<String>emptyList()),
+        CompactPath.of(javadocPath, Collections.<String>emptyList()));
+  }
+
+  /**
+   * Creates a new <code>ProjectDependency</code> instance from compact paths.
+   *
+   * @param groupId The dependency's groupId.
+   * @param artifactId The dependency's artifactId.
+   * @param version The dependency's version.
+   * @param sourcePath Path to the source, or null if not available.
+   * @param classPath Path to the classes or jar.
+   * @param javadocPath Path or URL to the javadoc, or null if not available.
+   */
+  public ProjectDependency(String groupId, String artifactId, String version,
+      CompactPath sourcePath, CompactPath classPath, CompactPath javadocPath) {
+    mGroupId = intern(groupId);
+    mArtifactId = intern(artifactId);
+    mVersion = intern(version);
     mSourcePath = sourcePath;
     mClassPath = classPath;
     mJavadocPath = javadocPath;
@@ -86,6 +116,15 @@ public class ProjectDependency {
    * @return The path to the source.
    */
   public String getSourcePath() {
+    return null == mSourcePath ? null : mSourcePath.toString();
+  }
+
+  /**
+   * Gets the compact path to the source code for this dependency.
+   *
+   * @return The path to the source, or null if not available.
+   */
+  public CompactPath getCompactSourcePath() {
     return mSourcePath;
   }
 
@@ -95,6 +134,15 @@ public class ProjectDependency {
    * @return The path to the directory of classes or the path to the jar.
    */
   public String getClassPath() {
+    return null == mClassPath ? null : mClassPath.toString();
+  }
+
+  /**
+   * Gets the compact path to the classes or the jar for this dependency.
+   *
+   * @return The path to the directory of classes or the path to the jar.
+   */
+  public CompactPath getCompactClassPath() {
     return mClassPath;
   }
 
@@ -113,9 +161,28 @@ public class ProjectDependency {
    * @return A path or a url to the javadoc.
    */
   public String getJavadocPath() {
+    return null == mJavadocPath ? null : mJavadocPath.toString();
+  }
+
+  /**
+   * Gets the compact location of the javadoc for this dependency.
+   *
+   * @return A path or a url to the javadoc, or null if not available.
+   */
+  public CompactPath getCompactJavadocPath() {
     return mJavadocPath;
   }
 
+  /**
+   * Interns a token shared between dependencies.
+   *
+   * @param token A token, or null.
+   * @return The canonical copy of the token, or null.
+   */
+  private static String intern(String token) {
+    return null == token ? null : TOKENS.intern(token);
+  }
+
   @Override
   public String toString() {
     return mGroupId + ":" + mArtifactId + ":" + mVersion;
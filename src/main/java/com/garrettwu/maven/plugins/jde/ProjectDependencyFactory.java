@@ -4,24 +4,88 @@ package com.garrettwu.maven.plugins.jde;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Enumeration;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.AbstractArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.plugin.MojoExecutionException;
 
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * A factory capable of creating project dependencies from a maven project.
  */
 public class ProjectDependencyFactory extends MavenClient {
+  /** The classifier of source jar artifacts. */
+  public static final String SOURCES_CLASSIFIER = "sources";
+
+  /** The classifier of javadoc jar artifacts. */
+  public static final String JAVADOC_CLASSIFIER = "javadoc";
+
+  /** The counter of jars offline-fast mode did not find in the local repository. */
+  public static final String OFFLINE_MISSING = "offline-missing";
+
   /** The directory where javadoc should be unpacked. */
   private final File mJavadocDir;
   /** The mapping between artifact names and user-defined javadoc paths. */
   private final UserPathMapping mJavadocUserPathMapping;
+  /** Classifier artifacts that recently failed to resolve. */
+  private MissingArtifactCache mMissingArtifactCache;
+  /** Whether javadoc jars are referenced in place instead of being unpacked. */
+  private boolean mLazyJavadoc;
+  /** Unpacks javadoc jars. */
+  private JarUnpacker mJarUnpacker;
+  /** Dependencies already resolved in this maven session, or null if not shared. */
+  private SessionResolutionCache mSessionResolutionCache;
+  /** Timings and counters for this run. */
+  private ResolutionMetrics mMetrics;
+  /** The javadoc store shared across projects, or null to unpack into mJavadocDir. */
+  private JavadocStore mJavadocStore;
+  /** The javadoc directory of each artifact unpacked into mJavadocDir. */
+  private JavadocIndex mJavadocIndex;
+  /** Whether sources and javadoc are looked up in the local repository only. */
+  private boolean mOfflineFast;
+  /** Whether jars missing from the local repository are resolved in offline-fast mode. */
+  private boolean mRemoteFallback;
+  /** Directories that many dependency paths are under, shared by their compact paths. */
+  private List<String> mPathRoots;
+  /** Bounds the time spent resolving jars, or null to resolve without bounds. */
+  private ResolutionPolicy mResolutionPolicy;
+  /** Resolves classifier jars in batches, or null to resolve them one at a time. */
+  private BatchArtifactResolver mBatchArtifactResolver;
+  /** Classifier jars resolved by {@link #prefetch(Collection)}, by classifier key. */
+  private Map<String, File> mPrefetchedJars;
+  /** The remote repositories of the current project, looked up once. */
+  private List<ArtifactRepository> mRemoteRepositories;
+  /** Decides which artifacts get sources and javadoc, or null for every artifact. */
+  private ResolutionFilter mResolutionFilter;
+  /** The dependencies resolved by the previous run, or null to resolve every artifact. */
+  private ResolutionState mResolutionState;
+  /**
+   * Artifacts with a jar that could not be resolved in time, or that offline-fast mode did not
+   * find in the local repository, which are not remembered.
+   */
+  private final Set<String> mUnavailableArtifacts;
 
   /**
    * Creates a new <code>ProjectDependencyFactory</code> instance.
@@ -41,48 +105,581 @@ public class ProjectDependencyFactory extends MavenClient {
     }
     mJavadocDir = javadocDir;
     mJavadocUserPathMapping = javadocUserPathMapping;
+    mMissingArtifactCache = new MissingArtifactCache(0L);
+    mJarUnpacker = new JarUnpacker(1);
+    mMetrics = new ResolutionMetrics();
+    mJavadocIndex = new JavadocIndex();
+    mPathRoots = Collections.emptyList();
+    mPrefetchedJars = Collections.emptyMap();
+    mUnavailableArtifacts
+        = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  }
+
+  /**
+   * Sets the cache of classifier artifacts known to be missing.  Lookups of sources and
+   * javadoc recorded in the cache are skipped, and new failures are added to it.
+   *
+   * @param missingArtifactCache The cache of failed lookups.
+   */
+  public void setMissingArtifactCache(MissingArtifactCache missingArtifactCache) {
+    if (null == missingArtifactCache) {
+      throw new IllegalArgumentException("missingArtifactCache may not be null");
+    }
+    mMissingArtifactCache = missingArtifactCache;
+  }
+
+  /**
+   * Sets whether javadoc jars should be referenced in place instead of being unpacked.
+   *
+   * <p>In lazy mode, the javadoc path of a dependency is a <code>jar:</code> url pointing
+   * at the javadoc jar in the local repository.  Pages can be extracted on demand with the
+   * {@link JavadocExtractor}.</p>
+   *
+   * @param lazyJavadoc Whether to use lazy javadoc mode.
+   */
+  public void setLazyJavadoc(boolean lazyJavadoc) {
+    mLazyJavadoc = lazyJavadoc;
+  }
+
+  /**
+   * Sets the number of threads used to write the contents of each javadoc jar.
+   *
+   * @param unpackThreads The number of threads.
+   */
+  public void setUnpackThreads(int unpackThreads) {
+    mJarUnpacker = new JarUnpacker(unpackThreads);
+  }
+
+  /**
+   * Sets a cache of dependencies shared with other executions in the same maven session.
+   * Sources and javadoc are only resolved for artifacts not already in the cache.
+   *
+   * @param sessionResolutionCache The shared cache, or null to not share resolutions.
+   */
+  public void setSessionResolutionCache(SessionResolutionCache sessionResolutionCache) {
+    mSessionResolutionCache = sessionResolutionCache;
+  }
+
+  /**
+   * Sets a javadoc store shared across projects.  Javadoc jars are then unpacked once into
+   * the store instead of into the javadoc directory of this project.
+   *
+   * @param javadocStore The shared store, or null to unpack into the javadoc directory.
+   */
+  public void setJavadocStore(JavadocStore javadocStore) {
+    mJavadocStore = javadocStore;
+  }
+
+  /**
+   * Sets the index recording the javadoc directory of each artifact.  Artifacts unpacked into
+   * the javadoc directory are added to it.
+   *
+   * @param javadocIndex The index of javadoc directories.
+   */
+  public void setJavadocIndex(JavadocIndex javadocIndex) {
+    if (null == javadocIndex) {
+      throw new IllegalArgumentException("javadocIndex may not be null");
+    }
+    mJavadocIndex = javadocIndex;
+  }
+
+  /**
+   * Sets whether sources and javadoc jars are looked up directly in the local repository
+   * layout, without asking the artifact resolver or any remote repository.
+   *
+   * <p>Jars that are not in the local repository are reported as unavailable (but not
+   * recorded in the missing artifact cache), unless remote fallback is enabled.</p>
+   *
+   * @param offlineFast Whether to use offline-fast mode.
+   */
+  public void setOfflineFast(boolean offlineFast) {
+    mOfflineFast = offlineFast;
+  }
+
+  /**
+   * Sets whether jars not found in the local repository in offline-fast mode are resolved
+   * with the artifact resolver as usual.
+   *
+   * @param remoteFallback Whether to fall back to the artifact resolver.
+   */
+  public void setRemoteFallback(boolean remoteFallback) {
+    mRemoteFallback = remoteFallback;
+  }
+
+  /**
+   * Sets the directories that many dependency paths are under, such as the local repository
+   * and the javadoc directory.  Each dependency shares a single copy of these roots instead
+   * of holding its own.
+   *
+   * @param pathRoots The root directories.
+   */
+  public void setPathRoots(Collection<String> pathRoots) {
+    mPathRoots = new ArrayList<String>(pathRoots);
+  }
+
+  /**
+   * Sets the policy bounding the time spent resolving sources and javadoc jars.  Jars that
+   * cannot be resolved in time are left out of the project file, but are not recorded in the
+   * missing artifact cache, since they may well exist.
+   *
+   * @param resolutionPolicy The policy, or null to resolve without bounds.
+   */
+  public void setResolutionPolicy(ResolutionPolicy resolutionPolicy) {
+    mResolutionPolicy = resolutionPolicy;
+  }
+
+  /**
+   * Sets a resolver that resolves the sources and javadoc jars of many artifacts at once.
+   * {@link #createFromArtifacts(Collection, int)} then resolves them in a single batch.
+   *
+   * @param batchArtifactResolver The batch resolver, or null to resolve jars one at a time.
+   */
+  public void setBatchArtifactResolver(BatchArtifactResolver batchArtifactResolver) {
+    mBatchArtifactResolver = batchArtifactResolver;
+  }
+
+  /**
+   * Sets the filter deciding which artifacts get their sources and javadoc resolved.  The
+   * dependencies of other artifacts only have a class path (and javadoc mapped by the user),
+   * and no lookups are made for them at all.
+   *
+   * @param resolutionFilter The filter, or null to resolve every artifact.
+   */
+  public void setResolutionFilter(ResolutionFilter resolutionFilter) {
+    mResolutionFilter = resolutionFilter;
+  }
+
+  /**
+   * Sets the dependencies resolved by the previous run.
+   * {@link #createFromArtifacts(Collection, int)} then reuses the entries of artifacts that
+   * have not changed since, only resolves the others, and records the results back.
+   *
+   * @param resolutionState The state of the previous run, or null to resolve every artifact.
+   */
+  public void setResolutionState(ResolutionState resolutionState) {
+    mResolutionState = resolutionState;
+  }
+
+  /**
+   * Sets the metrics that record how long each dependency took to resolve.
+   *
+   * @param metrics The metrics to record to.
+   */
+  public void setMetrics(ResolutionMetrics metrics) {
+    if (null == metrics) {
+      throw new IllegalArgumentException("metrics may not be null");
+    }
+    mMetrics = metrics;
+  }
+
+  /**
+   * Creates project dependencies out of a set of maven artifacts.
+   *
+   * <p>Artifacts with the same full id (such as one artifact reached through several scopes)
+   * are only resolved once; jars of the same version with different classifiers are kept.
+   * The sources and javadoc jars of all of the artifacts are planned up front, and resolved in
+   * a single batch if a batch artifact resolver is set; javadoc mapped by the user is never
+   * looked up.</p>
+   *
+   * <p>If a resolution state is set, artifacts whose class path is unchanged since the
+   * previous run, and whose sources and javadoc are still in place, are not resolved again.
+   * Artifacts no longer in the set are queued in the state for cleanup.</p>
+   *
+   * @param artifacts The maven artifacts.
+   * @param threads The maximum number of artifacts to resolve concurrently.
+   * @return The project dependencies, in the order of the artifacts.
+   * @throws MojoExecutionException If an artifact could not be converted.
+   */
+  public List<ProjectDependency> createFromArtifacts(Collection<Artifact> artifacts,
+      int threads) throws MojoExecutionException {
+    Map<String, Artifact> uniqueArtifacts = new LinkedHashMap<String, Artifact>();
+    for (Artifact artifact : artifacts) {
+      String artifactId = Artifacts.getId(artifact);
+      if (!uniqueArtifacts.containsKey(artifactId)) {
+        uniqueArtifacts.put(artifactId, artifact);
+      }
+    }
+    if (uniqueArtifacts.size() < artifacts.size()) {
+      getLog().debug("Skipping " + (artifacts.size() - uniqueArtifacts.size())
+          + " duplicate artifacts.");
+    }
+    if (null != mResolutionState) {
+      mResolutionState.setSettings(getSettingsFingerprint());
+    }
+
+    // Reuse what the previous run resolved, and only resolve the rest.
+    List<ProjectDependency> dependencies
+        = new ArrayList<ProjectDependency>(uniqueArtifacts.size());
+    List<Artifact> toCreate = new ArrayList<Artifact>();
+    for (Artifact artifact : uniqueArtifacts.values()) {
+      ProjectDependency dependency = reuseResolved(artifact);
+      dependencies.add(dependency);
+      if (null == dependency) {
+        toCreate.add(artifact);
+      }
+    }
+    if (null != mResolutionState) {
+      getLog().debug("Reusing " + (uniqueArtifacts.size() - toCreate.size())
+          + " dependencies resolved by the previous run.");
+    }
+
+    // Resolve all sources and javadoc jars at once, if the environment can.
+    prefetch(toCreate);
+
+    List<ProjectDependency> created;
+    if (threads > 1 && toCreate.size() > 1) {
+      created = createConcurrently(toCreate, threads);
+    } else {
+      created = new ArrayList<ProjectDependency>(toCreate.size());
+      for (Artifact artifact : toCreate) {
+        created.add(createFromArtifact(artifact));
+      }
+    }
+
+    // Merge the created dependencies back in the order of the artifacts.
+    Iterator<Artifact> createdArtifacts = toCreate.iterator();
+    Iterator<ProjectDependency> createdDependencies = created.iterator();
+    for (int i = 0; i < dependencies.size(); i++) {
+      if (null == dependencies.get(i)) {
+        Artifact artifact = createdArtifacts.next();
+        ProjectDependency dependency = createdDependencies.next();
+        dependencies.set(i, dependency);
+        rememberResolved(artifact, dependency);
+      }
+    }
+    if (null != mResolutionState) {
+      mResolutionState.retain(uniqueArtifacts.keySet());
+    }
+    dependencies.removeAll(Collections.singleton(null));
+    return dependencies;
+  }
+
+  /**
+   * Gets the dependency the previous run resolved for an artifact, if it may be reused.
+   *
+   * <p>It may be reused if the artifact's class path and its modification time are the same,
+   * and the sources and javadoc found last time are still there.  Missing sources and javadoc
+   * are looked up again once the time-to-live of the resolution state passes.</p>
+   *
+   * @param artifact An artifact.
+   * @return The dependency, or null if the artifact should be resolved.
+   */
+  private ProjectDependency reuseResolved(Artifact artifact) {
+    if (null == mResolutionState || null == artifact.getGroupId()
+        || null == artifact.getArtifactId() || null == artifact.getVersion()
+        || null == artifact.getFile()) {
+      return null;
+    }
+    ResolutionState.Entry entry = mResolutionState.get(Artifacts.getId(artifact));
+    File classFile = artifact.getFile();
+    boolean reusable = null != entry
+        && classFile.getPath().equals(entry.getClassPath())
+        && classFile.lastModified() == entry.getClassLastModified()
+        && (null == entry.getSourcePath() || new File(entry.getSourcePath()).isFile())
+        && isJavadocInPlace(entry.getJavadocPath());
+    mMetrics.countCacheLookup("resolution-state", reusable);
+    if (!reusable) {
+      return null;
+    }
+    return new ProjectDependency(artifact.getGroupId(), artifact.getArtifactId(),
+        artifact.getVersion(), CompactPath.of(entry.getSourcePath(), mPathRoots),
+        CompactPath.of(entry.getClassPath(), mPathRoots),
+        CompactPath.of(entry.getJavadocPath(), mPathRoots));
+  }
+
+  /**
+   * Determines whether the javadoc recorded by an earlier run is still in place.  Javadoc in
+   * the shared store is marked as used, so it is not evicted.
+   *
+   * @param javadocPath The path or url to the javadoc, or null if none was found.
+   * @return Whether the javadoc may be referenced again.
+   */
+  private boolean isJavadocInPlace(String javadocPath) {
+    if (null == javadocPath) {
+      return true;
+    }
+    if (javadocPath.startsWith("jar:")) {
+      // A lazy javadoc url of the form jar:file:/path/to/javadoc.jar!/
+      int end = javadocPath.lastIndexOf("!/");
+      if (end < 0) {
+        return false;
+      }
+      try {
+        return new File(URI.create(javadocPath.substring("jar:".length(), end))).isFile();
+      } catch (IllegalArgumentException e) {
+        return false;
+      }
+    }
+    if (javadocPath.contains("://")) {
+      // A url mapped by the user.
+      return true;
+    }
+    File javadocDir = new File(javadocPath);
+    if (null != mJavadocStore && mJavadocStore.contains(javadocPath)) {
+      return mJavadocStore.use(javadocDir);
+    }
+    return javadocDir.isDirectory();
+  }
+
+  /**
+   * Records a dependency resolved by this run in the resolution state.  Dependencies with a
+   * jar that could not be resolved in time, or that offline-fast mode skipped, are left out,
+   * so the next run tries again.
+   *
+   * @param artifact The artifact.
+   * @param dependency The dependency resolved for it, or null if it was skipped.
+   */
+  private void rememberResolved(Artifact artifact, ProjectDependency dependency) {
+    if (null == mResolutionState || null == dependency) {
+      return;
+    }
+    if (!mUnavailableArtifacts.contains(Artifacts.getName(artifact))) {
+      mResolutionState.put(Artifacts.getId(artifact), dependency,
+          artifact.getFile().lastModified());
+    }
+  }
+
+  /**
+   * Gets a fingerprint of the settings that decide where sources and javadoc are found.
+   * Dependencies resolved under different settings are not reused.
+   *
+   * @return The fingerprint.
+   */
+  private String getSettingsFingerprint() {
+    ProjectFingerprint fingerprint = new ProjectFingerprint()
+        .add("lazyJavadoc", String.valueOf(mLazyJavadoc))
+        .add("offlineFast", String.valueOf(mOfflineFast))
+        .add("remoteFallback", String.valueOf(mRemoteFallback))
+        .add("javadocDir", mJavadocDir.getPath())
+        .add("javadocStore",
+            null == mJavadocStore ? null : mJavadocStore.getRoot().getPath())
+        .add("filter", null == mResolutionFilter ? null : mResolutionFilter.toString());
+    for (Map.Entry<String, String> path : mJavadocUserPathMapping.getPaths().entrySet()) {
+      fingerprint.add("javadocPath:" + path.getKey(), path.getValue());
+    }
+    return fingerprint.toHex();
+  }
+
+  /**
+   * Converts artifacts to project dependencies using a bounded pool of worker threads.
+   *
+   * <p>The sources and javadoc lookups for every artifact are submitted up front, and the
+   * results are gathered back in the order of <code>artifacts</code>.</p>
+   *
+   * @param artifacts The artifacts to convert.
+   * @param threads The maximum number of artifacts to resolve concurrently.
+   * @return The project dependencies, in the same order as the artifacts, with null for
+   *     artifacts that were skipped.
+   * @throws MojoExecutionException If an artifact could not be converted.
+   */
+  private List<ProjectDependency> createConcurrently(List<Artifact> artifacts, int threads)
+      throws MojoExecutionException {
+    threads = Math.min(threads, artifacts.size());
+    getLog().debug("Resolving " + artifacts.size() + " artifacts with " + threads + " threads.");
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder()
+            .setNameFormat("jde-resolver-%d")
+            .setDaemon(true)
+            .build());
+    try {
+      List<Future<ProjectDependency>> futures
+          = new ArrayList<Future<ProjectDependency>>(artifacts.size());
+      for (final Artifact artifact : artifacts) {
+        futures.add(executor.submit(new Callable<ProjectDependency>() {
+          @Override
+          public ProjectDependency call() {
+            return createFromArtifact(artifact);
+          }
+        }));
+      }
+
+      List<ProjectDependency> dependencies = new ArrayList<ProjectDependency>(artifacts.size());
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          dependencies.add(futures.get(i).get());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new MojoExecutionException("Interrupted while resolving dependencies.", e);
+        } catch (ExecutionException e) {
+          throw new MojoExecutionException(
+              "Unable to resolve dependency " + artifacts.get(i), e.getCause());
+        }
+      }
+      return dependencies;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Resolves the sources and javadoc jars of a set of artifacts in a single batch, ahead of
+   * creating their project dependencies.  Does nothing without a batch artifact resolver.
+   *
+   * <p>Jars known to be missing, javadoc the user mapped, artifacts filtered out, and artifacts
+   * already resolved in this session are left out.  Jars the batch could not resolve (other
+   * than because no repository has them) are later resolved one at a time as usual.</p>
+   *
+   * @param artifacts The artifacts whose project dependencies will be created.
+   */
+  private void prefetch(Collection<Artifact> artifacts) {
+    if (null == mBatchArtifactResolver || (mOfflineFast && !mRemoteFallback)) {
+      return;
+    }
+    Multimap<Artifact, String> classifiers = LinkedHashMultimap.create();
+    for (Artifact artifact : artifacts) {
+      if (null == artifact.getGroupId() || null == artifact.getArtifactId()
+          || null == artifact.getVersion() || null == artifact.getFile()) {
+        continue;
+      }
+      if (null != mResolutionFilter && !mResolutionFilter.isResolved(artifact)) {
+        continue;
+      }
+      if (null != mSessionResolutionCache
+          && mSessionResolutionCache.contains(getSessionKey(artifact))) {
+        continue;
+      }
+      String artifactName = Artifacts.getName(artifact);
+      if (!mMissingArtifactCache.isMissing(artifactName, SOURCES_CLASSIFIER)) {
+        classifiers.put(artifact, SOURCES_CLASSIFIER);
+      }
+      if (!mJavadocUserPathMapping.contains(artifactName)
+          && !mMissingArtifactCache.isMissing(artifactName, JAVADOC_CLASSIFIER)) {
+        classifiers.put(artifact, JAVADOC_CLASSIFIER);
+      }
+    }
+    if (classifiers.isEmpty()) {
+      return;
+    }
+    getLog().debug("Resolving " + classifiers.size() + " sources and javadoc jars in a batch.");
+    long startNanos = System.nanoTime();
+    mPrefetchedJars = mBatchArtifactResolver.resolveClassifiers(classifiers);
+    mMetrics.recordPhase("batch", startNanos);
   }
 
   /**
    * Creates a project dependency out of a maven artifact.
    *
+   * <p>Artifacts rejected by the resolution filter are not looked up; their dependency only
+   * has the class path, and any javadoc mapped by the user.</p>
+   *
    * @param artifact A maven artifact.
    * @return A project dependency.
    */
-  public ProjectDependency createFromArtifact(Artifact artifact) {
-    String groupId = artifact.getGroupId();
-    String artifactId = artifact.getArtifactId();
-    String version = artifact.getVersion();
-    String classPath = getClassPath(artifact);
+  public ProjectDependency createFromArtifact(final Artifact artifact) {
+    final String groupId = artifact.getGroupId();
+    final String artifactId = artifact.getArtifactId();
+    final String version = artifact.getVersion();
+    final CompactPath classPath = CompactPath.of(getClassPath(artifact), mPathRoots);
     if (null == groupId || null == artifactId || null == version || null == classPath) {
       return null;
     }
+    if (null != mResolutionFilter && !mResolutionFilter.isResolved(artifact)) {
+      mMetrics.count(ResolutionFilter.FILTERED, 1L);
+      return new ProjectDependency(groupId, artifactId, version, null, classPath,
+          CompactPath.of(mJavadocUserPathMapping.get(Artifacts.getName(artifact)), mPathRoots));
+    }
+    if (null == mSessionResolutionCache) {
+      List<String> unavailable = new ArrayList<String>();
+      ProjectDependency dependency = new ProjectDependency(groupId, artifactId, version,
+          CompactPath.of(getSourcePath(artifact, unavailable), mPathRoots), classPath,
+          CompactPath.of(getJavadocPath(artifact, unavailable), mPathRoots));
+      markUnavailable(artifact, unavailable);
+      return dependency;
+    }
+
+    String key = getSessionKey(artifact);
+    final AtomicBoolean resolved = new AtomicBoolean(false);
+    SessionResolutionCache.Entry entry = mSessionResolutionCache.get(key,
+        new Callable<SessionResolutionCache.Entry>() {
+          @Override
+          public SessionResolutionCache.Entry call() {
+            resolved.set(true);
+            List<String> unavailable = new ArrayList<String>();
+            ProjectDependency dependency = new ProjectDependency(groupId, artifactId, version,
+                CompactPath.of(getSourcePath(artifact, unavailable), mPathRoots), classPath,
+                CompactPath.of(getJavadocPath(artifact, unavailable), mPathRoots));
+            return new SessionResolutionCache.Entry(dependency, unavailable);
+          }
+        });
+    ProjectDependency shared = entry.getDependency();
+    if (!resolved.get() && !isSharedJavadocInPlace(shared)) {
+      // Another project evicted the javadoc from the store since it was resolved.
+      mSessionResolutionCache.remove(key, entry);
+      return createFromArtifact(artifact);
+    }
+    mMetrics.countCacheLookup("session-cache", !resolved.get());
+    // Jars that another module could not resolve are just as missing from this module.
+    markUnavailable(artifact, entry.getUnavailable());
+    if (classPath.equals(shared.getCompactClassPath())) {
+      return shared;
+    }
+    // Another module saw the same artifact at a different location (e.g. a reactor sibling's
+    // target/classes); keep this module's class path.
     return new ProjectDependency(groupId, artifactId, version,
-        getSourcePath(artifact), classPath, getJavadocPath(artifact));
+        shared.getCompactSourcePath(), classPath, shared.getCompactJavadocPath());
+  }
+
+  /**
+   * Determines whether the javadoc of a dependency resolved earlier in the session is still in
+   * the javadoc store, and marks it as used if so.
+   *
+   * @param dependency The shared dependency.
+   * @return Whether its javadoc may be referenced again.
+   */
+  private boolean isSharedJavadocInPlace(ProjectDependency dependency) {
+    if (null == mJavadocStore || null == dependency.getCompactJavadocPath()) {
+      return true;
+    }
+    String javadocPath = dependency.getJavadocPath();
+    return !mJavadocStore.contains(javadocPath) || mJavadocStore.use(new File(javadocPath));
+  }
+
+  /**
+   * Records the jars of an artifact that could not be resolved.  The artifact is then left out
+   * of the resolution state, so the next run looks for the jars again.
+   *
+   * @param artifact The artifact.
+   * @param unavailable The metrics counter of each jar that could not be resolved.
+   */
+  private void markUnavailable(Artifact artifact, List<String> unavailable) {
+    if (unavailable.isEmpty()) {
+      return;
+    }
+    for (String counter : unavailable) {
+      mMetrics.count(counter, 1L);
+    }
+    mUnavailableArtifacts.add(Artifacts.getName(artifact));
+  }
+
+  /**
+   * Gets the key of an artifact's dependency in the session resolution cache.  Modules of a
+   * session only share dependencies resolved with the same settings: in particular, javadoc is
+   * only shared between modules that unpack it into the same place.
+   *
+   * @param artifact An artifact.
+   * @return The key.
+   */
+  private String getSessionKey(Artifact artifact) {
+    String key = Artifacts.getName(artifact) + (mLazyJavadoc ? "|lazy" : "")
+        + (mOfflineFast ? (mRemoteFallback ? "|offline-fallback" : "|offline") : "")
+        + "|" + (null == mJavadocStore ? mJavadocDir : mJavadocStore.getRoot()).getPath();
+    if (mJavadocUserPathMapping.contains(Artifacts.getName(artifact))) {
+      // The mapping may change between executions in a session (see WatchMojo).
+      key += "|" + mJavadocUserPathMapping.get(Artifacts.getName(artifact));
+    }
+    return key;
   }
 
   /**
    * Gets the path to the source code for an artifact.
    *
    * @param artifact An artifact.
+   * @param unavailable Collects the counter of the jar if it could not be resolved.
    * @return The path to the source for the artifact, or null if unknown.
    */
-  private String getSourcePath(Artifact artifact) {
-    // Get the sources jar artifact.
-    Artifact sourcesJarArtifact = getArtifactFactory().createArtifactWithClassifier(
-        artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(),
-        "java-source", "sources");
-    // Resolve it.
-    try {
-      getArtifactResolver().resolve(sourcesJarArtifact,
-          getCurrentProject().getRemoteArtifactRepositories(),
-          getLocalArtifactRepository());
-    } catch (AbstractArtifactResolutionException e) {
-      getLog().info("Unable to find sources for artifact: " + artifact.toString());
-    }
-    File file = sourcesJarArtifact.getFile();
+  private String getSourcePath(Artifact artifact, List<String> unavailable) {
+    File file = resolveClassifier(artifact, SOURCES_CLASSIFIER, unavailable);
     if (null == file) {
-      getLog().info("No sources jar file found for artifact: " + artifact.toString());
       return null;
     }
     return file.getPath();
@@ -106,73 +703,289 @@ public class ProjectDependencyFactory extends MavenClient {
    * Gets the path or url to the javadoc for an artifact.
    *
    * @param artifact An artifact.
+   * @param unavailable Collects the counter of the jar if it could not be resolved.
    * @return A url or path to the javadoc (or null if unknown).
    */
-  private String getJavadocPath(Artifact artifact) {
+  private String getJavadocPath(Artifact artifact, List<String> unavailable) {
     // First try the custom mapping provided by the user.
     if (mJavadocUserPathMapping.contains(Artifacts.getName(artifact))) {
       return mJavadocUserPathMapping.get(Artifacts.getName(artifact));
     }
 
-    // Get the javadoc jar artifact.
-    Artifact javadocJarArtifact = getArtifactFactory().createArtifactWithClassifier(
-        artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(),
-        "java-source", "javadoc");
-    // Resolve it.
-    try {
-      getArtifactResolver().resolve(javadocJarArtifact,
-          getCurrentProject().getRemoteArtifactRepositories(),
-          getLocalArtifactRepository());
-    } catch (AbstractArtifactResolutionException e) {
-      getLog().info("Unable to find javadoc for artifact: " + artifact.toString());
+    File file = resolveClassifier(artifact, JAVADOC_CLASSIFIER, unavailable);
+    if (null == file) {
       return null;
     }
-    File file = javadocJarArtifact.getFile();
-    if (null == file || !file.exists()) {
+    if (!file.exists()) {
       getLog().info("No javadoc jar file found for artifact: " + artifact.toString());
       return null;
     }
+    if (mLazyJavadoc) {
+      return "jar:" + file.toURI() + "!/";
+    }
 
-    File artifactJavadocDir = new File(mJavadocDir, artifact.getArtifactId());
+    String relativeDir = getJavadocRelativeDir(artifact);
+    File artifactJavadocDir = new File(mJavadocDir, relativeDir);
+    long startNanos = System.nanoTime();
     try {
-      unpackJar(file, artifactJavadocDir);
+      if (null != mJavadocStore) {
+        artifactJavadocDir = mJavadocStore.unpack(artifact.getGroupId(),
+            artifact.getArtifactId(), artifact.getVersion(), file, mJarUnpacker, mMetrics);
+      } else {
+        unpackJar(file, artifactJavadocDir);
+        mJavadocIndex.put(Artifacts.getName(artifact), relativeDir);
+      }
     } catch (IOException e) {
       getLog().error("Unable to unpack javadoc jar for artifact: " + artifact.toString(), e);
       return null;
+    } finally {
+      mMetrics.recordArtifact(Artifacts.getName(artifact), "unpack", startNanos);
     }
 
     return artifactJavadocDir.getPath();
   }
 
+  /**
+   * Gets the directory an artifact's javadoc is unpacked into, relative to the javadoc
+   * directory.  Each version of each artifact gets its own directory, so artifacts sharing an
+   * artifactId never clobber each other and upgrades leave other versions in place.
+   *
+   * @param artifact An artifact.
+   * @return The relative directory, <code>groupId/artifactId/version</code>.
+   */
+  private static String getJavadocRelativeDir(Artifact artifact) {
+    return artifact.getGroupId() + "/" + artifact.getArtifactId() + "/" + artifact.getVersion();
+  }
+
+  /**
+   * Resolves the jar with a given classifier (such as "sources") for an artifact.
+   *
+   * <p>Lookups that are recorded in the missing artifact cache are skipped entirely.</p>
+   *
+   * @param artifact An artifact.
+   * @param classifier The classifier of the jar to resolve.
+   * @param unavailable Collects the counter of the jar if it could not be resolved.
+   * @return The resolved jar file, or null if it could not be found.
+   */
+  private File resolveClassifier(Artifact artifact, String classifier,
+      List<String> unavailable) {
+    String artifactName = Artifacts.getName(artifact);
+    if (mMissingArtifactCache.isEnabled()) {
+      boolean missing = mMissingArtifactCache.isMissing(artifactName, classifier);
+      mMetrics.countCacheLookup("missing-cache", missing);
+      if (missing) {
+        getLog().debug("Skipping lookup of " + classifier + " known to be missing for artifact: "
+            + artifact.toString());
+        return null;
+      }
+    }
+
+    long startNanos = System.nanoTime();
+    try {
+      return resolveClassifierJar(artifact, classifier, unavailable);
+    } finally {
+      mMetrics.recordArtifact(artifactName, classifier, startNanos);
+    }
+  }
+
+  /**
+   * Asks the artifact resolver for the jar with a given classifier for an artifact.
+   *
+   * @param artifact An artifact.
+   * @param classifier The classifier of the jar to resolve.
+   * @param unavailable Collects the counter of the jar if it could not be resolved.
+   * @return The resolved jar file, or null if it could not be found.
+   */
+  private File resolveClassifierJar(Artifact artifact, String classifier,
+      List<String> unavailable) {
+    String artifactName = Artifacts.getName(artifact);
+
+    // Get the classifier jar artifact.
+    Artifact classifierJarArtifact = getArtifactFactory().createArtifactWithClassifier(
+        artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(),
+        "java-source", classifier);
+    if (mOfflineFast) {
+      File localFile = findInLocalRepository(classifierJarArtifact);
+      mMetrics.countCacheLookup("local-repository", null != localFile);
+      if (null != localFile) {
+        classifierJarArtifact.setFile(localFile);
+        classifierJarArtifact.setResolved(true);
+        mMissingArtifactCache.markFound(artifactName, classifier);
+        return localFile;
+      }
+      if (!mRemoteFallback) {
+        getLog().debug("No " + classifier + " jar in the local repository for artifact: "
+            + artifact.toString());
+        // It may be downloaded later (e.g. by jde:prefetch), so look for it again next run.
+        unavailable.add(OFFLINE_MISSING);
+        return null;
+      }
+    }
+    String classifierKey = Artifacts.getClassifierKey(artifact, classifier);
+    if (mPrefetchedJars.containsKey(classifierKey)) {
+      File file = mPrefetchedJars.get(classifierKey);
+      if (null == file) {
+        getLog().info("Unable to find " + classifier + " for artifact: " + artifact.toString());
+        mMissingArtifactCache.markMissing(artifactName, classifier);
+        mMetrics.count(ResolutionMetrics.RESOLVER_FAILURES, 1L);
+        return null;
+      }
+      classifierJarArtifact.setFile(file);
+      classifierJarArtifact.setResolved(true);
+      mMissingArtifactCache.markFound(artifactName, classifier);
+      return file;
+    }
+    // Resolve it.
+    if (null != mResolutionPolicy) {
+      return resolveClassifierJar(artifact, classifier, classifierJarArtifact, unavailable);
+    }
+    try {
+      getArtifactResolver().resolve(classifierJarArtifact,
+          getRemoteRepositories(),
+          getLocalArtifactRepository());
+    } catch (ArtifactNotFoundException e) {
+      getLog().info("Unable to find " + classifier + " for artifact: " + artifact.toString());
+      mMissingArtifactCache.markMissing(artifactName, classifier);
+      mMetrics.count(ResolutionMetrics.RESOLVER_FAILURES, 1L);
+      return null;
+    } catch (AbstractArtifactResolutionException e) {
+      // A transfer error or an unreachable repository says nothing about whether the jar
+      // exists, so try again next run instead of remembering it as missing.
+      getLog().info("Unable to resolve " + classifier + " for artifact: " + artifact.toString()
+          + ": " + e.getMessage());
+      mMetrics.count(ResolutionMetrics.RESOLVER_FAILURES, 1L);
+      unavailable.add(ResolutionPolicy.UNAVAILABLE);
+      return null;
+    }
+    File file = classifierJarArtifact.getFile();
+    if (null == file) {
+      getLog().info("No " + classifier + " jar file found for artifact: " + artifact.toString());
+      mMissingArtifactCache.markMissing(artifactName, classifier);
+      return null;
+    }
+    mMissingArtifactCache.markFound(artifactName, classifier);
+    return file;
+  }
+
+  /**
+   * Resolves the jar with a given classifier for an artifact within the resolution policy.
+   *
+   * @param artifact An artifact.
+   * @param classifier The classifier of the jar to resolve.
+   * @param classifierJarArtifact The artifact of the jar.
+   * @param unavailable Collects the counter of the jar if it could not be resolved in time.
+   * @return The resolved jar file, or null if it could not be found.
+   */
+  private File resolveClassifierJar(Artifact artifact, String classifier,
+      Artifact classifierJarArtifact, List<String> unavailable) {
+    String artifactName = Artifacts.getName(artifact);
+    ResolutionPolicy.Outcome outcome = mResolutionPolicy.resolve(getArtifactResolver(),
+        classifierJarArtifact, getRemoteRepositories(),
+        getLocalArtifactRepository(), mMetrics);
+    if (ResolutionPolicy.Outcome.UNAVAILABLE == outcome) {
+      getLog().info("Unable to resolve " + classifier + " in time for artifact: "
+          + artifact.toString());
+      mMetrics.count(ResolutionMetrics.RESOLVER_FAILURES, 1L);
+      unavailable.add(ResolutionPolicy.UNAVAILABLE);
+      return null;
+    }
+    File file = ResolutionPolicy.Outcome.FOUND == outcome
+        ? classifierJarArtifact.getFile() : null;
+    if (null == file) {
+      getLog().info("Unable to find " + classifier + " for artifact: " + artifact.toString());
+      mMissingArtifactCache.markMissing(artifactName, classifier);
+      if (ResolutionPolicy.Outcome.NOT_FOUND == outcome) {
+        mMetrics.count(ResolutionMetrics.RESOLVER_FAILURES, 1L);
+      }
+      return null;
+    }
+    mMissingArtifactCache.markFound(artifactName, classifier);
+    return file;
+  }
+
+  /**
+   * Gets the remote repositories of the current project.  They are looked up once, rather than
+   * for every jar resolved.
+   *
+   * @return The remote repositories.
+   */
+  @SuppressWarnings("unchecked")
+  private synchronized List<ArtifactRepository> getRemoteRepositories() {
+    if (null == mRemoteRepositories) {
+      mRemoteRepositories = getCurrentProject().getRemoteArtifactRepositories();
+    }
+    return mRemoteRepositories;
+  }
+
+  /**
+   * Looks for an artifact at its path in the local repository, without resolving it.
+   *
+   * @param artifact An artifact.
+   * @return The artifact's file in the local repository, or null if it is not there.
+   */
+  private File findInLocalRepository(Artifact artifact) {
+    ArtifactRepository localRepository = getLocalArtifactRepository();
+    File file = new File(localRepository.getBasedir(), localRepository.pathOf(artifact));
+    return file.isFile() ? file : null;
+  }
+
   /**
    * Unpacks a jar file into a target directory.
    *
+   * <p>A {@link JarStamp} is written into the target directory once the jar is fully
+   * unpacked.  If the directory already holds a stamp matching the jar, it is left as is.
+   * The directory is locked while it is replaced, since another build (such as
+   * <code>jde:prefetch</code>) may be unpacking the same jar into it.</p>
+   *
    * @param jarFile The jar to unpack.
    * @param targetDirectory The directory to put the unpacked contents in.
    * @throws IOException If there is an error.
    */
   private void unpackJar(File jarFile, File targetDirectory) throws IOException {
-    if (targetDirectory.exists()) {
-      getLog().info("Replacing existing javadoc directory: " + targetDirectory.getPath());
-      Files.deleteRecursively(targetDirectory);
-    }
-    if (!targetDirectory.mkdirs()) {
-      throw new IOException("Could not create directory: " + targetDirectory.getPath());
-    }
-    getLog().info("Unpacking javadoc jar " + jarFile.getPath()
-        + " into " + targetDirectory.getPath());
-    JarFile jar = new JarFile(jarFile);
-    for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
-      JarEntry entry = entries.nextElement();
-      File outputFile = new File(targetDirectory, entry.getName());
-      if (entry.isDirectory()) {
-        if (!outputFile.mkdirs()) {
-          throw new IOException("Could not make directory: " + outputFile.getPath());
+    File stampFile = new File(targetDirectory, JarStamp.FILE_NAME);
+    JarStamp stamp = JarStamp.read(stampFile);
+    if (null != stamp && stamp.getLastModified() == jarFile.lastModified()
+        && stamp.matches(jarFile)) {
+      // The common case, which needs no lock: the stamp is written last and left as is.
+      mMetrics.countCacheLookup("javadoc-stamp", true);
+      getLog().debug("Javadoc directory is up to date: " + targetDirectory.getPath());
+      return;
+    }
+
+    File parentDirectory = targetDirectory.getParentFile();
+    if (!parentDirectory.isDirectory() && !parentDirectory.mkdirs()
+        && !parentDirectory.isDirectory()) {
+      throw new IOException("Could not create directory: " + parentDirectory.getPath());
+    }
+    EntryLock lock = EntryLock.acquire(EntryLock.getLockFile(targetDirectory), true);
+    try {
+      // Another build may have unpacked it while we waited for the lock.
+      stamp = JarStamp.read(stampFile);
+      boolean upToDate = null != stamp && stamp.matches(jarFile);
+      mMetrics.countCacheLookup("javadoc-stamp", upToDate);
+      if (upToDate) {
+        getLog().debug("Javadoc directory is up to date: " + targetDirectory.getPath());
+        if (stamp.getLastModified() != jarFile.lastModified()) {
+          // Same contents, new timestamp: refresh the stamp so we don't hash it next time.
+          new JarStamp(stamp.getSize(), jarFile.lastModified(), stamp.getHash())
+              .write(stampFile);
         }
-      } else {
-        FileUtils.copyInputStreamToFile(jar.getInputStream(entry), outputFile);
+        return;
+      }
+      if (targetDirectory.exists()) {
+        getLog().info("Replacing existing javadoc directory: " + targetDirectory.getPath());
+        Files.deleteRecursively(targetDirectory);
+      }
+      if (!targetDirectory.mkdirs()) {
+        throw new IOException("Could not create directory: " + targetDirectory.getPath());
       }
+      getLog().info("Unpacking javadoc jar " + jarFile.getPath()
+          + " into " + targetDirectory.getPath());
+      mMetrics.count(ResolutionMetrics.BYTES_UNPACKED,
+          mJarUnpacker.unpack(jarFile, targetDirectory));
+      JarStamp.of(jarFile).write(stampFile);
+    } finally {
+      lock.release();
     }
-    jar.close();
   }
 }
@@ -4,6 +4,7 @@ package com.garrettwu.maven.plugins.jde;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
@@ -16,21 +17,44 @@ public class ProjectDependencyReader extends MavenClient {
   /** A factory for creating project dependencies from artifacts. */
   private final ProjectDependencyFactory mProjectDependencyFactory;
 
+  /** The maximum number of artifacts to resolve concurrently. */
+  private final int mResolverThreads;
+
   /**
-   * Creates a new <code>ProjectDependencyReader</code> instance.
+   * Creates a new <code>ProjectDependencyReader</code> instance that resolves artifacts
+   * one at a time.
    *
    * @param mavenEnvironment The maven environment.
    * @param projectDependencyFactory A factory for creating project dependencies from artifacts.
    */
   public ProjectDependencyReader(MavenEnvironment mavenEnvironment,
       ProjectDependencyFactory projectDependencyFactory) {
+    this(mavenEnvironment, projectDependencyFactory, 1);
+  }
+
+  /**
+   * Creates a new <code>ProjectDependencyReader</code> instance.
+   *
+   * @param mavenEnvironment The maven environment.
+   * @param projectDependencyFactory A factory for creating project dependencies from artifacts.
+   * @param resolverThreads The maximum number of artifacts to resolve concurrently.
+   */
+  public ProjectDependencyReader(MavenEnvironment mavenEnvironment,
+      ProjectDependencyFactory projectDependencyFactory, int resolverThreads) {
     super(mavenEnvironment);
+    if (resolverThreads < 1) {
+      throw new IllegalArgumentException("resolverThreads must be at least 1");
+    }
     mProjectDependencyFactory = projectDependencyFactory;
+    mResolverThreads = resolverThreads;
   }
 
   /**
    * Gets the dependencies for the project.
    *
+   * <p>The returned dependencies are in the same order as the artifacts reported by the
+   * maven project, regardless of how many resolver threads are used.</p>
+   *
    * @param transitive Whether transitive dependencies should also be returned.
    * @return The collection of dependencies for the project.
    * @throws MojoExecutionException If there is an error while getting dependencies.
@@ -50,21 +74,17 @@ public class ProjectDependencyReader extends MavenClient {
       dependencyArtifacts = getCurrentProject().getDependencyArtifacts();
     }
 
-    // Convert the artifacts to project dependencies.
-    Collection<ProjectDependency> dependencies
-        = new ArrayList<ProjectDependency>(dependencyArtifacts.size());
+    List<Artifact> artifacts = new ArrayList<Artifact>(dependencyArtifacts.size());
     for (Object dependencyArtifact : dependencyArtifacts) {
       if (!(dependencyArtifact instanceof Artifact)) {
         throw new MojoExecutionException("Found unexpected type "
             + dependencyArtifact.getClass().getName()
             + " in result from MavenProject.getArtifacts().");
       }
-      ProjectDependency dependency
-          = mProjectDependencyFactory.createFromArtifact((Artifact) dependencyArtifact);
-      if (null != dependency) {
-        dependencies.add(dependency);
-      }
+      artifacts.add((Artifact) dependencyArtifact);
     }
-    return dependencies;
+
+    // Convert the artifacts to project dependencies.
+    return mProjectDependencyFactory.createFromArtifacts(artifacts, mResolverThreads);
   }
 }
@@ -0,0 +1,83 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Rewrites a JDE project file from the snapshot written by the jde goal, without starting
+ * maven.
+ *
+ * <p>Editor hooks can call this whenever the user javadoc path mappings change, which takes a
+ * fraction of the time of running the goal.  Dependencies are not resolved again, so changes
+ * to the pom still need <code>mvn jde:jde</code>.  Only the plugin jar and guava need to be on
+ * the class path:</p>
+ *
+ * <pre>
+ * java -cp jde-maven-plugin.jar:guava.jar \
+ *     com.garrettwu.maven.plugins.jde.ProjectFileRegenerator .jde/snapshot.properties [prj.el]
+ * </pre>
+ */
+public final class ProjectFileRegenerator {
+  /** No constructor available for a utility class. */
+  private ProjectFileRegenerator() {}
+
+  /**
+   * Rewrites the project file of a snapshot.  Exits with status 1 if it could not be written,
+   * or 2 if the arguments are wrong.
+   *
+   * @param args The snapshot file, and optionally the project file to write instead of the one
+   *     the snapshot was written for.
+   */
+  public static void main(String[] args) {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: ProjectFileRegenerator <snapshot file> [<project file>]");
+      System.exit(2);
+    }
+    try {
+      regenerate(new File(args[0]), args.length > 1 ? new File(args[1]) : null);
+    } catch (IOException e) {
+      System.err.println("Unable to regenerate the JDE project file: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Rewrites the project file of a snapshot, applying the current user javadoc path mappings.
+   *
+   * @param snapshotFile The snapshot file.
+   * @param projectFile The project file to write, or null for the one the snapshot was written
+   *     for.
+   * @return Whether the contents of the project file changed.
+   * @throws IOException If there is an error.
+   */
+  public static boolean regenerate(File snapshotFile, File projectFile) throws IOException {
+    ProjectSnapshot snapshot;
+    FileInputStream snapshotInputStream = new FileInputStream(snapshotFile);
+    try {
+      snapshot = ProjectSnapshot.read(snapshotInputStream);
+    } finally {
+      snapshotInputStream.close();
+    }
+
+    UserPathMapping javadocUserPathMapping = new UserPathMapping();
+    File javadocPathsFile = snapshot.getJavadocPathsFile();
+    if (null != javadocPathsFile && javadocPathsFile.exists()) {
+      FileInputStream mappingInputStream = new FileInputStream(javadocPathsFile);
+      try {
+        javadocUserPathMapping.load(mappingInputStream);
+      } finally {
+        mappingInputStream.close();
+      }
+    }
+
+    JdeProjectFile jdeProjectFile = new JdeProjectFileBuilder()
+        .withBuildDirectories(snapshot.getSourceDirectories(), snapshot.getOutputDirectories())
+        .withDependencies(snapshot.getDependencies(javadocUserPathMapping))
+        .build();
+    return JdeProjectFileWriter.writeFile(jdeProjectFile,
+        null == projectFile ? snapshot.getProjectFile() : projectFile);
+  }
+}
@@ -0,0 +1,108 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * A digest of everything that determines the contents of a generated JDE project file.
+ *
+ * <p>The jde goal computes a fingerprint from the project model, the resolved artifacts,
+ * the user path mappings, and its own parameters.  If it matches the fingerprint stored when
+ * the project file was last generated, there is nothing to do.</p>
+ */
+public class ProjectFingerprint {
+  /** The digest accumulating the inputs. */
+  private final MessageDigest mDigest;
+
+  /**
+   * Creates a new, empty <code>ProjectFingerprint</code> instance.
+   */
+  public ProjectFingerprint() {
+    mDigest = Digests.newSha1();
+  }
+
+  /**
+   * Adds a named value to the fingerprint.
+   *
+   * @param key The name of the input.
+   * @param value The value of the input (may be null).
+   * @return This fingerprint so you can chain calls.
+   */
+  public ProjectFingerprint add(String key, String value) {
+    update(key);
+    update(null == value ? "\u0000" : value);
+    return this;
+  }
+
+  /**
+   * Adds the contents of a file to the fingerprint.
+   *
+   * @param key The name of the input.
+   * @param file The file (may be null or not exist).
+   * @return This fingerprint so you can chain calls.
+   * @throws IOException If the file exists but could not be read.
+   */
+  public ProjectFingerprint addFile(String key, File file) throws IOException {
+    update(key);
+    if (null == file || !file.isFile()) {
+      update("\u0000");
+    } else {
+      update(file.getPath());
+      mDigest.update(Files.toByteArray(file));
+    }
+    return this;
+  }
+
+  /**
+   * Gets the hex-encoded fingerprint of everything added so far.
+   *
+   * <p>This resets the fingerprint.</p>
+   *
+   * @return The fingerprint.
+   */
+  public String toHex() {
+    return Digests.toHex(mDigest.digest());
+  }
+
+  /**
+   * Reads a fingerprint previously stored with {@link #write(String, File)}.
+   *
+   * @param fingerprintFile The file holding the fingerprint.
+   * @return The fingerprint, or null if the file does not exist.
+   * @throws IOException If the file exists but could not be read.
+   */
+  public static String read(File fingerprintFile) throws IOException {
+    if (!fingerprintFile.isFile()) {
+      return null;
+    }
+    return Files.toString(fingerprintFile, Charsets.UTF_8).trim();
+  }
+
+  /**
+   * Stores a fingerprint in a file, creating its directory if necessary.
+   *
+   * @param fingerprint The fingerprint.
+   * @param fingerprintFile The file to store it in.
+   * @throws IOException If there is an error.
+   */
+  public static void write(String fingerprint, File fingerprintFile) throws IOException {
+    Files.createParentDirs(fingerprintFile.getAbsoluteFile());
+    Files.write(fingerprint + "\n", fingerprintFile, Charsets.UTF_8);
+  }
+
+  /**
+   * Adds a string, followed by a separator, to the digest.
+   *
+   * @param string The string.
+   */
+  private void update(String string) {
+    mDigest.update(string.getBytes(Charsets.UTF_8));
+    mDigest.update((byte) 0);
+  }
+}
@@ -0,0 +1,277 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Everything needed to write the JDE project file of a project again without maven: the
+ * build directories of the project and its resolved dependencies, in order.
+ *
+ * <p>The jde goal writes a snapshot next to the project file, and the
+ * {@link ProjectFileRegenerator} reads it to rewrite the project file when only the user
+ * javadoc path mappings have changed.  Dependencies whose javadoc came from a mapping are
+ * marked, so a mapping that has since been removed is dropped rather than kept.</p>
+ *
+ * <p>The snapshot is stored as a java properties file.</p>
+ */
+public class ProjectSnapshot {
+  /** The name of the snapshot file within the <code>.jde</code> directory of a project. */
+  public static final String FILE_NAME = "snapshot.properties";
+
+  /** The version of the snapshot format. */
+  private static final String FORMAT_VERSION = "1";
+
+  /** Separates the fields of a dependency. */
+  private static final String SEPARATOR = "\t";
+
+  /** The project file the snapshot was written for. */
+  private final File mProjectFile;
+
+  /** The file of user javadoc path mappings, or null if none. */
+  private final File mJavadocPathsFile;
+
+  /** The main and test source directories of the project. */
+  private final List<String> mSourceDirectories;
+
+  /** The main and test output directories of the project. */
+  private final List<String> mOutputDirectories;
+
+  /** The resolved dependencies, in the order they are written to the project file. */
+  private final List<ProjectDependency> mDependencies;
+
+  /** The names of the artifacts whose javadoc path came from a user mapping. */
+  private final Set<String> mMappedArtifacts;
+
+  /**
+   * Creates a new <code>ProjectSnapshot</code> instance.
+   *
+   * @param projectFile The project file the snapshot is written for.
+   * @param javadocPathsFile The file of user javadoc path mappings, or null if none.
+   * @param sourceDirectories The main and test source directories of the project.
+   * @param outputDirectories The main and test output directories of the project.
+   * @param dependencies The resolved dependencies, in order.
+   * @param mappedArtifacts The names of the artifacts whose javadoc path came from a user
+   *     mapping.
+   */
+  public ProjectSnapshot(File projectFile, File javadocPathsFile,
+      List<String> sourceDirectories, List<String> outputDirectories,
+      Collection<ProjectDependency> dependencies, Collection<String> mappedArtifacts) {
+    if (null == projectFile) {
+      throw new IllegalArgumentException("projectFile may not be null");
+    }
+    mProjectFile = projectFile;
+    mJavadocPathsFile = javadocPathsFile;
+    mSourceDirectories = new ArrayList<String>(sourceDirectories);
+    mOutputDirectories = new ArrayList<String>(outputDirectories);
+    mDependencies = new ArrayList<ProjectDependency>(dependencies);
+    mMappedArtifacts = new HashSet<String>(mappedArtifacts);
+  }
+
+  /**
+   * Gets the project file the snapshot was written for.
+   *
+   * @return The project file.
+   */
+  public File getProjectFile() {
+    return mProjectFile;
+  }
+
+  /**
+   * Gets the file of user javadoc path mappings.
+   *
+   * @return The file, or null if none was configured.
+   */
+  public File getJavadocPathsFile() {
+    return mJavadocPathsFile;
+  }
+
+  /**
+   * Gets the main and test source directories of the project.
+   *
+   * @return The source directories.
+   */
+  public List<String> getSourceDirectories() {
+    return mSourceDirectories;
+  }
+
+  /**
+   * Gets the main and test output directories of the project.
+   *
+   * @return The output directories.
+   */
+  public List<String> getOutputDirectories() {
+    return mOutputDirectories;
+  }
+
+  /**
+   * Gets the resolved dependencies as recorded.
+   *
+   * @return The dependencies, in order.
+   */
+  public List<ProjectDependency> getDependencies() {
+    return mDependencies;
+  }
+
+  /**
+   * Gets the resolved dependencies with the current user javadoc path mappings applied.
+   *
+   * @param javadocUserPathMapping The current mappings.
+   * @return The dependencies, in order.
+   */
+  public List<ProjectDependency> getDependencies(UserPathMapping javadocUserPathMapping) {
+    List<ProjectDependency> dependencies = new ArrayList<ProjectDependency>(mDependencies.size());
+    for (ProjectDependency dependency : mDependencies) {
+      String artifactName = getName(dependency);
+      if (javadocUserPathMapping.contains(artifactName)) {
+        dependency = new ProjectDependency(dependency.getGroupId(), dependency.getArtifactId(),
+            dependency.getVersion(), dependency.getSourcePath(), dependency.getClassPath(),
+            javadocUserPathMapping.get(artifactName));
+      } else if (mMappedArtifacts.contains(artifactName)) {
+        // The mapping was removed; the javadoc jar was never resolved, so leave it out.
+        dependency = new ProjectDependency(dependency.getGroupId(), dependency.getArtifactId(),
+            dependency.getVersion(), dependency.getSourcePath(), dependency.getClassPath(),
+            null);
+      }
+      dependencies.add(dependency);
+    }
+    return dependencies;
+  }
+
+  /**
+   * Writes the snapshot to an output stream in java properties format.
+   *
+   * @param outputStream The stream to write to.
+   * @throws IOException If there is an error writing to the stream.
+   */
+  public void write(OutputStream outputStream) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("version", FORMAT_VERSION);
+    properties.setProperty("projectFile", mProjectFile.getPath());
+    if (null != mJavadocPathsFile) {
+      properties.setProperty("javadocPathsFile", mJavadocPathsFile.getPath());
+    }
+    putList(properties, "sourceDirectory.", mSourceDirectories);
+    putList(properties, "outputDirectory.", mOutputDirectories);
+    List<String> dependencies = new ArrayList<String>(mDependencies.size());
+    for (ProjectDependency dependency : mDependencies) {
+      dependencies.add(dependency.getGroupId() + SEPARATOR + dependency.getArtifactId()
+          + SEPARATOR + dependency.getVersion()
+          + SEPARATOR + nullToEmpty(dependency.getSourcePath())
+          + SEPARATOR + dependency.getClassPath()
+          + SEPARATOR + nullToEmpty(dependency.getJavadocPath())
+          + SEPARATOR + mMappedArtifacts.contains(getName(dependency)));
+    }
+    putList(properties, "dependency.", dependencies);
+    PropertiesFiles.store(properties, outputStream,
+        "Snapshot of the JDE project file written by jde:jde");
+  }
+
+  /**
+   * Reads a snapshot from an input stream in java properties format.
+   *
+   * @param inputStream The contents of a snapshot file.
+   * @return The snapshot.
+   * @throws IOException If there is an error reading from the stream, or the contents are not
+   *     a snapshot this version can read.
+   */
+  public static ProjectSnapshot read(InputStream inputStream) throws IOException {
+    Properties properties = new Properties();
+    properties.load(inputStream);
+    if (!FORMAT_VERSION.equals(properties.getProperty("version"))) {
+      throw new IOException("Unsupported snapshot version: " + properties.getProperty("version"));
+    }
+    String projectFile = properties.getProperty("projectFile");
+    if (null == projectFile) {
+      throw new IOException("Snapshot has no project file");
+    }
+    String javadocPathsFile = properties.getProperty("javadocPathsFile");
+
+    List<ProjectDependency> dependencies = new ArrayList<ProjectDependency>();
+    Set<String> mappedArtifacts = new HashSet<String>();
+    for (String value : getList(properties, "dependency.")) {
+      String[] fields = value.split(SEPARATOR, -1);
+      if (7 != fields.length || fields[4].isEmpty()) {
+        throw new IOException("Malformed dependency in snapshot: " + value);
+      }
+      dependencies.add(new ProjectDependency(fields[0], fields[1], fields[2],
+          emptyToNull(fields[3]), fields[4], emptyToNull(fields[5])));
+      if (Boolean.parseBoolean(fields[6])) {
+        mappedArtifacts.add(fields[0] + ":" + fields[1] + ":" + fields[2]);
+      }
+    }
+    return new ProjectSnapshot(new File(projectFile),
+        null == javadocPathsFile ? null : new File(javadocPathsFile),
+        getList(properties, "sourceDirectory."), getList(properties, "outputDirectory."),
+        dependencies, mappedArtifacts);
+  }
+
+  /**
+   * Gets the artifact name of a dependency, as used by the user path mappings.  This does not
+   * use {@link Artifacts}, so the regenerator does not need maven classes.
+   *
+   * @param dependency A dependency.
+   * @return Its name, <code>groupId:artifactId:version</code>.
+   */
+  private static String getName(ProjectDependency dependency) {
+    return dependency.getGroupId() + ":" + dependency.getArtifactId() + ":"
+        + dependency.getVersion();
+  }
+
+  /**
+   * Puts a list into properties, one numbered key per element.
+   *
+   * @param properties The properties.
+   * @param prefix The prefix of the keys.
+   * @param values The list.
+   */
+  private static void putList(Properties properties, String prefix, List<String> values) {
+    for (int i = 0; i < values.size(); i++) {
+      properties.setProperty(prefix + i, values.get(i));
+    }
+  }
+
+  /**
+   * Gets a list put into properties by {@link #putList(Properties, String, List)}.
+   *
+   * @param properties The properties.
+   * @param prefix The prefix of the keys.
+   * @return The list.
+   */
+  private static List<String> getList(Properties properties, String prefix) {
+    List<String> values = new ArrayList<String>();
+    for (int i = 0; properties.containsKey(prefix + i); i++) {
+      values.add(properties.getProperty(prefix + i));
+    }
+    return values;
+  }
+
+  /**
+   * Converts null to an empty string.
+   *
+   * @param value A string, or null.
+   * @return The string, or an empty string if it was null.
+   */
+  private static String nullToEmpty(String value) {
+    return null == value ? "" : value;
+  }
+
+  /**
+   * Converts an empty string to null.
+   *
+   * @param value A string.
+   * @return The string, or null if it was empty.
+   */
+  private static String emptyToNull(String value) {
+    return value.isEmpty() ? null : value;
+  }
+}
@@ -0,0 +1,59 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Utility methods for writing java properties files whose contents only depend on the
+ * properties.
+ *
+ * <p>{@link Properties#store(OutputStream, String)} writes the current date as a comment and
+ * the entries in hash order, so storing the same properties twice gives different files.
+ * Files written here leave out the date and sort the entries, so a file replaced with an
+ * {@link AtomicFileOutputStream} is left untouched when nothing changed.  They are read back
+ * with {@link Properties#load(java.io.InputStream)} as usual.</p>
+ */
+public final class PropertiesFiles {
+  /** The encoding of properties files. */
+  private static final String ENCODING = "ISO-8859-1";
+
+  /** No constructor available for a utility class. */
+  private PropertiesFiles() {}
+
+  /**
+   * Stores properties to an output stream, with a comment line and one sorted line for each
+   * entry.
+   *
+   * @param properties The properties to store.
+   * @param outputStream The stream to write to.
+   * @param comment A single line describing the file.
+   * @throws IOException If there is an error writing to the stream.
+   */
+  public static void store(Properties properties, OutputStream outputStream, String comment)
+      throws IOException {
+    // Let Properties escape the entries, then drop its date comment.
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    properties.store(buffer, null);
+    List<String> lines = new ArrayList<String>(properties.size());
+    for (String line : buffer.toString(ENCODING).split("\r\n|\r|\n")) {
+      if (!line.isEmpty() && !line.startsWith("#")) {
+        lines.add(line);
+      }
+    }
+    Collections.sort(lines);
+
+    StringBuilder contents = new StringBuilder();
+    contents.append('#').append(comment).append('\n');
+    for (String line : lines) {
+      contents.append(line).append('\n');
+    }
+    outputStream.write(contents.toString().getBytes(ENCODING));
+  }
+}
@@ -0,0 +1,159 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Decides which artifacts get their sources and javadoc resolved.  Artifacts that are
+ * filtered out still contribute their classes to the project file.
+ *
+ * <p>An artifact is resolved if its scope is one of the resolved scopes (or no scopes are
+ * given), it matches an include pattern (or no includes are given), and it matches no exclude
+ * pattern.  Patterns have the form <code>groupId[:artifactId]</code>, where <code>*</code>
+ * matches any run of characters and <code>?</code> any single character, within one part;
+ * a pattern without an artifactId matches every artifact of the group.</p>
+ *
+ * <p>The include and exclude patterns are each compiled into a single regular expression,
+ * so matching an artifact costs two regex matches however many patterns there are.</p>
+ */
+public class ResolutionFilter {
+  /** The counter of artifacts whose sources and javadoc were not resolved. */
+  public static final String FILTERED = "resolve-filtered";
+
+  /** The scope of artifacts that do not declare one. */
+  private static final String DEFAULT_SCOPE = Artifact.SCOPE_COMPILE;
+
+  /** The scopes of the artifacts to resolve, or empty for every scope. */
+  private final Set<String> mScopes;
+
+  /** Matches the included artifacts, or null to include every artifact. */
+  private final Pattern mIncludes;
+
+  /** Matches the excluded artifacts, or null to exclude none. */
+  private final Pattern mExcludes;
+
+  /**
+   * Creates a new <code>ResolutionFilter</code> instance.
+   *
+   * @param scopes The scopes of the artifacts to resolve, or empty for every scope.
+   * @param includes Patterns of the artifacts to resolve, or empty for every artifact.
+   * @param excludes Patterns of the artifacts not to resolve.
+   * @throws IllegalArgumentException If a pattern is malformed.
+   */
+  public ResolutionFilter(Collection<String> scopes, Collection<String> includes,
+      Collection<String> excludes) {
+    mScopes = Collections.unmodifiableSet(new TreeSet<String>(scopes));
+    mIncludes = compile(includes);
+    mExcludes = compile(excludes);
+  }
+
+  /**
+   * Determines whether the filter lets every artifact through.
+   *
+   * @return Whether no scopes, includes, or excludes are given.
+   */
+  public boolean isEmpty() {
+    return mScopes.isEmpty() && null == mIncludes && null == mExcludes;
+  }
+
+  /**
+   * Determines whether the sources and javadoc of an artifact should be resolved.
+   *
+   * @param artifact An artifact.
+   * @return Whether to resolve them.
+   */
+  public boolean isResolved(Artifact artifact) {
+    return isResolved(artifact.getScope(), artifact.getGroupId(), artifact.getArtifactId());
+  }
+
+  /**
+   * Determines whether the sources and javadoc of an artifact should be resolved.
+   *
+   * @param scope The scope of the artifact, or null for the default scope.
+   * @param groupId The groupId of the artifact.
+   * @param artifactId The artifactId of the artifact.
+   * @return Whether to resolve them.
+   */
+  public boolean isResolved(String scope, String groupId, String artifactId) {
+    if (!mScopes.isEmpty() && !mScopes.contains(null == scope ? DEFAULT_SCOPE : scope)) {
+      return false;
+    }
+    if (null == mIncludes && null == mExcludes) {
+      return true;
+    }
+    String coordinates = groupId + ":" + artifactId;
+    return (null == mIncludes || mIncludes.matcher(coordinates).matches())
+        && (null == mExcludes || !mExcludes.matcher(coordinates).matches());
+  }
+
+  /**
+   * Describes the filter, for fingerprinting the settings it is used with.
+   *
+   * @return The resolved scopes and the compiled include and exclude patterns.
+   */
+  @Override
+  public String toString() {
+    return "scopes=" + mScopes + " includes=" + mIncludes + " excludes=" + mExcludes;
+  }
+
+  /**
+   * Compiles patterns into a single regular expression matching
+   * <code>groupId:artifactId</code>.
+   *
+   * @param patterns The patterns.
+   * @return The regular expression, or null if there are no patterns.
+   * @throws IllegalArgumentException If a pattern is malformed.
+   */
+  private static Pattern compile(Collection<String> patterns) {
+    if (patterns.isEmpty()) {
+      return null;
+    }
+    StringBuilder regex = new StringBuilder();
+    for (String pattern : patterns) {
+      String[] parts = pattern.trim().split(":", -1);
+      if (parts.length > 2 || parts[0].isEmpty()
+          || (2 == parts.length && parts[1].isEmpty())) {
+        throw new IllegalArgumentException(
+            "Pattern must be groupId or groupId:artifactId: " + pattern);
+      }
+      if (regex.length() > 0) {
+        regex.append('|');
+      }
+      regex.append(globToRegex(parts[0])).append(':')
+          .append(2 == parts.length ? globToRegex(parts[1]) : "[^:]*");
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /**
+   * Converts one part of a pattern to a regular expression.
+   *
+   * @param glob A groupId or artifactId, possibly with <code>*</code> and <code>?</code>.
+   * @return The regular expression.
+   */
+  private static String globToRegex(String glob) {
+    StringBuilder regex = new StringBuilder();
+    int start = 0;
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if ('*' == c || '?' == c) {
+        if (i > start) {
+          regex.append(Pattern.quote(glob.substring(start, i)));
+        }
+        regex.append('*' == c ? "[^:]*" : "[^:]");
+        start = i + 1;
+      }
+    }
+    if (start < glob.length()) {
+      regex.append(Pattern.quote(glob.substring(start)));
+    }
+    return regex.toString();
+  }
+}
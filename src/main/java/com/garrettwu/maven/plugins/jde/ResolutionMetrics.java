@@ -0,0 +1,307 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Collects timings and counters describing where a run of the plugin spends its time.
+ *
+ * <p>Phase timings cover whole stages of the goal (resolving, building, writing).  Artifact
+ * timings break the resolution stage down per dependency and per step (sources, javadoc,
+ * unpack).  Counters record bytes unpacked, cache hits and misses, and resolver
+ * failures.</p>
+ *
+ * <p>This class is safe for use by multiple resolver threads.</p>
+ */
+public class ResolutionMetrics {
+  /** Counter of bytes written while unpacking javadoc jars. */
+  public static final String BYTES_UNPACKED = "bytes-unpacked";
+
+  /** Counter of sources and javadoc lookups the resolver failed. */
+  public static final String RESOLVER_FAILURES = "resolver-failures";
+
+  /** The number of slowest artifacts listed in the summary. */
+  private static final int SLOWEST_ARTIFACTS = 10;
+
+  /** Total nanoseconds spent in each phase. */
+  private final ConcurrentMap<String, AtomicLong> mPhaseNanos;
+
+  /** Nanoseconds spent on each step, per artifact. */
+  private final ConcurrentMap<String, ConcurrentMap<String, AtomicLong>> mArtifactNanos;
+
+  /** Named counters. */
+  private final ConcurrentMap<String, AtomicLong> mCounters;
+
+  /**
+   * Creates a new, empty <code>ResolutionMetrics</code> instance.
+   */
+  public ResolutionMetrics() {
+    mPhaseNanos = new ConcurrentHashMap<String, AtomicLong>();
+    mArtifactNanos = new ConcurrentHashMap<String, ConcurrentMap<String, AtomicLong>>();
+    mCounters = new ConcurrentHashMap<String, AtomicLong>();
+  }
+
+  /**
+   * Records time spent in a phase of the goal.
+   *
+   * @param phase The name of the phase.
+   * @param startNanos The value of {@link System#nanoTime()} when the phase started.
+   */
+  public void recordPhase(String phase, long startNanos) {
+    get(mPhaseNanos, phase).addAndGet(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Records time spent on a step of resolving an artifact.
+   *
+   * @param artifactName The name of the artifact.
+   * @param step The name of the step, such as "sources".
+   * @param startNanos The value of {@link System#nanoTime()} when the step started.
+   */
+  public void recordArtifact(String artifactName, String step, long startNanos) {
+    ConcurrentMap<String, AtomicLong> steps = mArtifactNanos.get(artifactName);
+    if (null == steps) {
+      ConcurrentMap<String, AtomicLong> newSteps = new ConcurrentHashMap<String, AtomicLong>();
+      steps = mArtifactNanos.putIfAbsent(artifactName, newSteps);
+      if (null == steps) {
+        steps = newSteps;
+      }
+    }
+    get(steps, step).addAndGet(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Adds to a counter.
+   *
+   * @param counter The name of the counter.
+   * @param delta The amount to add.
+   */
+  public void count(String counter, long delta) {
+    get(mCounters, counter).addAndGet(delta);
+  }
+
+  /**
+   * Records a lookup in a cache.
+   *
+   * @param cache The name of the cache.
+   * @param hit Whether the lookup was a hit.
+   */
+  public void countCacheLookup(String cache, boolean hit) {
+    count(cache + (hit ? "-hits" : "-misses"), 1L);
+  }
+
+  /**
+   * Gets the value of a counter.
+   *
+   * @param counter The name of the counter.
+   * @return Its value, or zero if it was never counted.
+   */
+  public long getCount(String counter) {
+    AtomicLong value = mCounters.get(counter);
+    return null == value ? 0L : value.get();
+  }
+
+  /**
+   * Gets the total time spent in a phase.
+   *
+   * @param phase The name of the phase.
+   * @return The time in nanoseconds, or zero if the phase was never recorded.
+   */
+  public long getPhaseNanos(String phase) {
+    AtomicLong value = mPhaseNanos.get(phase);
+    return null == value ? 0L : value.get();
+  }
+
+  /**
+   * Logs a summary table of the phases, counters, and slowest artifacts.
+   *
+   * @param log The maven log.
+   */
+  public void logSummary(Log log) {
+    log.info("Timing summary:");
+    for (Map.Entry<String, Long> phase : snapshot(mPhaseNanos).entrySet()) {
+      log.info(String.format(Locale.US, "  %-30s %10.1f ms", phase.getKey(),
+          toMillis(phase.getValue())));
+    }
+    for (Map.Entry<String, Long> counter : snapshot(mCounters).entrySet()) {
+      log.info(String.format(Locale.US, "  %-30s %10d", counter.getKey(), counter.getValue()));
+    }
+
+    List<Map.Entry<String, Long>> artifacts
+        = new ArrayList<Map.Entry<String, Long>>(getArtifactTotals().entrySet());
+    if (artifacts.isEmpty()) {
+      return;
+    }
+    Collections.sort(artifacts, new Comparator<Map.Entry<String, Long>>() {
+      @Override
+      public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+        return b.getValue().compareTo(a.getValue());
+      }
+    });
+    log.info("Slowest dependencies:");
+    for (Map.Entry<String, Long> artifact
+             : artifacts.subList(0, Math.min(SLOWEST_ARTIFACTS, artifacts.size()))) {
+      log.info(String.format(Locale.US, "  %-60s %10.1f ms", artifact.getKey(),
+          toMillis(artifact.getValue())));
+    }
+  }
+
+  /**
+   * Writes all metrics as a JSON document.
+   *
+   * <pre>
+   * {"phases": {"resolve": 1234.5, ...},
+   *  "counters": {"bytes-unpacked": 1024, ...},
+   *  "artifacts": {"groupId:artifactId:version": {"sources": 12.5, ...}, ...}}
+   * </pre>
+   *
+   * <p>Times are in milliseconds.</p>
+   *
+   * @param writer The writer to write the document to.
+   * @throws IOException If there is an error.
+   */
+  public void writeJson(Writer writer) throws IOException {
+    writer.write("{\n  \"phases\": {");
+    writeJsonTimes(writer, snapshot(mPhaseNanos), "\n    ");
+    writer.write("\n  },\n  \"counters\": {");
+    String separator = "\n    ";
+    for (Map.Entry<String, Long> counter : snapshot(mCounters).entrySet()) {
+      writer.write(separator);
+      writeJsonString(writer, counter.getKey());
+      writer.write(": " + counter.getValue());
+      separator = ",\n    ";
+    }
+    writer.write("\n  },\n  \"artifacts\": {");
+    separator = "\n    ";
+    SortedMap<String, ConcurrentMap<String, AtomicLong>> artifacts
+        = new TreeMap<String, ConcurrentMap<String, AtomicLong>>(mArtifactNanos);
+    for (Map.Entry<String, ConcurrentMap<String, AtomicLong>> artifact : artifacts.entrySet()) {
+      writer.write(separator);
+      writeJsonString(writer, artifact.getKey());
+      writer.write(": {");
+      writeJsonTimes(writer, snapshot(artifact.getValue()), " ");
+      writer.write(" }");
+      separator = ",\n    ";
+    }
+    writer.write("\n  }\n}\n");
+  }
+
+  /**
+   * Writes the members of a JSON object mapping names to times in milliseconds.
+   *
+   * @param writer The writer.
+   * @param nanos The times in nanoseconds, by name.
+   * @param indent The whitespace to put before each member.
+   * @throws IOException If there is an error.
+   */
+  private static void writeJsonTimes(Writer writer, Map<String, Long> nanos, String indent)
+      throws IOException {
+    String separator = indent;
+    for (Map.Entry<String, Long> time : nanos.entrySet()) {
+      writer.write(separator);
+      writeJsonString(writer, time.getKey());
+      writer.write(String.format(Locale.US, ": %.3f", toMillis(time.getValue())));
+      separator = "," + indent;
+    }
+  }
+
+  /**
+   * Writes a JSON string literal.
+   *
+   * @param writer The writer.
+   * @param string The contents of the string.
+   * @throws IOException If there is an error.
+   */
+  private static void writeJsonString(Writer writer, String string) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if ('"' == c || '\\' == c) {
+        writer.write('\\');
+        writer.write(c);
+      } else if (c < 0x20) {
+        writer.write(String.format("\\u%04x", (int) c));
+      } else {
+        writer.write(c);
+      }
+    }
+    writer.write('"');
+  }
+
+  /**
+   * Gets the total time spent on each artifact, over all steps.
+   *
+   * @return The time in nanoseconds, by artifact name.
+   */
+  private Map<String, Long> getArtifactTotals() {
+    Map<String, Long> totals = new TreeMap<String, Long>();
+    for (Map.Entry<String, ConcurrentMap<String, AtomicLong>> artifact
+             : mArtifactNanos.entrySet()) {
+      long total = 0;
+      for (AtomicLong nanos : artifact.getValue().values()) {
+        total += nanos.get();
+      }
+      totals.put(artifact.getKey(), total);
+    }
+    return totals;
+  }
+
+  /**
+   * Copies a map of atomic values into a sorted map of plain values.
+   *
+   * @param values The atomic values.
+   * @return The current values, sorted by name.
+   */
+  private static SortedMap<String, Long> snapshot(Map<String, AtomicLong> values) {
+    SortedMap<String, Long> snapshot = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> value : values.entrySet()) {
+      snapshot.put(value.getKey(), value.getValue().get());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Gets the value for a name, adding a zero value if there is none.
+   *
+   * @param values The values.
+   * @param name The name.
+   * @return The value.
+   */
+  private static AtomicLong get(ConcurrentMap<String, AtomicLong> values, String name) {
+    AtomicLong value = values.get(name);
+    if (null == value) {
+      AtomicLong newValue = new AtomicLong();
+      value = values.putIfAbsent(name, newValue);
+      if (null == value) {
+        value = newValue;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Converts nanoseconds to fractional milliseconds.
+   *
+   * @param nanos A time in nanoseconds.
+   * @return The time in milliseconds.
+   */
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
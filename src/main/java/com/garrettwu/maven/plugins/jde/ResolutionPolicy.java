@@ -0,0 +1,353 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Bounds the time spent resolving sources and javadoc jars, so that a slow or hung remote
+ * repository cannot stall the plugin.
+ *
+ * <p>Each attempt to resolve a jar from a repository is given a timeout, failed attempts are
+ * retried with exponential backoff, and no attempts are started once the overall deadline has
+ * passed.  A repository that fails (with a transfer error or a timeout) too many times in a row
+ * is no longer queried at all for the rest of the run.  A jar the repository reports as not
+ * found is not a failure of the repository.</p>
+ *
+ * <p>Attempts that time out are abandoned rather than stopped: the artifact resolver cannot be
+ * interrupted, so they are run on daemon threads that are left to finish on their own.  Since an
+ * abandoned attempt may still be writing the jar into the local repository, a jar whose attempt
+ * timed out is neither retried nor looked up in another repository for the rest of the run.</p>
+ *
+ * <p>This class is safe for use by multiple resolver threads.</p>
+ */
+public class ResolutionPolicy extends MavenLogged {
+  /** Counter of resolution attempts that timed out. */
+  public static final String TIMEOUTS = "resolve-timeouts";
+
+  /** Counter of resolution attempts that were retried. */
+  public static final String RETRIES = "resolve-retries";
+
+  /** Counter of lookups skipped because a repository's circuit breaker was open. */
+  public static final String BREAKER_SKIPS = "circuit-breaker-skips";
+
+  /** Counter of lookups skipped because the overall deadline had passed. */
+  public static final String DEADLINE_SKIPS = "deadline-skips";
+
+  /** Counter of jars left out because they could not be resolved in time. */
+  public static final String UNAVAILABLE = "resolve-unavailable";
+
+  /** The repository id used for lookups when the project has no remote repositories. */
+  private static final String LOCAL_REPOSITORY_ID = "local";
+
+  /**
+   * The outcome of resolving a jar.
+   */
+  public enum Outcome {
+    /** The jar was resolved. */
+    FOUND,
+    /** Every repository queried reported the jar as not found. */
+    NOT_FOUND,
+    /** The jar could not be resolved, but a repository failed or was skipped. */
+    UNAVAILABLE
+  }
+
+  /** The timeout of each attempt in milliseconds, or zero for no timeout. */
+  private final long mAttemptTimeoutMillis;
+
+  /** The time in {@link System#nanoTime()} after which no attempts start, or zero for none. */
+  private final long mDeadlineNanos;
+
+  /** The number of times a failed attempt is retried. */
+  private final int mRetries;
+
+  /** The delay before the first retry in milliseconds; it doubles with each retry. */
+  private final long mBackoffMillis;
+
+  /** The number of consecutive failures after which a repository is no longer queried. */
+  private final int mFailureThreshold;
+
+  /** The number of consecutive failures of each repository, by repository id. */
+  private final ConcurrentMap<String, AtomicInteger> mConsecutiveFailures;
+
+  /** Whether the passing of the deadline has been logged. */
+  private final AtomicBoolean mDeadlineLogged;
+
+  /** Runs attempts that have a timeout, or null if attempts have no timeout. */
+  private final ExecutorService mExecutor;
+
+  /**
+   * Creates a new <code>ResolutionPolicy</code> instance.  The overall deadline starts now.
+   *
+   * @param log The maven log.
+   * @param attemptTimeoutMillis The timeout of each attempt, or zero for no timeout.
+   * @param deadlineMillis How long attempts may be started for, or zero for no deadline.
+   * @param retries The number of times a failed attempt is retried.
+   * @param backoffMillis The delay before the first retry; it doubles with each retry.
+   * @param failureThreshold The number of consecutive failures after which a repository is
+   *     no longer queried, or zero to always query it.
+   */
+  public ResolutionPolicy(Log log, long attemptTimeoutMillis, long deadlineMillis, int retries,
+      long backoffMillis, int failureThreshold) {
+    super(log);
+    if (attemptTimeoutMillis < 0) {
+      throw new IllegalArgumentException("attemptTimeoutMillis may not be negative");
+    }
+    if (deadlineMillis < 0) {
+      throw new IllegalArgumentException("deadlineMillis may not be negative");
+    }
+    if (retries < 0) {
+      throw new IllegalArgumentException("retries may not be negative");
+    }
+    if (backoffMillis < 0) {
+      throw new IllegalArgumentException("backoffMillis may not be negative");
+    }
+    if (failureThreshold < 0) {
+      throw new IllegalArgumentException("failureThreshold may not be negative");
+    }
+    mAttemptTimeoutMillis = attemptTimeoutMillis;
+    mDeadlineNanos = 0 == deadlineMillis
+        ? 0L : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    mRetries = retries;
+    mBackoffMillis = backoffMillis;
+    mFailureThreshold = failureThreshold;
+    mConsecutiveFailures = new ConcurrentHashMap<String, AtomicInteger>();
+    mDeadlineLogged = new AtomicBoolean(false);
+    mExecutor = 0 == attemptTimeoutMillis ? null : Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("jde-resolve-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Resolves a jar from each remote repository in turn until one of them has it.
+   *
+   * @param resolver The artifact resolver.
+   * @param artifact The artifact of the jar.
+   * @param remoteRepositories The remote repositories to query, or null for none.
+   * @param localRepository The local repository.
+   * @param metrics Records timeouts, retries, and skipped lookups.
+   * @return The outcome; the artifact's file is set if the jar was found.
+   */
+  public Outcome resolve(ArtifactResolver resolver, Artifact artifact,
+      List<ArtifactRepository> remoteRepositories, ArtifactRepository localRepository,
+      ResolutionMetrics metrics) {
+    try {
+      if (null == remoteRepositories || remoteRepositories.isEmpty()) {
+        // The resolver still looks in the local repository.
+        return resolve(resolver, artifact, LOCAL_REPOSITORY_ID,
+            Collections.<ArtifactRepository>emptyList(), localRepository, metrics);
+      }
+      boolean unavailable = false;
+      for (ArtifactRepository remoteRepository : remoteRepositories) {
+        Outcome outcome = resolve(resolver, artifact, remoteRepository.getId(),
+            Collections.singletonList(remoteRepository), localRepository, metrics);
+        if (Outcome.FOUND == outcome) {
+          return outcome;
+        }
+        unavailable |= Outcome.UNAVAILABLE == outcome;
+      }
+      return unavailable ? Outcome.UNAVAILABLE : Outcome.NOT_FOUND;
+    } catch (TimeoutException e) {
+      // The abandoned attempt may still write the jar; another attempt would race it.
+      return Outcome.UNAVAILABLE;
+    }
+  }
+
+  /**
+   * Resolves a jar from a single repository, retrying failed attempts.  Attempts that time
+   * out are not retried.
+   *
+   * @param resolver The artifact resolver.
+   * @param artifact The artifact of the jar.
+   * @param repositoryId The id of the repository, for its circuit breaker.
+   * @param remoteRepositories The repository, as a list.
+   * @param localRepository The local repository.
+   * @param metrics Records timeouts, retries, and skipped lookups.
+   * @return The outcome.
+   * @throws TimeoutException If an attempt timed out, and may still be running.
+   */
+  private Outcome resolve(final ArtifactResolver resolver, final Artifact artifact,
+      String repositoryId, final List<ArtifactRepository> remoteRepositories,
+      final ArtifactRepository localRepository, ResolutionMetrics metrics)
+      throws TimeoutException {
+    Callable<Void> attempt = new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        resolver.resolve(artifact, remoteRepositories, localRepository);
+        return null;
+      }
+    };
+    for (int retry = 0; retry <= mRetries; retry++) {
+      if (isTripped(repositoryId)) {
+        metrics.count(BREAKER_SKIPS, 1L);
+        return Outcome.UNAVAILABLE;
+      }
+      if (isPastDeadline()) {
+        metrics.count(DEADLINE_SKIPS, 1L);
+        return Outcome.UNAVAILABLE;
+      }
+      if (retry > 0) {
+        metrics.count(RETRIES, 1L);
+        try {
+          Thread.sleep(getBackoffMillis(retry));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return Outcome.UNAVAILABLE;
+        }
+      }
+      try {
+        run(attempt);
+        recordSuccess(repositoryId);
+        return Outcome.FOUND;
+      } catch (ArtifactNotFoundException e) {
+        // The repository answered; it just does not have the jar.
+        recordSuccess(repositoryId);
+        return Outcome.NOT_FOUND;
+      } catch (TimeoutException e) {
+        metrics.count(TIMEOUTS, 1L);
+        getLog().debug("Timed out resolving " + artifact + " from repository " + repositoryId);
+        recordFailure(repositoryId);
+        throw e;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return Outcome.UNAVAILABLE;
+      } catch (Exception e) {
+        getLog().debug("Failed to resolve " + artifact + " from repository " + repositoryId
+            + ": " + e.getMessage());
+        recordFailure(repositoryId);
+      }
+    }
+    return Outcome.UNAVAILABLE;
+  }
+
+  /**
+   * Runs an attempt, bounded by the attempt timeout and the overall deadline.
+   *
+   * @param attempt The attempt.
+   * @throws Exception The exception thrown by the attempt.
+   * @throws TimeoutException If the attempt did not finish in time.
+   */
+  private void run(Callable<Void> attempt) throws Exception {
+    if (null == mExecutor) {
+      attempt.call();
+      return;
+    }
+    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(mAttemptTimeoutMillis);
+    if (0 != mDeadlineNanos) {
+      timeoutNanos = Math.max(0L, Math.min(timeoutNanos, mDeadlineNanos - System.nanoTime()));
+    }
+    Future<Void> future = mExecutor.submit(attempt);
+    try {
+      future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    } finally {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Gets the delay before a retry.
+   *
+   * @param retry The retry, starting at 1.
+   * @return The delay in milliseconds, cut short by the overall deadline.
+   */
+  private long getBackoffMillis(int retry) {
+    long backoffMillis = mBackoffMillis << Math.min(retry - 1, 30);
+    if (0 != mDeadlineNanos) {
+      long remainingMillis = TimeUnit.NANOSECONDS.toMillis(mDeadlineNanos - System.nanoTime());
+      backoffMillis = Math.max(0L, Math.min(backoffMillis, remainingMillis));
+    }
+    return backoffMillis;
+  }
+
+  /**
+   * Determines whether the overall deadline has passed, logging it the first time.
+   *
+   * @return Whether the deadline has passed.
+   */
+  private boolean isPastDeadline() {
+    if (0 == mDeadlineNanos || System.nanoTime() - mDeadlineNanos < 0) {
+      return false;
+    }
+    if (mDeadlineLogged.compareAndSet(false, true)) {
+      getLog().warn("Resolution deadline passed; remaining sources and javadoc are skipped.");
+    }
+    return true;
+  }
+
+  /**
+   * Determines whether a repository has failed too many times in a row to be queried.
+   *
+   * @param repositoryId The id of the repository.
+   * @return Whether its circuit breaker is open.
+   */
+  public boolean isTripped(String repositoryId) {
+    AtomicInteger failures = mConsecutiveFailures.get(repositoryId);
+    return 0 != mFailureThreshold && null != failures && failures.get() >= mFailureThreshold;
+  }
+
+  /**
+   * Records that a repository answered.
+   *
+   * @param repositoryId The id of the repository.
+   */
+  private void recordSuccess(String repositoryId) {
+    AtomicInteger failures = mConsecutiveFailures.get(repositoryId);
+    if (null != failures && !isTripped(repositoryId)) {
+      failures.set(0);
+    }
+  }
+
+  /**
+   * Records that a repository failed, opening its circuit breaker after too many failures.
+   *
+   * @param repositoryId The id of the repository.
+   */
+  private void recordFailure(String repositoryId) {
+    AtomicInteger failures = mConsecutiveFailures.get(repositoryId);
+    if (null == failures) {
+      AtomicInteger newFailures = new AtomicInteger();
+      failures = mConsecutiveFailures.putIfAbsent(repositoryId, newFailures);
+      if (null == failures) {
+        failures = newFailures;
+      }
+    }
+    if (failures.incrementAndGet() == mFailureThreshold) {
+      getLog().warn("Repository " + repositoryId + " failed " + mFailureThreshold
+          + " times in a row; it will not be queried for sources or javadoc again in this run.");
+    }
+  }
+
+  /**
+   * Stops the threads running attempts.  Attempts still running are abandoned.
+   */
+  public void shutdown() {
+    if (null != mExecutor) {
+      mExecutor.shutdownNow();
+    }
+  }
+}
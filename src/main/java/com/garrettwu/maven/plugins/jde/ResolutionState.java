@@ -0,0 +1,358 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Remembers the dependencies resolved by the previous run for a project, so the next run only
+ * resolves the artifacts that were added or changed.
+ *
+ * <p>Each entry records where the classes, sources, and javadoc of an artifact were found,
+ * when, and the modification time of its class path.  The state also records the settings it
+ * was resolved with; loading it under different settings discards every entry.  Artifacts
+ * that disappear from the project are queued until their unpacked javadoc is cleaned up.</p>
+ *
+ * <p>The state is stored as a java properties file.  This class is safe for use by multiple
+ * resolver threads.</p>
+ */
+public class ResolutionState {
+  /** The name of the state of direct dependencies within the .jde directory of a project. */
+  public static final String FILE_NAME = "resolution.properties";
+
+  /** The name of the state of transitive dependencies within the .jde directory. */
+  public static final String TRANSITIVE_FILE_NAME = "resolution-transitive.properties";
+
+  /** The key of the settings the entries were resolved with. */
+  private static final String SETTINGS_KEY = "settings";
+
+  /** The prefix of the key of each entry. */
+  private static final String ARTIFACT_PREFIX = "artifact.";
+
+  /** The prefix of the key of each artifact queued for cleanup. */
+  private static final String CLEANUP_PREFIX = "cleanup.";
+
+  /** Separates the fields of an entry. */
+  private static final String SEPARATOR = "\t";
+
+  /** How long an entry missing its sources or javadoc may be reused, in milliseconds. */
+  private final long mMissingTtlMillis;
+
+  /** The settings the entries were resolved with, or null if not known. */
+  private String mSettings;
+
+  /** The entries, keyed by the full id of the artifact (see {@link Artifacts#getId}). */
+  private final SortedMap<String, Entry> mEntries;
+
+  /** The ids of removed artifacts whose javadoc has not been cleaned up yet. */
+  private final SortedSet<String> mPendingCleanup;
+
+  /** Whether the state has changed since it was loaded. */
+  private boolean mModified;
+
+  /**
+   * Creates a new, empty <code>ResolutionState</code> instance.
+   *
+   * @param missingTtlMillis How long an entry without sources or javadoc may be reused before
+   *     they are looked up again, usually the time-to-live of the missing artifact cache.
+   */
+  public ResolutionState(long missingTtlMillis) {
+    if (missingTtlMillis < 0) {
+      throw new IllegalArgumentException("missingTtlMillis may not be negative");
+    }
+    mMissingTtlMillis = missingTtlMillis;
+    mEntries = new TreeMap<String, Entry>();
+    mPendingCleanup = new TreeSet<String>();
+    mModified = false;
+  }
+
+  /**
+   * Loads the state from an input stream in java properties format.  Malformed entries are
+   * dropped.
+   *
+   * @param inputStream The contents of a java properties file.
+   * @throws IOException If there is an error reading from the stream.
+   */
+  public synchronized void load(InputStream inputStream) throws IOException {
+    Properties properties = new Properties();
+    properties.load(inputStream);
+    for (Map.Entry<Object, Object> property : properties.entrySet()) {
+      String key = property.getKey().toString();
+      String value = property.getValue().toString();
+      if (SETTINGS_KEY.equals(key)) {
+        mSettings = value;
+      } else if (key.startsWith(CLEANUP_PREFIX)) {
+        mPendingCleanup.add(key.substring(CLEANUP_PREFIX.length()));
+      } else if (key.startsWith(ARTIFACT_PREFIX)) {
+        Entry entry = Entry.parse(value);
+        if (null == entry) {
+          mModified = true;
+        } else {
+          mEntries.put(key.substring(ARTIFACT_PREFIX.length()), entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Stores the state to an output stream in java properties format.
+   *
+   * @param outputStream The stream to write to.
+   * @throws IOException If there is an error writing to the stream.
+   */
+  public synchronized void store(OutputStream outputStream) throws IOException {
+    Properties properties = new Properties();
+    if (null != mSettings) {
+      properties.setProperty(SETTINGS_KEY, mSettings);
+    }
+    for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+      properties.setProperty(ARTIFACT_PREFIX + entry.getKey(), entry.getValue().format());
+    }
+    for (String artifactId : mPendingCleanup) {
+      properties.setProperty(CLEANUP_PREFIX + artifactId, "");
+    }
+    PropertiesFiles.store(properties, outputStream,
+        "Dependencies resolved by the jde-maven-plugin");
+    mModified = false;
+  }
+
+  /**
+   * Determines whether the state has changed since it was loaded or stored.
+   *
+   * @return Whether the state should be saved.
+   */
+  public synchronized boolean isModified() {
+    return mModified;
+  }
+
+  /**
+   * Sets the settings dependencies are resolved with.  If they differ from the settings the
+   * entries were resolved with, every entry is discarded.
+   *
+   * @param settings A fingerprint of the settings.
+   */
+  public synchronized void setSettings(String settings) {
+    if (!settings.equals(mSettings)) {
+      mSettings = settings;
+      mEntries.clear();
+      mModified = true;
+    }
+  }
+
+  /**
+   * Gets the entry recorded for an artifact, unless it is missing sources or javadoc that may
+   * have become available since.
+   *
+   * @param artifactId The full id of the artifact.
+   * @return The entry, or null if there is none that may be reused.
+   */
+  public synchronized Entry get(String artifactId) {
+    Entry entry = mEntries.get(artifactId);
+    if (null == entry) {
+      return null;
+    }
+    if ((null == entry.getSourcePath() || null == entry.getJavadocPath())
+        && System.currentTimeMillis() - entry.getResolvedAt() >= mMissingTtlMillis) {
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Records the dependency resolved for an artifact.
+   *
+   * @param artifactId The full id of the artifact.
+   * @param dependency The resolved dependency.
+   * @param classLastModified The modification time of the class path of the dependency.
+   */
+  public synchronized void put(String artifactId, ProjectDependency dependency,
+      long classLastModified) {
+    Entry entry = new Entry(System.currentTimeMillis(), classLastModified,
+        dependency.getClassPath(), dependency.getSourcePath(), dependency.getJavadocPath());
+    mEntries.put(artifactId, entry);
+    mPendingCleanup.remove(artifactId);
+    mModified = true;
+  }
+
+  /**
+   * Removes every entry except those of the current artifacts, and queues the removed
+   * artifacts for cleanup.
+   *
+   * @param artifactIds The full ids of the current artifacts.
+   */
+  public synchronized void retain(Collection<String> artifactIds) {
+    Set<String> current = new HashSet<String>(artifactIds);
+    for (Iterator<String> iterator = mEntries.keySet().iterator(); iterator.hasNext();) {
+      String artifactId = iterator.next();
+      if (!current.contains(artifactId)) {
+        iterator.remove();
+        mPendingCleanup.add(artifactId);
+        mModified = true;
+      }
+    }
+  }
+
+  /**
+   * Gets the removed artifacts whose javadoc has not been cleaned up yet.
+   *
+   * @return The artifact ids.
+   */
+  public synchronized SortedSet<String> getPendingCleanup() {
+    return new TreeSet<String>(mPendingCleanup);
+  }
+
+  /**
+   * Records that the javadoc of a removed artifact was cleaned up.
+   *
+   * @param artifactId The full id of the artifact.
+   */
+  public synchronized void removePendingCleanup(String artifactId) {
+    if (mPendingCleanup.remove(artifactId)) {
+      mModified = true;
+    }
+  }
+
+  /**
+   * The dependency resolved for an artifact by an earlier run.
+   */
+  public static final class Entry {
+    /** When the dependency was resolved, in milliseconds since the epoch. */
+    private final long mResolvedAt;
+
+    /** The modification time of the class path when it was resolved. */
+    private final long mClassLastModified;
+
+    /** The path to the classes or jar. */
+    private final String mClassPath;
+
+    /** The path to the sources, or null if not found. */
+    private final String mSourcePath;
+
+    /** The path or url to the javadoc, or null if not found. */
+    private final String mJavadocPath;
+
+    /**
+     * Creates a new <code>Entry</code> instance.
+     *
+     * @param resolvedAt When the dependency was resolved.
+     * @param classLastModified The modification time of the class path.
+     * @param classPath The path to the classes or jar.
+     * @param sourcePath The path to the sources, or null if not found.
+     * @param javadocPath The path or url to the javadoc, or null if not found.
+     */
+    Entry(long resolvedAt, long classLastModified, String classPath, String sourcePath,
+        String javadocPath) {
+      mResolvedAt = resolvedAt;
+      mClassLastModified = classLastModified;
+      mClassPath = classPath;
+      mSourcePath = sourcePath;
+      mJavadocPath = javadocPath;
+    }
+
+    /**
+     * Gets when the dependency was resolved.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getResolvedAt() {
+      return mResolvedAt;
+    }
+
+    /**
+     * Gets the modification time of the class path when the dependency was resolved.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getClassLastModified() {
+      return mClassLastModified;
+    }
+
+    /**
+     * Gets the path to the classes or jar.
+     *
+     * @return The class path.
+     */
+    public String getClassPath() {
+      return mClassPath;
+    }
+
+    /**
+     * Gets the path to the sources.
+     *
+     * @return The source path, or null if not found.
+     */
+    public String getSourcePath() {
+      return mSourcePath;
+    }
+
+    /**
+     * Gets the path or url to the javadoc.
+     *
+     * @return The javadoc path, or null if not found.
+     */
+    public String getJavadocPath() {
+      return mJavadocPath;
+    }
+
+    /**
+     * Formats the entry as a properties value.
+     *
+     * @return The formatted entry.
+     */
+    String format() {
+      return mResolvedAt + SEPARATOR + mClassLastModified + SEPARATOR + mClassPath
+          + SEPARATOR + nullToEmpty(mSourcePath) + SEPARATOR + nullToEmpty(mJavadocPath);
+    }
+
+    /**
+     * Parses an entry formatted by {@link #format()}.
+     *
+     * @param value The formatted entry.
+     * @return The entry, or null if it is malformed.
+     */
+    static Entry parse(String value) {
+      String[] fields = value.split(SEPARATOR, -1);
+      if (5 != fields.length || fields[2].isEmpty()) {
+        return null;
+      }
+      try {
+        return new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2],
+            emptyToNull(fields[3]), emptyToNull(fields[4]));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Converts null to an empty string.
+     *
+     * @param value A string, or null.
+     * @return The string, or an empty string if it was null.
+     */
+    private static String nullToEmpty(String value) {
+      return null == value ? "" : value;
+    }
+
+    /**
+     * Converts an empty string to null.
+     *
+     * @param value A string.
+     * @return The string, or null if it was empty.
+     */
+    private static String emptyToNull(String value) {
+      return value.isEmpty() ? null : value;
+    }
+  }
+}
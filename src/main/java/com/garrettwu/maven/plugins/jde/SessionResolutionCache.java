@@ -0,0 +1,242 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Shares resolved project dependencies between the executions of the plugin in a single
+ * maven session.
+ *
+ * <p>When the jde goal runs over a multi-module reactor, most modules depend on the same
+ * libraries.  This cache makes sure the sources and javadoc of each groupId:artifactId:version
+ * are resolved (and the javadoc unpacked) only once per session.  The resolved dependency
+ * remembers the unpacked javadoc directory, so later modules point at the same directory
+ * instead of unpacking their own copy.</p>
+ *
+ * <p>A dependency with a jar that could not be resolved (such as one that timed out) is
+ * shared together with the counters of those jars, so every module using it knows it is
+ * incomplete and looks for the jars again on its next run.</p>
+ *
+ * <p>This class is safe for use by multiple threads, including parallel builds
+ * (<code>mvn -T</code>): if two modules ask for the same artifact at the same time, one
+ * resolves it and the other waits for the result.</p>
+ *
+ * <p>The cache of a session is keyed on the session's start time rather than on the session
+ * object: the parallel builder of maven 3 gives each module its own clone of the session,
+ * and the clones share their start time (and the request that holds it).</p>
+ */
+public final class SessionResolutionCache {
+  /** The cache for each live maven session. */
+  private static final Map<Object, SessionResolutionCache> SESSION_CACHES
+      = new WeakHashMap<Object, SessionResolutionCache>();
+
+  /** The resolved dependencies, keyed by artifact name. */
+  private final ConcurrentMap<String, Future<Entry>> mDependencies;
+
+  /**
+   * Creates a new, empty <code>SessionResolutionCache</code> instance.
+   */
+  public SessionResolutionCache() {
+    mDependencies = new ConcurrentHashMap<String, Future<Entry>>();
+  }
+
+  /**
+   * Gets the cache shared by everything running in a maven session, including every clone of
+   * the session made by a parallel build.
+   *
+   * <p>The cache is released when the session start time is garbage collected.</p>
+   *
+   * @param session The maven session.
+   * @return The cache for the session.
+   */
+  public static SessionResolutionCache forSession(MavenSession session) {
+    Object key = session.getStartTime();
+    return forSession(null == key ? session : key);
+  }
+
+  /**
+   * Gets the cache shared by everything using the same session key.
+   *
+   * <p>The cache is released when the key is garbage collected.</p>
+   *
+   * @param session The key of the session, compared by equality.
+   * @return The cache for the session.
+   */
+  public static SessionResolutionCache forSession(Object session) {
+    synchronized (SESSION_CACHES) {
+      SessionResolutionCache cache = SESSION_CACHES.get(session);
+      if (null == cache) {
+        cache = new SessionResolutionCache();
+        SESSION_CACHES.put(session, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Gets a resolved dependency, resolving it if no other execution has yet.
+   *
+   * @param key The key identifying the dependency, usually its artifact name.
+   * @param resolver Resolves the dependency if it is not cached.
+   * @return The entry of the resolved dependency (may be null if the resolver returned null).
+   */
+  public Entry get(String key, Callable<Entry> resolver) {
+    Future<Entry> future = mDependencies.get(key);
+    if (null == future) {
+      FutureTask<Entry> task = new FutureTask<Entry>(resolver);
+      future = mDependencies.putIfAbsent(key, task);
+      if (null == future) {
+        future = task;
+        task.run();
+      }
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for " + key, e);
+    } catch (ExecutionException e) {
+      // Don't cache failures; the next caller may try again.
+      mDependencies.remove(key, future);
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException("Unable to resolve " + key, e.getCause());
+    }
+  }
+
+  /**
+   * Removes a dependency, so the next execution asking for it resolves it again.  Does nothing
+   * if the key has since been resolved again.
+   *
+   * @param key The key identifying the dependency.
+   * @param entry The entry that should no longer be shared.
+   */
+  public void remove(String key, Entry entry) {
+    Future<Entry> future = mDependencies.get(key);
+    if (null != future && entry == getIfDone(future)) {
+      mDependencies.remove(key, future);
+    }
+  }
+
+  /**
+   * Removes the dependencies with jars that could not be resolved, so they are resolved again
+   * the next time they are asked for.  Long-running goals call this before each pass.
+   *
+   * @return The number of dependencies removed.
+   */
+  public int removeIncomplete() {
+    int removed = 0;
+    for (Map.Entry<String, Future<Entry>> dependency : mDependencies.entrySet()) {
+      Entry entry = getIfDone(dependency.getValue());
+      if (null != entry && !entry.isComplete()
+          && mDependencies.remove(dependency.getKey(), dependency.getValue())) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Determines whether a dependency has been (or is being) resolved in this session.
+   *
+   * @param key The key identifying the dependency.
+   * @return Whether the cache holds the dependency.
+   */
+  public boolean contains(String key) {
+    return mDependencies.containsKey(key);
+  }
+
+  /**
+   * Gets the number of dependencies in the cache.
+   *
+   * @return The number of dependencies.
+   */
+  public int size() {
+    return mDependencies.size();
+  }
+
+  /**
+   * Gets the entry of a finished resolution.
+   *
+   * @param future The resolution.
+   * @return The entry, or null if it is still running or failed.
+   */
+  private static Entry getIfDone(Future<Entry> future) {
+    if (!future.isDone()) {
+      return null;
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * A dependency resolved in the session, with the jars that could not be resolved for it.
+   */
+  public static final class Entry {
+    /** The resolved dependency. */
+    private final ProjectDependency mDependency;
+
+    /** The metrics counter of each jar that could not be resolved. */
+    private final List<String> mUnavailable;
+
+    /**
+     * Creates a new <code>Entry</code> instance.
+     *
+     * @param dependency The resolved dependency.
+     * @param unavailable The metrics counter of each jar that could not be resolved (such as
+     *     {@link ResolutionPolicy#UNAVAILABLE}), or empty if the dependency is complete.
+     */
+    public Entry(ProjectDependency dependency, Collection<String> unavailable) {
+      mDependency = dependency;
+      mUnavailable = Collections.unmodifiableList(new ArrayList<String>(unavailable));
+    }
+
+    /**
+     * Gets the resolved dependency.
+     *
+     * @return The dependency.
+     */
+    public ProjectDependency getDependency() {
+      return mDependency;
+    }
+
+    /**
+     * Gets the metrics counter of each jar that could not be resolved.
+     *
+     * @return The counters, empty if the dependency is complete.
+     */
+    public List<String> getUnavailable() {
+      return mUnavailable;
+    }
+
+    /**
+     * Determines whether every jar of the dependency was resolved (or is known to be missing).
+     *
+     * @return Whether the dependency is complete.
+     */
+    public boolean isComplete() {
+      return mUnavailable.isEmpty();
+    }
+  }
+}
@@ -7,6 +7,8 @@ import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /**
  * Defines a mapping between artifact names and paths specified by the user.
@@ -59,4 +61,13 @@ public class UserPathMapping {
   public String get(String artifactName) {
     return mArtifactToPathMap.get(artifactName);
   }
+
+  /**
+   * Gets every mapping, sorted by artifact name.
+   *
+   * @return A copy of the mappings from artifact names to paths.
+   */
+  public SortedMap<String, String> getPaths() {
+    return new TreeMap<String, String>(mArtifactToPathMap);
+  }
 }
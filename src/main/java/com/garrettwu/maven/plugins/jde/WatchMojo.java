@@ -0,0 +1,301 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.resolver.AbstractArtifactResolutionException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.profiles.ProfileManager;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+
+/**
+ * Goal which keeps running and regenerates the prj.el file of each module in the build
+ * whenever its pom, a parent pom, or the javadoc paths file changes.
+ *
+ * <p>Only the affected modules are rebuilt and regenerated.  Dependencies resolved earlier in
+ * the session are shared through the session resolution cache, so unchanged dependencies are
+ * not resolved again.  Dependencies with jars that could not be resolved are dropped from the
+ * cache before each pass, and javadoc evicted from the store since is unpacked again.  Files
+ * are polled for changes, since the plugin targets Java 6, and changes are debounced so
+ * saving several poms causes a single regeneration.</p>
+ *
+ * <p>Stop the goal with Ctrl-C.</p>
+ *
+ * @goal watch
+ * @aggregator
+ * @requiresDependencyResolution test
+ */
+public class WatchMojo extends AbstractJdeMojo {
+  /**
+   * The projects in the build.
+   *
+   * @parameter default-value="${reactorProjects}"
+   * @required
+   * @readonly
+   */
+  private List<MavenProject> mReactorProjects;
+
+  /**
+   * Builds maven projects from their poms.
+   *
+   * @component
+   */
+  private MavenProjectBuilder mProjectBuilder;
+
+  /**
+   * The name of the prj.el file to generate in the base directory of each module.
+   *
+   * @parameter property="projectFileName" expression="${jde.project.file.name}" default-value="prj.el"
+   * @required
+   */
+  private String mProjectFileName;
+
+  /**
+   * The maximum number of dependencies to resolve sources and javadoc for concurrently.
+   *
+   * @parameter property="resolverThreads" expression="${jde.resolver.threads}" default-value="1"
+   * @required
+   */
+  private int mResolverThreads;
+
+  /**
+   * How often, in milliseconds, the watched files are checked for changes.
+   *
+   * @parameter property="pollInterval" expression="${jde.watch.interval}" default-value="1000"
+   * @required
+   */
+  private int mPollInterval;
+
+  /**
+   * How long, in milliseconds, the watched files must stay unchanged before regenerating.
+   *
+   * @parameter property="debounce" expression="${jde.watch.debounce}" default-value="500"
+   * @required
+   */
+  private int mDebounce;
+
+  /**
+   * Sets the projects in the build.
+   *
+   * <p>The plugin framework will call this method with the reactor projects.</p>
+   *
+   * @param reactorProjects The projects in the build.
+   */
+  public void setReactorProjects(List<MavenProject> reactorProjects) {
+    mReactorProjects = reactorProjects;
+  }
+
+  /**
+   * Sets the name of the prj.el file generated in the base directory of each module.
+   *
+   * @param projectFileName The project file name.
+   */
+  public void setProjectFileName(String projectFileName) {
+    mProjectFileName = projectFileName;
+  }
+
+  /**
+   * Sets the maximum number of dependencies whose sources and javadoc are resolved
+   * concurrently.
+   *
+   * @param resolverThreads The number of resolver threads.
+   */
+  public void setResolverThreads(int resolverThreads) {
+    mResolverThreads = resolverThreads;
+  }
+
+  /**
+   * Sets how often the watched files are checked for changes.
+   *
+   * @param pollInterval The poll interval in milliseconds.
+   */
+  public void setPollInterval(int pollInterval) {
+    mPollInterval = pollInterval;
+  }
+
+  /**
+   * Sets how long the watched files must stay unchanged before regenerating.
+   *
+   * @param debounce The quiet period in milliseconds.
+   */
+  public void setDebounce(int debounce) {
+    mDebounce = debounce;
+  }
+
+  /**
+   * Executes the plugin's goal to watch the build and regenerate JDE project files.
+   *
+   * @throws MojoExecutionException If there is a fatal error during execution of the plugin.
+   */
+  @Override
+  public void execute() throws MojoExecutionException {
+    validateParameters();
+    if (null == mProjectFileName) {
+      throw new MojoExecutionException("Required property ${jde.project.file.name} was not set.");
+    }
+    if (mResolverThreads < 1) {
+      throw new MojoExecutionException("Property ${jde.resolver.threads} must be at least 1.");
+    }
+    if (mPollInterval < 1) {
+      throw new MojoExecutionException("Property ${jde.watch.interval} must be at least 1.");
+    }
+    if (mDebounce < 0) {
+      throw new MojoExecutionException("Property ${jde.watch.debounce} may not be negative.");
+    }
+
+    List<MavenProject> projects = new ArrayList<MavenProject>();
+    if (null == mReactorProjects) {
+      projects.add(getMavenProject());
+    } else {
+      projects.addAll(mReactorProjects);
+    }
+
+    FileChangeWatcher watcher = new FileChangeWatcher();
+    if (null != getJavadocPathsFile()) {
+      watcher.watch(getJavadocPathsFile());
+    }
+    for (int i = 0; i < projects.size(); i++) {
+      MavenProject project = projects.get(i);
+      if (project != getMavenProject()) {
+        // Only the project maven started from has its dependencies resolved.
+        project = rebuildProject(project);
+        if (null == project) {
+          continue;
+        }
+        projects.set(i, project);
+      }
+      watchPoms(watcher, project);
+      regenerate(project);
+    }
+
+    getLog().info("Watching " + watcher.getFiles().size() + " files for changes...");
+    try {
+      while (true) {
+        Set<File> changed = watcher.awaitChanges(mPollInterval, mDebounce);
+        getLog().info("Detected changes in " + changed);
+        SessionResolutionCache sessionResolutionCache = getSessionResolutionCache();
+        if (null != sessionResolutionCache) {
+          // Look for jars that timed out or were not downloaded yet again.
+          sessionResolutionCache.removeIncomplete();
+        }
+        boolean all = changed.contains(getJavadocPathsFile());
+        for (int i = 0; i < projects.size(); i++) {
+          if (!all && !isAffected(projects.get(i), changed)) {
+            continue;
+          }
+          MavenProject project = rebuildProject(projects.get(i));
+          if (null == project) {
+            continue;
+          }
+          projects.set(i, project);
+          watchPoms(watcher, project);
+          regenerate(project);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      getLog().info("Stopped watching.");
+    }
+  }
+
+  /**
+   * Every project of the reactor unpacks javadoc into the javadoc directory of the project
+   * maven started from, so it is shared as soon as more than one project is watched.
+   *
+   * @param mavenProject The project.
+   * @return Whether the javadoc directory is shared.
+   */
+  @Override
+  protected boolean isJavadocDirShared(MavenProject mavenProject) {
+    return (null != mReactorProjects && mReactorProjects.size() > 1)
+        || super.isJavadocDirShared(mavenProject);
+  }
+
+  /**
+   * Rebuilds a project from its pom and resolves its dependencies.
+   *
+   * @param project The project to rebuild.
+   * @return The rebuilt project, or null if it could not be built.
+   */
+  private MavenProject rebuildProject(MavenProject project) {
+    File pom = project.getFile();
+    ProfileManager profileManager = null == getMavenSession()
+        ? null : getMavenSession().getProjectBuilderConfiguration().getGlobalProfileManager();
+    try {
+      return mProjectBuilder.buildWithDependencies(
+          pom, getLocalArtifactRepository(), profileManager);
+    } catch (ProjectBuildingException e) {
+      getLog().error("Unable to read " + pom.getPath() + ": " + e.getMessage());
+    } catch (AbstractArtifactResolutionException e) {
+      getLog().error("Unable to resolve the dependencies of " + pom.getPath() + ": "
+          + e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Regenerates the prj.el file of a project, logging any failure instead of stopping.
+   *
+   * @param project The project, with its dependencies resolved.
+   */
+  private void regenerate(MavenProject project) {
+    File projectFile = new File(project.getBasedir(), mProjectFileName);
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    try {
+      Collection<ProjectDependency> dependencies =
+        resolveDependencies(project, isTransitiveMode(), mResolverThreads, metrics);
+      writeProjectFile(project, dependencies, projectFile, metrics);
+    } catch (MojoExecutionException e) {
+      getLog().error("Unable to regenerate " + projectFile.getPath(), e);
+      return;
+    }
+    reportMetrics(metrics);
+  }
+
+  /**
+   * Watches the pom of a project and the poms of its parents.
+   *
+   * @param watcher The watcher.
+   * @param project The project.
+   */
+  private static void watchPoms(FileChangeWatcher watcher, MavenProject project) {
+    for (File pom : getPoms(project)) {
+      watcher.watch(pom);
+    }
+  }
+
+  /**
+   * Determines whether a change to some files affects a project.
+   *
+   * @param project The project.
+   * @param changed The files that changed.
+   * @return Whether the pom of the project or one of its parents changed.
+   */
+  private static boolean isAffected(MavenProject project, Set<File> changed) {
+    return !Collections.disjoint(getPoms(project), changed);
+  }
+
+  /**
+   * Gets the local poms of a project and its parents.
+   *
+   * @param project The project.
+   * @return The pom files; parents read from a repository are left out.
+   */
+  private static List<File> getPoms(MavenProject project) {
+    List<File> poms = new ArrayList<File>();
+    for (MavenProject ancestor = project; null != ancestor; ancestor = ancestor.getParent()) {
+      if (null != ancestor.getFile()) {
+        poms.add(ancestor.getFile());
+      }
+    }
+    return poms;
+  }
+}
@@ -0,0 +1,39 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Jar files for tests that unpack javadoc.
+ */
+public final class JarFixtures {
+  /** No constructor available for a utility class. */
+  private JarFixtures() {}
+
+  /**
+   * Writes a jar with a single index.html entry.
+   *
+   * @param dir The directory to write the jar in.
+   * @param name The file name of the jar.
+   * @param contents The contents of the index.html entry.
+   * @return The jar file.
+   * @throws IOException If there is an error.
+   */
+  public static File createJar(File dir, String name, String contents) throws IOException {
+    File jarFile = new File(dir, name);
+    JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile));
+    try {
+      jar.putNextEntry(new JarEntry("index.html"));
+      jar.write(contents.getBytes("UTF-8"));
+      jar.closeEntry();
+    } finally {
+      jar.close();
+    }
+    return jarFile;
+  }
+}
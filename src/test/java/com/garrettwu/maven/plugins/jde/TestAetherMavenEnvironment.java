@@ -0,0 +1,153 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.impl.ArtifactDescriptorReader;
+import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.impl.VersionRangeResolver;
+import org.eclipse.aether.impl.VersionResolver;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResult;
+import org.eclipse.aether.resolution.VersionRequest;
+import org.eclipse.aether.resolution.VersionResult;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transport.file.FileTransporterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.io.Files;
+
+public class TestAetherMavenEnvironment {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  /**
+   * Resolves versions as they are; the tests only use release versions.
+   */
+  public static class StubVersionResolver implements VersionResolver {
+    @Override
+    public VersionResult resolveVersion(RepositorySystemSession session,
+        VersionRequest request) {
+      return new VersionResult(request).setVersion(request.getArtifact().getVersion());
+    }
+  }
+
+  /**
+   * Version ranges are not used by the tests.
+   */
+  public static class StubVersionRangeResolver implements VersionRangeResolver {
+    @Override
+    public VersionRangeResult resolveVersionRange(RepositorySystemSession session,
+        VersionRangeRequest request) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Artifact descriptors are not used by the tests.
+   */
+  public static class StubArtifactDescriptorReader implements ArtifactDescriptorReader {
+    @Override
+    public ArtifactDescriptorResult readArtifactDescriptor(RepositorySystemSession session,
+        ArtifactDescriptorRequest request) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Creates a mock artifact with a groupId, artifactId, and version.
+   */
+  private static Artifact createArtifact(String groupId, String artifactId, String version) {
+    Artifact artifact = createMock(Artifact.class);
+    expect(artifact.getGroupId()).andReturn(groupId).anyTimes();
+    expect(artifact.getArtifactId()).andReturn(artifactId).anyTimes();
+    expect(artifact.getVersion()).andReturn(version).anyTimes();
+    replay(artifact);
+    return artifact;
+  }
+
+  @Test
+  public void testResolveClassifiersFromFileRepository() throws IOException {
+    // A file:// repository with the sources of foo, and nothing else.
+    File remoteDir = new File(mTempDir, "remote");
+    File sourcesJar = new File(remoteDir, "com/foo/foo/1.0/foo-1.0-sources.jar");
+    Files.createParentDirs(sourcesJar);
+    Files.write(new byte[] {1, 2, 3}, sourcesJar);
+
+    DefaultServiceLocator locator = new DefaultServiceLocator();
+    locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+    locator.addService(TransporterFactory.class, FileTransporterFactory.class);
+    locator.setService(VersionResolver.class, StubVersionResolver.class);
+    locator.setService(VersionRangeResolver.class, StubVersionRangeResolver.class);
+    locator.setService(ArtifactDescriptorReader.class, StubArtifactDescriptorReader.class);
+    RepositorySystem repositorySystem = locator.getService(RepositorySystem.class);
+    DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+    File localDir = new File(mTempDir, "local");
+    session.setLocalRepositoryManager(
+        repositorySystem.newLocalRepositoryManager(session, new LocalRepository(localDir)));
+
+    ArtifactRepository remoteRepository = createMock(ArtifactRepository.class);
+    expect(remoteRepository.getId()).andReturn("test").anyTimes();
+    expect(remoteRepository.getUrl()).andReturn(remoteDir.toURI().toString()).anyTimes();
+    MavenProject project = createMock(MavenProject.class);
+    expect(project.getRemoteArtifactRepositories())
+        .andReturn(Arrays.asList(remoteRepository))
+        .anyTimes();
+    replay(remoteRepository, project);
+
+    AetherMavenEnvironment environment = new AetherMavenEnvironment(createNiceMock(Log.class),
+        project, createMock(ArtifactFactory.class), createMock(ArtifactResolver.class),
+        createMock(ArtifactRepository.class), repositorySystem, session);
+    Artifact foo = createArtifact("com.foo", "foo", "1.0");
+    Artifact bar = createArtifact("com.bar", "bar", "2.0");
+    Multimap<Artifact, String> classifiers = LinkedHashMultimap.create();
+    classifiers.put(foo, "sources");
+    classifiers.put(foo, "javadoc");
+    classifiers.put(bar, "sources");
+    Map<String, File> jars = environment.resolveClassifiers(classifiers);
+
+    assertEquals(3, jars.size());
+    File resolved = jars.get("com.foo:foo:1.0:sources");
+    assertEquals(new File(localDir, "com/foo/foo/1.0/foo-1.0-sources.jar"), resolved);
+    assertEquals(3L, resolved.length());
+    assertTrue(jars.containsKey("com.foo:foo:1.0:javadoc"));
+    assertNull(jars.get("com.foo:foo:1.0:javadoc"));
+    assertTrue(jars.containsKey("com.bar:bar:2.0:sources"));
+    assertNull(jars.get("com.bar:bar:2.0:sources"));
+  }
+}
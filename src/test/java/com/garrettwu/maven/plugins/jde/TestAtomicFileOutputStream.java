@@ -0,0 +1,102 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class TestAtomicFileOutputStream {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  private boolean write(File targetFile, String contents, boolean abort) throws IOException {
+    AtomicFileOutputStream outputStream = new AtomicFileOutputStream(targetFile);
+    outputStream.write(contents.getBytes("UTF-8"));
+    if (abort) {
+      outputStream.abort();
+    }
+    outputStream.close();
+    return outputStream.isChanged();
+  }
+
+  @Test
+  public void testReplace() throws IOException {
+    File targetFile = new File(mTempDir, "prj.el");
+
+    assertTrue(write(targetFile, "first", false));
+    assertEquals("first", Files.toString(targetFile, Charsets.UTF_8));
+
+    assertTrue(write(targetFile, "second", false));
+    assertEquals("second", Files.toString(targetFile, Charsets.UTF_8));
+
+    // Only the target remains; no temporary files are left behind.
+    assertEquals(1, mTempDir.listFiles().length);
+  }
+
+  @Test
+  public void testUnchanged() throws IOException {
+    File targetFile = new File(mTempDir, "prj.el");
+    assertTrue(write(targetFile, "same", false));
+    assertTrue(targetFile.setLastModified(10000L));
+
+    assertFalse(write(targetFile, "same", false));
+    assertEquals(10000L, targetFile.lastModified());
+    assertEquals(1, mTempDir.listFiles().length);
+  }
+
+  @Test
+  public void testAbort() throws IOException {
+    File targetFile = new File(mTempDir, "prj.el");
+    assertTrue(write(targetFile, "first", false));
+
+    assertFalse(write(targetFile, "partial", true));
+    assertEquals("first", Files.toString(targetFile, Charsets.UTF_8));
+    assertEquals(1, mTempDir.listFiles().length);
+  }
+
+  @Test
+  public void testReplaceWithFailingContents() throws IOException {
+    File targetFile = new File(mTempDir, "prj.el");
+    assertTrue(AtomicFileOutputStream.replace(targetFile, new AtomicFileOutputStream.Contents() {
+      @Override
+      public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write("first".getBytes("UTF-8"));
+      }
+    }));
+
+    try {
+      AtomicFileOutputStream.replace(targetFile, new AtomicFileOutputStream.Contents() {
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          outputStream.write("partial".getBytes("UTF-8"));
+          throw new IOException("boom");
+        }
+      });
+      fail("Expected the contents' exception");
+    } catch (IOException e) {
+      assertEquals("boom", e.getMessage());
+    }
+    assertEquals("first", Files.toString(targetFile, Charsets.UTF_8));
+    assertEquals(1, mTempDir.listFiles().length);
+  }
+}
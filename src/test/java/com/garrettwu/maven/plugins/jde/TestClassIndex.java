@@ -0,0 +1,40 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class TestClassIndex {
+  @Test
+  public void testWriteAndRead() throws IOException {
+    ClassIndex index = new ClassIndex(Arrays.asList("/a.jar", "/empty.jar", "/b.jar"),
+        Arrays.asList(Arrays.asList("com.a.Zed", "com.a.Alpha"), Collections.<String>emptyList(),
+            Arrays.asList("Alpha")));
+    assertEquals(3, index.size());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    index.write(output);
+    ClassIndex read = ClassIndex.read(new ByteArrayInputStream(output.toByteArray()));
+
+    assertEquals(index.getClassPaths(), read.getClassPaths());
+    // Classes come back in index order, sorted by simple name.
+    assertEquals(Arrays.asList("com.a.Alpha", "com.a.Zed"), read.getClassNames("/a.jar"));
+    assertTrue(read.getClassNames("/empty.jar").isEmpty());
+    assertEquals(Arrays.asList("Alpha"), read.getClassNames(2));
+    assertNull(read.getClassNames("/missing.jar"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadMalformed() throws IOException {
+    String contents = ClassIndex.HEADER + "\n#jar\t0\t/a.jar\nFoo\tcom.Foo\t1\n";
+    ClassIndex.read(new ByteArrayInputStream(contents.getBytes("UTF-8")));
+  }
+}
@@ -0,0 +1,120 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class TestClassIndexer {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  /**
+   * Writes a jar with empty entries.
+   */
+  private File createJar(String name, String... entries) throws IOException {
+    File jarFile = new File(mTempDir, name);
+    JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile));
+    try {
+      for (String entry : entries) {
+        jar.putNextEntry(new JarEntry(entry));
+        jar.closeEntry();
+      }
+    } finally {
+      jar.close();
+    }
+    return jarFile;
+  }
+
+  @Test
+  public void testGetClassName() {
+    assertEquals("com.foo.Bar", ClassIndexer.getClassName("com/foo/Bar.class"));
+    assertEquals("Baz", ClassIndexer.getClassName("Baz.class"));
+    assertNull(ClassIndexer.getClassName("com/foo/Bar$Inner.class"));
+    assertNull(ClassIndexer.getClassName("com/foo/package-info.class"));
+    assertNull(ClassIndexer.getClassName("module-info.class"));
+    assertNull(ClassIndexer.getClassName("META-INF/versions/9/com/foo/Bar.class"));
+    assertNull(ClassIndexer.getClassName("com/foo/"));
+    assertNull(ClassIndexer.getClassName("com/foo/bar.properties"));
+  }
+
+  @Test
+  public void testIndex() throws IOException {
+    File fooJar = createJar("foo.jar", "com/", "com/foo/", "com/foo/List.class",
+        "com/foo/List$Node.class", "com/foo/Map.class");
+    File classesDir = new File(mTempDir, "classes");
+    Files.createParentDirs(new File(classesDir, "org/bar/List.class"));
+    Files.touch(new File(classesDir, "org/bar/List.class"));
+    File missing = new File(mTempDir, "missing.jar");
+
+    ClassIndex index = new ClassIndexer(2).index(
+        Arrays.asList(fooJar.getPath(), classesDir.getPath(), missing.getPath()));
+    assertEquals(3, index.size());
+    assertEquals(Arrays.asList("org.bar.List"), index.getClassNames(1));
+    assertTrue(index.getClassNames(2).isEmpty());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    index.write(output);
+    assertEquals(ClassIndex.HEADER + "\n"
+        + "#jar\t0\t" + fooJar.getPath() + "\n"
+        + "#jar\t1\t" + classesDir.getPath() + "\n"
+        + "#jar\t2\t" + missing.getPath() + "\n"
+        + "List\tcom.foo.List\t0\n"
+        + "List\torg.bar.List\t1\n"
+        + "Map\tcom.foo.Map\t0\n",
+        output.toString("UTF-8"));
+  }
+
+  @Test
+  public void testUpdate() throws IOException {
+    File fooJar = createJar("foo.jar", "com/foo/Foo.class");
+    File barJar = createJar("bar.jar", "com/bar/Bar.class");
+    File removedJar = createJar("removed.jar", "com/removed/Removed.class");
+    List<String> previousPaths
+        = Arrays.asList(fooJar.getPath(), barJar.getPath(), removedJar.getPath());
+    ClassIndexManifest manifest = new ClassIndexManifest();
+    ClassIndex previous = new ClassIndexer(1).update(previousPaths, null, manifest);
+    assertNotNull(manifest.get(removedJar.getPath()));
+
+    // Pretend foo.jar held a different class, to tell whether it is rescanned.
+    previous = new ClassIndex(previousPaths, Arrays.asList(
+        Arrays.asList("com.foo.Cached"), previous.getClassNames(1), previous.getClassNames(2)));
+    // Touch foo.jar without changing it, and change bar.jar.
+    assertTrue(fooJar.setLastModified(fooJar.lastModified() - 10000L));
+    createJar("bar.jar", "com/bar/Bar.class", "com/bar/Baz.class");
+    assertTrue(barJar.setLastModified(barJar.lastModified() - 20000L));
+
+    ClassIndex updated = new ClassIndexer(2).update(
+        Arrays.asList(fooJar.getPath(), barJar.getPath()), previous, manifest);
+
+    assertEquals(Arrays.asList("com.foo.Cached"), updated.getClassNames(0));
+    assertEquals(Arrays.asList("com.bar.Bar", "com.bar.Baz"), updated.getClassNames(1));
+    assertEquals(fooJar.lastModified(), manifest.get(fooJar.getPath()).getLastModified());
+    assertEquals(JarStamp.of(barJar).getHash(), manifest.get(barJar.getPath()).getHash());
+    assertNull(manifest.get(removedJar.getPath()));
+  }
+}
@@ -0,0 +1,72 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestCompactPath {
+  /** Builds a path from its components. */
+  private static String path(String... components) {
+    StringBuilder path = new StringBuilder();
+    for (String component : components) {
+      path.append(File.separator).append(component);
+    }
+    return path.toString();
+  }
+
+  @Test
+  public void testSharedRoot() {
+    List<String> roots = Arrays.asList(path("home", "u", ".m2"),
+        path("home", "u", ".m2", "repository"));
+    String jar = path("home", "u", ".m2", "repository", "com", "foo", "foo-1.0.jar");
+
+    CompactPath a = CompactPath.of(jar, roots);
+    CompactPath b = CompactPath.of(new String(jar), roots);
+
+    // The longest root is shared.
+    assertEquals(path("home", "u", ".m2", "repository") + File.separator, a.getPrefix());
+    assertEquals("com" + File.separator + "foo" + File.separator + "foo-1.0.jar",
+        a.getSuffix());
+    assertSame(a.getPrefix(), b.getPrefix());
+    assertEquals(jar, a.toString());
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+  }
+
+  @Test
+  public void testNoRoot() {
+    List<String> roots = Arrays.asList(path("home", "u", ".m2"));
+    // A sibling directory with the same leading characters is not under the root.
+    String jar = path("home", "u", ".m2x", "foo.jar");
+
+    CompactPath path = CompactPath.of(jar, roots);
+    assertEquals("", path.getPrefix());
+    assertEquals(jar, path.toString());
+    assertNull(CompactPath.of(null, Collections.<String>emptyList()));
+  }
+
+  @Test
+  public void testEqualsAcrossPrefixes() {
+    List<String> roots = Arrays.asList(path("home", "u", ".m2"));
+    String jar = path("home", "u", ".m2", "foo.jar");
+
+    CompactPath shared = CompactPath.of(jar, roots);
+    CompactPath unshared = CompactPath.of(jar);
+    assertEquals("", unshared.getPrefix());
+    assertEquals(jar, unshared.toString());
+    assertEquals(shared, unshared);
+    assertEquals(unshared, shared);
+    assertEquals(jar.hashCode(), shared.hashCode());
+    assertEquals(jar.hashCode(), unshared.hashCode());
+    assertFalse(shared.equals(CompactPath.of(jar + "x")));
+    assertFalse(shared.equals(CompactPath.of(path("home", "u", ".m3", "foo.jar"))));
+    assertNull(CompactPath.of(null));
+  }
+}
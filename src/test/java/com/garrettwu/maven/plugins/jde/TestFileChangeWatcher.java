@@ -0,0 +1,72 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class TestFileChangeWatcher {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  @Test
+  public void testPoll() throws IOException {
+    File pom = new File(mTempDir, "pom.xml");
+    File properties = new File(mTempDir, "javadoc.properties");
+    Files.write("<project/>", pom, Charsets.UTF_8);
+
+    FileChangeWatcher watcher = new FileChangeWatcher();
+    watcher.watch(pom);
+    watcher.watch(properties);
+    assertTrue(watcher.poll().isEmpty());
+
+    // A modified file changes once.
+    assertTrue(pom.setLastModified(pom.lastModified() - 10000L));
+    assertEquals(Collections.singleton(pom), watcher.poll());
+    assertTrue(watcher.poll().isEmpty());
+
+    // Creating and deleting a file are changes.
+    Files.write("a = b\n", properties, Charsets.UTF_8);
+    assertEquals(Collections.singleton(properties), watcher.poll());
+    assertTrue(pom.delete());
+    assertEquals(Collections.singleton(pom), watcher.poll());
+  }
+
+  @Test
+  public void testAwaitChanges() throws IOException, InterruptedException {
+    File pom = new File(mTempDir, "pom.xml");
+    File parentPom = new File(mTempDir, "parent.xml");
+    FileChangeWatcher watcher = new FileChangeWatcher();
+    watcher.watch(pom);
+    watcher.watch(parentPom);
+
+    Files.write("<project/>", pom, Charsets.UTF_8);
+    Files.write("<project/>", parentPom, Charsets.UTF_8);
+    Set<File> expected = new LinkedHashSet<File>();
+    expected.add(pom);
+    expected.add(parentPom);
+    assertEquals(expected, watcher.awaitChanges(5L, 20L));
+  }
+}
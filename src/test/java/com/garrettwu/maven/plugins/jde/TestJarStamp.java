@@ -0,0 +1,62 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class TestJarStamp {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    File jarFile = new File(mTempDir, "foo.jar");
+    Files.write("contents", jarFile, Charsets.UTF_8);
+    File stampFile = new File(mTempDir, JarStamp.FILE_NAME);
+
+    assertNull(JarStamp.read(stampFile));
+    JarStamp.of(jarFile).write(stampFile);
+
+    JarStamp stamp = JarStamp.read(stampFile);
+    assertEquals(jarFile.length(), stamp.getSize());
+    assertEquals(jarFile.lastModified(), stamp.getLastModified());
+    assertEquals(JarStamp.hash(jarFile), stamp.getHash());
+    assertTrue(stamp.matches(jarFile));
+  }
+
+  @Test
+  public void testMatches() throws IOException {
+    File jarFile = new File(mTempDir, "foo.jar");
+    Files.write("contents", jarFile, Charsets.UTF_8);
+    JarStamp stamp = JarStamp.of(jarFile);
+
+    // Touched, but not changed.
+    assertTrue(jarFile.setLastModified(stamp.getLastModified() - 10000L));
+    assertTrue(stamp.matches(jarFile));
+
+    // Changed.
+    Files.write("CONTENTS", jarFile, Charsets.UTF_8);
+    assertTrue(jarFile.setLastModified(stamp.getLastModified() - 20000L));
+    assertFalse(stamp.matches(jarFile));
+  }
+}
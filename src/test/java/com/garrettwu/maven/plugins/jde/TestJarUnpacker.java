@@ -0,0 +1,109 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class TestJarUnpacker {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  /**
+   * Writes a jar containing entries whose contents are derived from their names.  Entries
+   * ending in a slash are directories.
+   */
+  private File createJar(String... names) throws IOException {
+    File jarFile = new File(mTempDir, "test.jar");
+    JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile));
+    try {
+      for (String name : names) {
+        jar.putNextEntry(new JarEntry(name));
+        if (!name.endsWith("/")) {
+          jar.write(getContents(name));
+        }
+        jar.closeEntry();
+      }
+    } finally {
+      jar.close();
+    }
+    return jarFile;
+  }
+
+  /**
+   * Gets the contents of a test entry, large enough to need several buffers.
+   */
+  private static byte[] getContents(String name) throws IOException {
+    byte[] contents = new byte[100 * 1024 + name.length()];
+    byte[] nameBytes = name.getBytes("UTF-8");
+    for (int i = 0; i < contents.length; i++) {
+      contents[i] = nameBytes[i % nameBytes.length];
+    }
+    return contents;
+  }
+
+  private void testUnpack(int threads) throws IOException {
+    String[] names = {"index.html", "com/", "com/foo/Bar.html", "com/foo/sub/Baz.html",
+        "org/Qux.html", "empty/", };
+    File jarFile = createJar(names);
+    File targetDir = new File(mTempDir, "target");
+    assertTrue(targetDir.mkdirs());
+    // An existing file is overwritten.
+    assertTrue(new File(targetDir, "com").mkdirs());
+    Files.write(new byte[] {1, 2, 3}, new File(targetDir, "index.html"));
+
+    long bytes = new JarUnpacker(threads).unpack(jarFile, targetDir);
+
+    long expectedBytes = 0;
+    for (String name : names) {
+      File file = new File(targetDir, name);
+      if (name.endsWith("/")) {
+        assertTrue(file.isDirectory());
+      } else {
+        assertTrue(Arrays.equals(getContents(name), Files.toByteArray(file)));
+        expectedBytes += file.length();
+      }
+    }
+    assertEquals(expectedBytes, bytes);
+  }
+
+  @Test
+  public void testUnpackSerially() throws IOException {
+    testUnpack(1);
+  }
+
+  @Test
+  public void testUnpackConcurrently() throws IOException {
+    testUnpack(3);
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnpackOutsideTarget() throws IOException {
+    File jarFile = createJar("../evil.html");
+    File targetDir = new File(mTempDir, "target");
+    assertTrue(targetDir.mkdirs());
+    new JarUnpacker(1).unpack(jarFile, targetDir);
+  }
+}
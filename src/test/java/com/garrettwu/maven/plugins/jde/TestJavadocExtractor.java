@@ -0,0 +1,80 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class TestJavadocExtractor {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  /** A javadoc jar to extract from. */
+  private File mJarFile;
+
+  /** The directory to extract into. */
+  private File mTargetDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+    mJarFile = new File(mTempDir, "foo-javadoc.jar");
+    mTargetDir = new File(mTempDir, "foo");
+    JarOutputStream jar = new JarOutputStream(new FileOutputStream(mJarFile));
+    try {
+      for (String name : new String[] {
+          "stylesheet.css", "com/", "com/foo/", "com/foo/Bar.html", "com/foo/Baz.html",
+          "com/foo/package-summary.html", "com/foo/sub/", "com/foo/sub/Qux.html", }) {
+        jar.putNextEntry(new JarEntry(name));
+        if (!name.endsWith("/")) {
+          jar.write(name.getBytes("UTF-8"));
+        }
+        jar.closeEntry();
+      }
+    } finally {
+      jar.close();
+    }
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  @Test
+  public void testExtractPage() throws IOException {
+    File page = new JavadocExtractor(mJarFile, mTargetDir).extract("com/foo/Bar.html");
+
+    assertEquals(new File(mTargetDir, "com/foo/Bar.html"), page);
+    assertEquals("com/foo/Bar.html", Files.toString(page, Charsets.UTF_8));
+    assertTrue(new File(mTargetDir, "stylesheet.css").isFile());
+    assertFalse(new File(mTargetDir, "com/foo/Baz.html").exists());
+  }
+
+  @Test
+  public void testExtractPackage() throws IOException {
+    File page = new JavadocExtractor(mJarFile, mTargetDir).extract("com.foo");
+
+    assertEquals(new File(mTargetDir, "com/foo/package-summary.html"), page);
+    assertTrue(new File(mTargetDir, "com/foo/Bar.html").isFile());
+    assertTrue(new File(mTargetDir, "com/foo/Baz.html").isFile());
+    assertFalse(new File(mTargetDir, "com/foo/sub/Qux.html").exists());
+  }
+
+  @Test(expected = IOException.class)
+  public void testExtractMissing() throws IOException {
+    new JavadocExtractor(mJarFile, mTargetDir).extract("org/missing/Page.html");
+  }
+}
@@ -0,0 +1,46 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class TestJavadocIndex {
+  @Test
+  public void testPutAndGet() {
+    JavadocIndex index = new JavadocIndex();
+    assertNull(index.get("foo:bar:1.0"));
+    assertFalse(index.isModified());
+
+    index.put("foo:bar:1.0", "foo/bar/1.0");
+    assertEquals("foo/bar/1.0", index.get("foo:bar:1.0"));
+    assertTrue(index.isModified());
+  }
+
+  @Test
+  public void testStoreAndLoad() throws IOException {
+    JavadocIndex index = new JavadocIndex();
+    index.put("foo:bar:1.0", "foo/bar/1.0");
+    index.put("foo:baz:2.0", "foo/baz/2.0");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    index.store(output);
+    assertFalse(index.isModified());
+
+    JavadocIndex loaded = new JavadocIndex();
+    loaded.load(new ByteArrayInputStream(output.toByteArray()));
+    assertEquals(index.getDirectories(), loaded.getDirectories());
+    assertFalse(loaded.isModified());
+
+    // Recording the same directory again is not a change.
+    loaded.put("foo:bar:1.0", "foo/bar/1.0");
+    assertFalse(loaded.isModified());
+    loaded.remove("foo:baz:2.0");
+    assertTrue(loaded.isModified());
+    assertNull(loaded.get("foo:baz:2.0"));
+  }
+}
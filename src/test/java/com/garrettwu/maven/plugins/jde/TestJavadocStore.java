@@ -0,0 +1,152 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class TestJavadocStore {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  @Test
+  public void testUnpackOnce() throws IOException {
+    File jarFile = JarFixtures.createJar(mTempDir, "foo-javadoc.jar", "foo");
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    JavadocStore store = new JavadocStore(new File(mTempDir, "store"), 0L);
+
+    File entry = store.unpack("com.foo", "foo", "1.0", jarFile, new JarUnpacker(1), metrics);
+    assertEquals("foo", Files.toString(new File(entry, "index.html"), Charsets.UTF_8));
+    assertTrue(new File(entry, JavadocStore.COMPLETE_FILE_NAME).isFile());
+    assertEquals(new File(mTempDir, "store/com.foo/foo/1.0"), entry.getParentFile());
+    assertEquals(3L, metrics.getCount(ResolutionMetrics.BYTES_UNPACKED));
+
+    // Another project sharing the store reuses the entry.
+    JavadocStore otherStore = new JavadocStore(new File(mTempDir, "store"), 0L);
+    assertEquals(entry,
+        otherStore.unpack("com.foo", "foo", "1.0", jarFile, new JarUnpacker(1), metrics));
+    assertEquals(1L, metrics.getCount("javadoc-store-hits"));
+    assertEquals(1L, metrics.getCount("javadoc-store-misses"));
+    assertEquals(3L, metrics.getCount(ResolutionMetrics.BYTES_UNPACKED));
+  }
+
+  @Test
+  public void testChangedJarGetsNewEntry() throws IOException {
+    JavadocStore store = new JavadocStore(new File(mTempDir, "store"), 0L);
+    File first = store.unpack("com.foo", "foo", "1.0-SNAPSHOT",
+        JarFixtures.createJar(mTempDir, "a.jar", "first"), new JarUnpacker(1),
+        new ResolutionMetrics());
+    File second = store.unpack("com.foo", "foo", "1.0-SNAPSHOT",
+        JarFixtures.createJar(mTempDir, "b.jar", "second"), new JarUnpacker(1),
+        new ResolutionMetrics());
+
+    assertFalse(first.equals(second));
+    assertEquals("second", Files.toString(new File(second, "index.html"), Charsets.UTF_8));
+  }
+
+  @Test
+  public void testIncompleteEntryIsUnpackedAgain() throws IOException {
+    File jarFile = JarFixtures.createJar(mTempDir, "foo-javadoc.jar", "foo");
+    JavadocStore store = new JavadocStore(new File(mTempDir, "store"), 0L);
+    File entry = store.unpack("com.foo", "foo", "1.0", jarFile, new JarUnpacker(1),
+        new ResolutionMetrics());
+    assertTrue(new File(entry, JavadocStore.COMPLETE_FILE_NAME).delete());
+    assertTrue(new File(entry, "index.html").delete());
+
+    store.unpack("com.foo", "foo", "1.0", jarFile, new JarUnpacker(1), new ResolutionMetrics());
+    assertTrue(new File(entry, "index.html").isFile());
+  }
+
+  @Test
+  public void testEvictLeastRecentlyUsed() throws IOException {
+    File storeDir = new File(mTempDir, "store");
+    JavadocStore oldStore = new JavadocStore(storeDir, 0L);
+    File oldest = oldStore.unpack("com.foo", "a", "1.0",
+        JarFixtures.createJar(mTempDir, "a.jar", "aaaa"), new JarUnpacker(1),
+        new ResolutionMetrics());
+    File older = oldStore.unpack("com.foo", "b", "1.0",
+        JarFixtures.createJar(mTempDir, "b.jar", "bbbb"), new JarUnpacker(1),
+        new ResolutionMetrics());
+    assertTrue(new File(oldest, JavadocStore.COMPLETE_FILE_NAME).setLastModified(1000L));
+    assertTrue(new File(older, JavadocStore.COMPLETE_FILE_NAME).setLastModified(2000L));
+
+    // A new run only uses "c"; the store may hold 8 bytes.
+    JavadocStore store = new JavadocStore(storeDir, 8L);
+    File current = store.unpack("com.foo", "c", "1.0",
+        JarFixtures.createJar(mTempDir, "c.jar", "cccc"), new JarUnpacker(1),
+        new ResolutionMetrics());
+
+    assertEquals(4L, store.evict());
+    assertFalse(oldest.exists());
+    assertTrue(older.isDirectory());
+    assertTrue(current.isDirectory());
+    assertEquals(0L, store.evict());
+  }
+
+  @Test
+  public void testUsedEntryIsNotEvicted() throws IOException {
+    File storeDir = new File(mTempDir, "store");
+    File old = new JavadocStore(storeDir, 0L).unpack("com.foo", "a", "1.0",
+        JarFixtures.createJar(mTempDir, "a.jar", "aaaa"), new JarUnpacker(1),
+        new ResolutionMetrics());
+    assertTrue(new File(old, JavadocStore.COMPLETE_FILE_NAME).setLastModified(1000L));
+
+    // A run reusing the entry without unpacking keeps it, even over the maximum size.
+    JavadocStore store = new JavadocStore(storeDir, 1L);
+    assertTrue(store.use(old));
+    assertFalse(store.use(new File(storeDir, "com.foo/b/1.0/0123456789abcdef")));
+    assertEquals(0L, store.evict());
+    assertTrue(old.isDirectory());
+    assertTrue(store.contains(old.getPath()));
+    assertFalse(store.contains(storeDir.getPath() + "-other/com.foo/a/1.0"));
+  }
+
+  @Test
+  public void testEntryEvictedWhileWaitingIsNotUsed() throws Exception {
+    final File entry = new JavadocStore(new File(mTempDir, "store"), 0L).unpack("com.foo", "a",
+        "1.0", JarFixtures.createJar(mTempDir, "a.jar", "aaaa"), new JarUnpacker(1),
+        new ResolutionMetrics());
+    final CountDownLatch locked = new CountDownLatch(1);
+    Thread evictor = new Thread() {
+      @Override
+      public void run() {
+        try {
+          // Another build holds the entry's lock while it deletes the entry.
+          EntryLock lock = EntryLock.acquire(EntryLock.getLockFile(entry), true);
+          locked.countDown();
+          Thread.sleep(200L);
+          Files.deleteRecursively(entry);
+          lock.release();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    evictor.start();
+    locked.await();
+
+    JavadocStore store = new JavadocStore(new File(mTempDir, "store"), 0L);
+    assertFalse(store.use(entry));
+    evictor.join();
+  }
+}
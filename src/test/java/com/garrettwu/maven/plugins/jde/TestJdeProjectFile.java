@@ -11,12 +11,13 @@ import org.junit.Test;
 public class TestJdeProjectFile {
   @Test
   public void testConstructor() {
-    JdeProjectFile projectFile = new JdeProjectFile(
-        "version", Arrays.asList("source"), Arrays.asList("class"), Arrays.asList("doc"));
+    JdeProjectFile projectFile = new JdeProjectFile("version",
+        Arrays.asList(CompactPath.of("source")), Arrays.asList(CompactPath.of("class")),
+        Arrays.asList(CompactPath.of("doc")));
 
     assertEquals("version", projectFile.getVersion());
-    assertEquals("source", projectFile.getSourcePaths().get(0));
-    assertEquals("class", projectFile.getClassPaths().get(0));
-    assertEquals("doc", projectFile.getJavadocPaths().get(0));
+    assertEquals(CompactPath.of("source"), projectFile.getSourcePaths().get(0));
+    assertEquals(CompactPath.of("class"), projectFile.getClassPaths().get(0));
+    assertEquals(CompactPath.of("doc"), projectFile.getJavadocPaths().get(0));
   }
 }
@@ -44,14 +44,30 @@ public class TestJdeProjectFileBuilder {
     // Verify project file.
     assertEquals(JdeProjectFileBuilder.VERSION, projectFile.getVersion());
     assertEquals(3, projectFile.getSourcePaths().size());
-    assertTrue(projectFile.getSourcePaths().contains("src/main/java"));
-    assertTrue(projectFile.getSourcePaths().contains("src/test/java"));
-    assertTrue(projectFile.getSourcePaths().contains("d"));
+    assertTrue(projectFile.getSourcePaths().contains(CompactPath.of("src/main/java")));
+    assertTrue(projectFile.getSourcePaths().contains(CompactPath.of("src/test/java")));
+    assertTrue(projectFile.getSourcePaths().contains(CompactPath.of("d")));
     assertEquals(3, projectFile.getClassPaths().size());
-    assertTrue(projectFile.getClassPaths().contains("target/classes"));
-    assertTrue(projectFile.getClassPaths().contains("target/test-classes"));
-    assertTrue(projectFile.getClassPaths().contains("e"));
+    assertTrue(projectFile.getClassPaths().contains(CompactPath.of("target/classes")));
+    assertTrue(projectFile.getClassPaths().contains(CompactPath.of("target/test-classes")));
+    assertTrue(projectFile.getClassPaths().contains(CompactPath.of("e")));
     assertEquals(1, projectFile.getJavadocPaths().size());
-    assertTrue(projectFile.getJavadocPaths().contains("f"));
+    assertTrue(projectFile.getJavadocPaths().contains(CompactPath.of("f")));
+  }
+
+  @Test
+  public void testBuildWithoutMavenProject() {
+    JdeProjectFile projectFile = new JdeProjectFileBuilder()
+        .withBuildDirectories(Arrays.asList("src/main/java", "src/test/java"),
+            Arrays.asList("target/classes", "target/test-classes"))
+        .withDependencies(Arrays.asList(new ProjectDependency("a", "b", "b", null, "e", null)))
+        .build();
+
+    assertEquals(Arrays.asList(CompactPath.of("src/main/java"), CompactPath.of("src/test/java")),
+        projectFile.getSourcePaths());
+    assertEquals(Arrays.asList(CompactPath.of("target/classes"),
+        CompactPath.of("target/test-classes"), CompactPath.of("e")),
+        projectFile.getClassPaths());
+    assertTrue(projectFile.getJavadocPaths().isEmpty());
   }
 }
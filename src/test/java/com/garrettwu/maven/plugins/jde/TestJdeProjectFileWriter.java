@@ -28,13 +28,14 @@ public class TestJdeProjectFileWriter {
         .andReturn("1.0")
         .anyTimes();
     expect(projectFile.getSourcePaths())
-        .andReturn(Arrays.asList("/my/source", "/your/source"))
+        .andReturn(Arrays.asList(CompactPath.of("/my/source"), CompactPath.of("/your/source")))
         .anyTimes();
     expect(projectFile.getClassPaths())
-        .andReturn(Arrays.asList("/my/classes", "/my/jar"))
+        .andReturn(Arrays.asList(CompactPath.of("/my/classes"),
+            CompactPath.of("/my/jar", Arrays.asList("/my"))))
         .anyTimes();
     expect(projectFile.getJavadocPaths())
-        .andReturn(Arrays.asList("/a/path", "http://a.url"))
+        .andReturn(Arrays.asList(CompactPath.of("/a/path"), CompactPath.of("http://a.url")))
         .anyTimes();
 
     replay(projectFile);
@@ -0,0 +1,43 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class TestLispWriter {
+  @Test
+  public void testWrite() throws IOException {
+    StringWriter output = new StringWriter();
+    LispWriter writer = new LispWriter(output);
+    writer.startList()
+        .identifier("setq")
+        .identifier("x")
+        .quote().startList().string("a").startList().endList().identifier("nil").endList()
+        .endList()
+        .newline();
+    writer.close();
+
+    assertEquals("(setq x '(\"a\" () nil))\n", output.toString());
+  }
+
+  @Test
+  public void testStringEscaping() throws IOException {
+    StringWriter output = new StringWriter();
+    new LispWriter(output).string("C:\\Program Files\\\"quoted\"");
+
+    assertEquals("\"C:\\\\Program Files\\\\\\\"quoted\\\"\"", output.toString());
+  }
+
+  @Test
+  public void testStringInTwoParts() throws IOException {
+    StringWriter output = new StringWriter();
+    new LispWriter(output).string("C:\\Program Files\\", "\"quoted\"").string("", "b");
+
+    assertEquals("\"C:\\\\Program Files\\\\\\\"quoted\\\"\" \"b\"", output.toString());
+  }
+}
@@ -0,0 +1,77 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestMissingArtifactCache {
+  /** An example cache file with a lookup that failed long ago. */
+  public static final String PROPERTIES = "org.foo\\:foo\\:1.0\\:sources = 1\n";
+
+  @Test
+  public void testMarkMissing() throws IOException {
+    MissingArtifactCache cache = new MissingArtifactCache(TimeUnit.HOURS.toMillis(1));
+    assertFalse(cache.isMissing("org.foo:foo:1.0", "javadoc"));
+    assertFalse(cache.isModified());
+
+    cache.markMissing("org.foo:foo:1.0", "javadoc");
+    assertTrue(cache.isModified());
+    assertTrue(cache.isMissing("org.foo:foo:1.0", "javadoc"));
+    assertFalse(cache.isMissing("org.foo:foo:1.0", "sources"));
+
+    // Round trip through a stream.
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    cache.store(outputStream);
+    assertFalse(cache.isModified());
+    MissingArtifactCache loaded = new MissingArtifactCache(TimeUnit.HOURS.toMillis(1));
+    loaded.load(new ByteArrayInputStream(outputStream.toByteArray()));
+    assertTrue(loaded.isMissing("org.foo:foo:1.0", "javadoc"));
+
+    loaded.markFound("org.foo:foo:1.0", "javadoc");
+    assertFalse(loaded.isMissing("org.foo:foo:1.0", "javadoc"));
+  }
+
+  @Test
+  public void testExpired() throws IOException {
+    MissingArtifactCache cache = new MissingArtifactCache(TimeUnit.HOURS.toMillis(1));
+    InputStream propertiesStream = new ByteArrayInputStream(PROPERTIES.getBytes("UTF-8"));
+    cache.load(propertiesStream);
+    assertFalse(cache.isMissing("org.foo:foo:1.0", "sources"));
+    assertTrue(cache.isModified());
+  }
+
+  @Test
+  public void testMerge() throws IOException {
+    MissingArtifactCache cache = new MissingArtifactCache(TimeUnit.HOURS.toMillis(1));
+    cache.markMissing("org.foo:foo:1.0", "javadoc");
+    cache.markFound("org.bar:bar:1.0", "sources");
+
+    // Meanwhile another build stored its own failures.
+    long now = System.currentTimeMillis();
+    String stored = "org.baz\\:baz\\:1.0\\:sources = " + now + "\n"
+        + "org.bar\\:bar\\:1.0\\:sources = " + now + "\n";
+    cache.merge(new ByteArrayInputStream(stored.getBytes("UTF-8")));
+
+    assertTrue(cache.isMissing("org.foo:foo:1.0", "javadoc"));
+    assertTrue(cache.isMissing("org.baz:baz:1.0", "sources"));
+    // This build found it since, which wins.
+    assertFalse(cache.isMissing("org.bar:bar:1.0", "sources"));
+  }
+
+  @Test
+  public void testDisabled() {
+    MissingArtifactCache cache = new MissingArtifactCache(0L);
+    assertFalse(cache.isEnabled());
+    cache.markMissing("org.foo:foo:1.0", "sources");
+    assertFalse(cache.isMissing("org.foo:foo:1.0", "sources"));
+    assertFalse(cache.isModified());
+  }
+}
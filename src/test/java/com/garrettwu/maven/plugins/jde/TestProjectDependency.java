@@ -21,4 +21,17 @@ public class TestProjectDependency {
     assertTrue(dependency.isJavadocAvailable());
     assertEquals("doc", dependency.getJavadocPath());
   }
+
+  @Test
+  public void testInternedTokens() {
+    ProjectDependency a = new ProjectDependency(
+        new String("groupId"), "a", new String("1.0"), null, "a.jar", null);
+    ProjectDependency b = new ProjectDependency(
+        new String("groupId"), "b", new String("1.0"), null, "b.jar", null);
+    assertSame(a.getGroupId(), b.getGroupId());
+    assertSame(a.getVersion(), b.getVersion());
+    assertFalse(a.isSourceAvailable());
+    assertNull(a.getSourcePath());
+    assertFalse(a.isJavadocAvailable());
+  }
 }
@@ -7,16 +7,27 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.AbstractArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
 import com.google.common.io.Files;
 
 public class TestProjectDependencyFactory {
@@ -97,4 +108,696 @@ public class TestProjectDependencyFactory {
     assertEquals("/to/some/sources.jar", dependency.getSourcePath());
     assertEquals("/to/some/classes.jar", dependency.getClassPath());
   }
+
+  /**
+   * Creates a mock artifact whose sources are missing and whose javadoc is a given jar.
+   */
+  private Artifact expectArtifact(MockMavenEnvironment mavenEnvironment, String groupId,
+      File javadocJar) throws AbstractArtifactResolutionException {
+    Artifact artifact = createMock(Artifact.class);
+    expect(artifact.getGroupId()).andReturn(groupId).anyTimes();
+    expect(artifact.getArtifactId()).andReturn("common").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/" + groupId + "/common.jar"));
+
+    Artifact sourceArtifact = createMock(Artifact.class);
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            groupId, "common", "1.0", "java-source", "sources"))
+        .andReturn(sourceArtifact);
+    mavenEnvironment.getArtifactResolver().resolve(sourceArtifact,
+        null, mavenEnvironment.getLocalArtifactRepository());
+    expect(sourceArtifact.getFile()).andReturn(null);
+
+    Artifact javadocArtifact = createMock(Artifact.class);
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            groupId, "common", "1.0", "java-source", "javadoc"))
+        .andReturn(javadocArtifact);
+    mavenEnvironment.getArtifactResolver().resolve(javadocArtifact,
+        null, mavenEnvironment.getLocalArtifactRepository());
+    expect(javadocArtifact.getFile()).andReturn(javadocJar);
+
+    replay(artifact, sourceArtifact, javadocArtifact);
+    return artifact;
+  }
+
+  @Test
+  public void testJavadocLayout() throws AbstractArtifactResolutionException, IOException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    expect(mavenEnvironment.getCurrentProject().getRemoteArtifactRepositories())
+        .andReturn(null)
+        .anyTimes();
+    mavenEnvironment.getLog().info(anyObject(String.class));
+    expectLastCall().anyTimes();
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+    Artifact foo = expectArtifact(mavenEnvironment, "com.foo",
+        JarFixtures.createJar(mTempDir, "foo-javadoc.jar", "foo"));
+    Artifact bar = expectArtifact(mavenEnvironment, "com.bar",
+        JarFixtures.createJar(mTempDir, "bar-javadoc.jar", "bar"));
+    mavenEnvironment.replay();
+
+    File javadocDir = new File(mTempDir, "javadocs");
+    JavadocIndex javadocIndex = new JavadocIndex();
+    ProjectDependencyFactory factory = new ProjectDependencyFactory(
+        mavenEnvironment, javadocDir, new UserPathMapping());
+    factory.setJavadocIndex(javadocIndex);
+    ProjectDependency fooDependency = factory.createFromArtifact(foo);
+    ProjectDependency barDependency = factory.createFromArtifact(bar);
+
+    mavenEnvironment.verify();
+
+    // Artifacts sharing an artifactId get their own directories.
+    assertEquals(new File(javadocDir, "com.foo/common/1.0").getPath(),
+        fooDependency.getJavadocPath());
+    assertEquals(new File(javadocDir, "com.bar/common/1.0").getPath(),
+        barDependency.getJavadocPath());
+    assertEquals("foo", Files.toString(
+        new File(fooDependency.getJavadocPath(), "index.html"), Charsets.UTF_8));
+    assertEquals("bar", Files.toString(
+        new File(barDependency.getJavadocPath(), "index.html"), Charsets.UTF_8));
+    assertEquals("com.foo/common/1.0", javadocIndex.get("com.foo:common:1.0"));
+    assertEquals("com.bar/common/1.0", javadocIndex.get("com.bar:common:1.0"));
+    assertTrue(javadocIndex.isModified());
+  }
+
+  @Test
+  public void testOfflineFast() throws IOException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    Artifact sourceArtifact = createMock(Artifact.class);
+    Artifact javadocArtifact = createMock(Artifact.class);
+    File localRepository = new File(mTempDir, "repository");
+    File sourcesJar = new File(localRepository, "foo/foo-1.0-sources.jar");
+    Files.createParentDirs(sourcesJar);
+    Files.write(new byte[] {1}, sourcesJar);
+
+    expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo.jar"));
+    expect(mavenEnvironment.getLocalArtifactRepository().getBasedir())
+        .andReturn(localRepository.getPath())
+        .anyTimes();
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+
+    // The sources jar is in the local repository.
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "sources"))
+        .andReturn(sourceArtifact);
+    expect(mavenEnvironment.getLocalArtifactRepository().pathOf(sourceArtifact))
+        .andReturn("foo/foo-1.0-sources.jar");
+    sourceArtifact.setFile(sourcesJar);
+    sourceArtifact.setResolved(true);
+
+    // The javadoc jar is not, and the resolver is never asked for it.
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "javadoc"))
+        .andReturn(javadocArtifact);
+    expect(mavenEnvironment.getLocalArtifactRepository().pathOf(javadocArtifact))
+        .andReturn("foo/foo-1.0-javadoc.jar");
+
+    mavenEnvironment.replay();
+    replay(artifact, sourceArtifact, javadocArtifact);
+
+    ProjectDependencyFactory factory = new ProjectDependencyFactory(
+        mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping());
+    factory.setOfflineFast(true);
+    ProjectDependency dependency = factory.createFromArtifact(artifact);
+
+    mavenEnvironment.verify();
+    verify(artifact, sourceArtifact, javadocArtifact);
+    assertEquals(sourcesJar.getPath(), dependency.getSourcePath());
+    assertNull(dependency.getJavadocPath());
+  }
+
+  @Test
+  public void testOfflineFastMissIsNotRemembered() throws MojoExecutionException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    Artifact sourceArtifact = createMock(Artifact.class);
+    Artifact javadocArtifact = createMock(Artifact.class);
+    File localRepository = new File(mTempDir, "repository");
+
+    expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getType()).andReturn("jar").anyTimes();
+    expect(artifact.getClassifier()).andReturn(null).anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo.jar")).anyTimes();
+    expect(mavenEnvironment.getLocalArtifactRepository().getBasedir())
+        .andReturn(localRepository.getPath())
+        .anyTimes();
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+
+    // Neither jar has been downloaded yet.
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "sources"))
+        .andReturn(sourceArtifact);
+    expect(mavenEnvironment.getLocalArtifactRepository().pathOf(sourceArtifact))
+        .andReturn("foo/foo-1.0-sources.jar");
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "javadoc"))
+        .andReturn(javadocArtifact);
+    expect(mavenEnvironment.getLocalArtifactRepository().pathOf(javadocArtifact))
+        .andReturn("foo/foo-1.0-javadoc.jar");
+
+    mavenEnvironment.replay();
+    replay(artifact, sourceArtifact, javadocArtifact);
+
+    ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(24));
+    ProjectDependencyFactory factory = new ProjectDependencyFactory(
+        mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping());
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    factory.setMetrics(metrics);
+    factory.setOfflineFast(true);
+    factory.setResolutionState(state);
+    List<ProjectDependency> dependencies = factory.createFromArtifacts(Arrays.asList(artifact), 1);
+
+    mavenEnvironment.verify();
+    verify(artifact, sourceArtifact, javadocArtifact);
+    assertEquals(1, dependencies.size());
+    assertNull(dependencies.get(0).getSourcePath());
+    // A prefetch may download the jars later, so the next run looks for them again.
+    assertNull(state.get("foo:foo:1.0:jar"));
+    assertEquals(2L, metrics.getCount(ProjectDependencyFactory.OFFLINE_MISSING));
+  }
+
+  @Test
+  public void testOfflineFastMissIsIncompleteForEveryModule() throws MojoExecutionException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    Artifact sourceArtifact = createMock(Artifact.class);
+    Artifact javadocArtifact = createMock(Artifact.class);
+    File localRepository = new File(mTempDir, "repository");
+
+    expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getType()).andReturn("jar").anyTimes();
+    expect(artifact.getClassifier()).andReturn(null).anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo.jar")).anyTimes();
+    expect(mavenEnvironment.getLocalArtifactRepository().getBasedir())
+        .andReturn(localRepository.getPath())
+        .anyTimes();
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+
+    // Only the first module looks in the local repository; the second shares its result.
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "sources"))
+        .andReturn(sourceArtifact);
+    expect(mavenEnvironment.getLocalArtifactRepository().pathOf(sourceArtifact))
+        .andReturn("foo/foo-1.0-sources.jar");
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "javadoc"))
+        .andReturn(javadocArtifact);
+    expect(mavenEnvironment.getLocalArtifactRepository().pathOf(javadocArtifact))
+        .andReturn("foo/foo-1.0-javadoc.jar");
+
+    mavenEnvironment.replay();
+    replay(artifact, sourceArtifact, javadocArtifact);
+
+    SessionResolutionCache sessionResolutionCache = new SessionResolutionCache();
+    for (String module : Arrays.asList("a", "b")) {
+      ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(24));
+      ResolutionMetrics metrics = new ResolutionMetrics();
+      ProjectDependencyFactory factory = new ProjectDependencyFactory(
+          mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping());
+      factory.setOfflineFast(true);
+      factory.setSessionResolutionCache(sessionResolutionCache);
+      factory.setResolutionState(state);
+      factory.setMetrics(metrics);
+      factory.createFromArtifacts(Arrays.asList(artifact), 1);
+
+      // Both modules pick up the jars once jde:prefetch downloads them.
+      assertEquals(module, 2L, metrics.getCount(ProjectDependencyFactory.OFFLINE_MISSING));
+      assertNull(module, state.get("foo:foo:1.0:jar"));
+    }
+
+    mavenEnvironment.verify();
+    verify(artifact, sourceArtifact, javadocArtifact);
+  }
+
+  @Test
+  public void testSessionCacheIsPerJavadocDir() {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo.jar")).anyTimes();
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+    mavenEnvironment.replay();
+    replay(artifact);
+
+    // Nothing needs to be resolved.
+    MissingArtifactCache missingArtifactCache
+        = new MissingArtifactCache(TimeUnit.HOURS.toMillis(1));
+    missingArtifactCache.markMissing("foo:foo:1.0", "sources");
+    missingArtifactCache.markMissing("foo:foo:1.0", "javadoc");
+    SessionResolutionCache sessionResolutionCache = new SessionResolutionCache();
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    for (String module : Arrays.asList("a", "b", "a")) {
+      ProjectDependencyFactory factory = new ProjectDependencyFactory(
+          mavenEnvironment, new File(mTempDir, module + "/javadocs"), new UserPathMapping());
+      factory.setMissingArtifactCache(missingArtifactCache);
+      factory.setSessionResolutionCache(sessionResolutionCache);
+      factory.setMetrics(metrics);
+      factory.createFromArtifact(artifact);
+    }
+
+    // Module b has its own javadoc directory, so it does not reuse what module a resolved.
+    mavenEnvironment.verify();
+    assertEquals(2L, metrics.getCount("session-cache-misses"));
+    assertEquals(1L, metrics.getCount("session-cache-hits"));
+  }
+
+  @Test
+  public void testTimedOutJarIsIncompleteForEveryModule() throws MojoExecutionException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    Artifact javadocArtifact = createMock(Artifact.class);
+    ResolutionPolicy policy = createMock(ResolutionPolicy.class);
+    List<ArtifactRepository> repositories = Collections.emptyList();
+
+    expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getType()).andReturn("jar").anyTimes();
+    expect(artifact.getClassifier()).andReturn(null).anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo.jar")).anyTimes();
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+    mavenEnvironment.getLog().info(anyObject(String.class));
+
+    // The first module's javadoc lookup times out; the second module shares its result.
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "javadoc"))
+        .andReturn(javadocArtifact);
+    expect(mavenEnvironment.getCurrentProject().getRemoteArtifactRepositories())
+        .andReturn(repositories);
+    expect(policy.resolve(same(mavenEnvironment.getArtifactResolver()), same(javadocArtifact),
+            same(repositories), same(mavenEnvironment.getLocalArtifactRepository()),
+            anyObject(ResolutionMetrics.class)))
+        .andReturn(ResolutionPolicy.Outcome.UNAVAILABLE);
+
+    mavenEnvironment.replay();
+    replay(artifact, javadocArtifact, policy);
+
+    MissingArtifactCache missingArtifactCache
+        = new MissingArtifactCache(TimeUnit.HOURS.toMillis(1));
+    missingArtifactCache.markMissing("foo:foo:1.0", "sources");
+    SessionResolutionCache sessionResolutionCache = new SessionResolutionCache();
+    for (String module : Arrays.asList("a", "b")) {
+      ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(24));
+      ResolutionMetrics metrics = new ResolutionMetrics();
+      ProjectDependencyFactory factory = new ProjectDependencyFactory(
+          mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping());
+      factory.setMissingArtifactCache(missingArtifactCache);
+      factory.setResolutionPolicy(policy);
+      factory.setSessionResolutionCache(sessionResolutionCache);
+      factory.setResolutionState(state);
+      factory.setMetrics(metrics);
+      List<ProjectDependency> dependencies =
+          factory.createFromArtifacts(Arrays.asList(artifact), 1);
+
+      assertNull(module, dependencies.get(0).getJavadocPath());
+      // Neither module remembers the artifact, so both look for the javadoc again next run.
+      assertEquals(module, 1L, metrics.getCount(ResolutionPolicy.UNAVAILABLE));
+      assertNull(module, state.get("foo:foo:1.0:jar"));
+    }
+
+    mavenEnvironment.verify();
+    verify(artifact, javadocArtifact, policy);
+  }
+
+  @Test
+  public void testEvictedStoreEntryIsResolvedAgain()
+      throws AbstractArtifactResolutionException, IOException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    Artifact javadocArtifact = createMock(Artifact.class);
+    File javadocJar = JarFixtures.createJar(mTempDir, "foo-javadoc.jar", "foo");
+
+    expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo.jar")).anyTimes();
+    expect(mavenEnvironment.getCurrentProject().getRemoteArtifactRepositories())
+        .andReturn(null)
+        .anyTimes();
+    mavenEnvironment.getLog().info(anyObject(String.class));
+    expectLastCall().anyTimes();
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+
+    // The javadoc is resolved and unpacked again once its store entry is gone.
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "javadoc"))
+        .andReturn(javadocArtifact)
+        .times(2);
+    mavenEnvironment.getArtifactResolver().resolve(javadocArtifact,
+        null, mavenEnvironment.getLocalArtifactRepository());
+    expectLastCall().times(2);
+    expect(javadocArtifact.getFile()).andReturn(javadocJar).times(2);
+
+    mavenEnvironment.replay();
+    replay(artifact, javadocArtifact);
+
+    MissingArtifactCache missingArtifactCache
+        = new MissingArtifactCache(TimeUnit.HOURS.toMillis(1));
+    missingArtifactCache.markMissing("foo:foo:1.0", "sources");
+    SessionResolutionCache sessionResolutionCache = new SessionResolutionCache();
+    File storeDir = new File(mTempDir, "store");
+    List<String> javadocPaths = new ArrayList<String>();
+    for (int i = 0; i < 2; i++) {
+      ProjectDependencyFactory factory = new ProjectDependencyFactory(
+          mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping());
+      factory.setMissingArtifactCache(missingArtifactCache);
+      factory.setJavadocStore(new JavadocStore(storeDir, 0L));
+      factory.setSessionResolutionCache(sessionResolutionCache);
+      String javadocPath = factory.createFromArtifact(artifact).getJavadocPath();
+      assertTrue(new File(javadocPath, "index.html").isFile());
+      javadocPaths.add(javadocPath);
+
+      // Another project evicts the entry.
+      Files.deleteRecursively(new File(javadocPath));
+    }
+
+    mavenEnvironment.verify();
+    verify(artifact, javadocArtifact);
+    assertEquals(javadocPaths.get(0), javadocPaths.get(1));
+  }
+
+  @Test
+  public void testTransferErrorIsNotRememberedAsMissing()
+      throws AbstractArtifactResolutionException, MojoExecutionException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    Artifact sourceArtifact = createNiceMock(Artifact.class);
+    Artifact javadocArtifact = createNiceMock(Artifact.class);
+    replay(sourceArtifact, javadocArtifact);
+
+    expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getType()).andReturn("jar").anyTimes();
+    expect(artifact.getClassifier()).andReturn(null).anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo.jar")).anyTimes();
+    expect(mavenEnvironment.getCurrentProject().getRemoteArtifactRepositories())
+        .andReturn(null)
+        .anyTimes();
+    mavenEnvironment.getLog().info(anyObject(String.class));
+    expectLastCall().times(2);
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+
+    // No repository has the sources, and the javadoc download fails.
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "sources"))
+        .andReturn(sourceArtifact);
+    mavenEnvironment.getArtifactResolver().resolve(sourceArtifact,
+        null, mavenEnvironment.getLocalArtifactRepository());
+    expectLastCall().andThrow(new ArtifactNotFoundException("missing", sourceArtifact));
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "javadoc"))
+        .andReturn(javadocArtifact);
+    mavenEnvironment.getArtifactResolver().resolve(javadocArtifact,
+        null, mavenEnvironment.getLocalArtifactRepository());
+    expectLastCall().andThrow(new ArtifactResolutionException("transfer failed", javadocArtifact));
+
+    mavenEnvironment.replay();
+    replay(artifact);
+
+    MissingArtifactCache missingArtifactCache
+        = new MissingArtifactCache(TimeUnit.HOURS.toMillis(1));
+    ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(24));
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    ProjectDependencyFactory factory = new ProjectDependencyFactory(
+        mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping());
+    factory.setMissingArtifactCache(missingArtifactCache);
+    factory.setResolutionState(state);
+    factory.setMetrics(metrics);
+    factory.createFromArtifacts(Arrays.asList(artifact), 1);
+
+    mavenEnvironment.verify();
+    verify(artifact);
+    assertTrue(missingArtifactCache.isMissing("foo:foo:1.0", "sources"));
+    // The javadoc may well exist, so the next run tries again.
+    assertFalse(missingArtifactCache.isMissing("foo:foo:1.0", "javadoc"));
+    assertEquals(1L, metrics.getCount(ResolutionPolicy.UNAVAILABLE));
+    assertNull(state.get("foo:foo:1.0:jar"));
+  }
+
+  @Test
+  public void testPrefetch() throws MojoExecutionException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    Artifact sourceArtifact = createMock(Artifact.class);
+    Artifact javadocArtifact = createMock(Artifact.class);
+    BatchArtifactResolver batchResolver = createMock(BatchArtifactResolver.class);
+    File sourcesJar = new File("/to/foo-1.0-sources.jar");
+
+    expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getType()).andReturn("jar").anyTimes();
+    expect(artifact.getClassifier()).andReturn(null).anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo.jar")).anyTimes();
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().times(2);
+    mavenEnvironment.getLog().info("Unable to find javadoc for artifact: " + artifact);
+
+    // Both jars are resolved in one batch; the artifact resolver is never asked.
+    Multimap<Artifact, String> classifiers = LinkedHashMultimap.create();
+    classifiers.put(artifact, "sources");
+    classifiers.put(artifact, "javadoc");
+    Map<String, File> jars = new HashMap<String, File>();
+    jars.put("foo:foo:1.0:sources", sourcesJar);
+    jars.put("foo:foo:1.0:javadoc", null);
+    expect(batchResolver.resolveClassifiers(classifiers)).andReturn(jars);
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "sources"))
+        .andReturn(sourceArtifact);
+    sourceArtifact.setFile(sourcesJar);
+    sourceArtifact.setResolved(true);
+    expect(mavenEnvironment.getArtifactFactory().createArtifactWithClassifier(
+            "foo", "foo", "1.0", "java-source", "javadoc"))
+        .andReturn(javadocArtifact);
+
+    mavenEnvironment.replay();
+    replay(artifact, sourceArtifact, javadocArtifact, batchResolver);
+
+    ProjectDependencyFactory factory = new ProjectDependencyFactory(
+        mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping());
+    factory.setBatchArtifactResolver(batchResolver);
+    // The same artifact reached through two scopes is resolved once.
+    List<ProjectDependency> dependencies =
+        factory.createFromArtifacts(Arrays.asList(artifact, artifact), 1);
+
+    mavenEnvironment.verify();
+    verify(artifact, sourceArtifact, javadocArtifact, batchResolver);
+    assertEquals(1, dependencies.size());
+    assertEquals(sourcesJar.getPath(), dependencies.get(0).getSourcePath());
+    assertNull(dependencies.get(0).getJavadocPath());
+  }
+
+  /**
+   * Creates a mock artifact with a groupId, artifactId, and version.
+   */
+  private static Artifact createArtifact(String groupId, String artifactId, String version) {
+    Artifact artifact = createMock(Artifact.class);
+    expect(artifact.getGroupId()).andReturn(groupId).anyTimes();
+    expect(artifact.getArtifactId()).andReturn(artifactId).anyTimes();
+    expect(artifact.getVersion()).andReturn(version).anyTimes();
+    expect(artifact.getType()).andReturn("jar").anyTimes();
+    expect(artifact.getClassifier()).andReturn(null).anyTimes();
+    replay(artifact);
+    return artifact;
+  }
+
+  @Test
+  public void testCreateFromArtifactsConcurrently() throws MojoExecutionException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact1 = createArtifact("a", "b", "c");
+    Artifact artifact2 = createArtifact("d", "e", "f");
+    Artifact artifact3 = createArtifact("g", "h", "i");
+    ProjectDependencyFactory factory = createMockBuilder(ProjectDependencyFactory.class)
+        .withConstructor(MavenEnvironment.class, File.class, UserPathMapping.class)
+        .withArgs(mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping())
+        .addMockedMethod("createFromArtifact")
+        .createMock();
+
+    mavenEnvironment.getLog().debug("Resolving 3 artifacts with 2 threads.");
+    ProjectDependency dependency1 = new ProjectDependency("a", "b", "c", "x", "y", "z");
+    ProjectDependency dependency3 = new ProjectDependency("g", "h", "i", "u", "v", "w");
+    expect(factory.createFromArtifact(artifact1)).andReturn(dependency1);
+    expect(factory.createFromArtifact(artifact2)).andReturn(null);
+    expect(factory.createFromArtifact(artifact3)).andReturn(dependency3);
+    mavenEnvironment.replay();
+    replay(factory);
+
+    List<ProjectDependency> dependencies =
+        factory.createFromArtifacts(Arrays.asList(artifact1, artifact2, artifact3), 2);
+
+    mavenEnvironment.verify();
+    verify(factory);
+    // The dependencies keep the artifact order.
+    assertEquals(Arrays.asList(dependency1, dependency3), dependencies);
+  }
+
+  @Test
+  public void testResolutionState() throws IOException, MojoExecutionException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    File classesJar = new File(mTempDir, "foo.jar");
+    File sourcesJar = new File(mTempDir, "foo-sources.jar");
+    Files.write(new byte[] {1}, classesJar);
+    Files.write(new byte[] {2}, sourcesJar);
+    Artifact foo = createMock(Artifact.class);
+    expect(foo.getGroupId()).andReturn("foo").anyTimes();
+    expect(foo.getArtifactId()).andReturn("foo").anyTimes();
+    expect(foo.getVersion()).andReturn("1.0").anyTimes();
+    expect(foo.getType()).andReturn("jar").anyTimes();
+    expect(foo.getClassifier()).andReturn(null).anyTimes();
+    expect(foo.getFile()).andReturn(classesJar).anyTimes();
+    Artifact bar = createMock(Artifact.class);
+    expect(bar.getGroupId()).andReturn("bar").anyTimes();
+    expect(bar.getArtifactId()).andReturn("bar").anyTimes();
+    expect(bar.getVersion()).andReturn("2.0").anyTimes();
+    expect(bar.getType()).andReturn("jar").anyTimes();
+    expect(bar.getClassifier()).andReturn(null).anyTimes();
+    expect(bar.getFile()).andReturn(new File(mTempDir, "bar.jar")).anyTimes();
+    replay(foo, bar);
+
+    // The previous run resolved foo.
+    File javadocDir = new File(mTempDir, "javadocs");
+    ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(1));
+    ProjectDependencyFactory factory = createMockBuilder(ProjectDependencyFactory.class)
+        .withConstructor(MavenEnvironment.class, File.class, UserPathMapping.class)
+        .withArgs(mavenEnvironment, javadocDir, new UserPathMapping())
+        .addMockedMethod("createFromArtifact")
+        .createMock();
+    factory.setResolutionState(state);
+    ProjectDependency fooDependency = new ProjectDependency(
+        "foo", "foo", "1.0", sourcesJar.getPath(), classesJar.getPath(), null);
+    expect(factory.createFromArtifact(foo)).andReturn(fooDependency);
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+    mavenEnvironment.replay();
+    replay(factory);
+    factory.createFromArtifacts(Arrays.asList(foo), 1);
+    verify(factory);
+
+    // Only bar, which was added since, is resolved this time.
+    reset(factory);
+    ProjectDependency barDependency = new ProjectDependency(
+        "bar", "bar", "2.0", null, new File(mTempDir, "bar.jar").getPath(), null);
+    expect(factory.createFromArtifact(bar)).andReturn(barDependency);
+    replay(factory);
+    List<ProjectDependency> dependencies = factory.createFromArtifacts(Arrays.asList(bar, foo), 1);
+
+    mavenEnvironment.verify();
+    verify(factory);
+    assertEquals(2, dependencies.size());
+    assertSame(barDependency, dependencies.get(0));
+    assertEquals(sourcesJar.getPath(), dependencies.get(1).getSourcePath());
+    assertEquals(classesJar.getPath(), dependencies.get(1).getClassPath());
+    assertNotNull(state.get("bar:bar:2.0:jar"));
+
+    // Changing the class jar of foo resolves it again.
+    reset(factory);
+    expect(factory.createFromArtifact(foo)).andReturn(fooDependency);
+    replay(factory);
+    assertTrue(classesJar.setLastModified(classesJar.lastModified() - 60000L));
+    factory.createFromArtifacts(Arrays.asList(foo), 1);
+    verify(factory);
+    assertTrue(state.getPendingCleanup().contains("bar:bar:2.0:jar"));
+  }
+
+  @Test
+  public void testClassifierVariants() throws MojoExecutionException {
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    File mainJar = new File(mTempDir, "bar-1.0.jar");
+    File testsJar = new File(mTempDir, "bar-1.0-tests.jar");
+    Artifact main = createMock(Artifact.class);
+    Artifact tests = createMock(Artifact.class);
+    for (Artifact artifact : Arrays.asList(main, tests)) {
+      expect(artifact.getGroupId()).andReturn("foo").anyTimes();
+      expect(artifact.getArtifactId()).andReturn("bar").anyTimes();
+      expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    }
+    expect(main.getType()).andReturn("jar").anyTimes();
+    expect(main.getClassifier()).andReturn(null).anyTimes();
+    expect(main.getFile()).andReturn(mainJar).anyTimes();
+    expect(tests.getType()).andReturn("test-jar").anyTimes();
+    expect(tests.getClassifier()).andReturn("tests").anyTimes();
+    expect(tests.getFile()).andReturn(testsJar).anyTimes();
+    replay(main, tests);
+
+    ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(1));
+    ProjectDependencyFactory factory = createMockBuilder(ProjectDependencyFactory.class)
+        .withConstructor(MavenEnvironment.class, File.class, UserPathMapping.class)
+        .withArgs(mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping())
+        .addMockedMethod("createFromArtifact")
+        .createMock();
+    factory.setResolutionState(state);
+    ProjectDependency mainDependency
+        = new ProjectDependency("foo", "bar", "1.0", null, mainJar.getPath(), null);
+    ProjectDependency testsDependency
+        = new ProjectDependency("foo", "bar", "1.0", null, testsJar.getPath(), null);
+    expect(factory.createFromArtifact(main)).andReturn(mainDependency);
+    expect(factory.createFromArtifact(tests)).andReturn(testsDependency);
+    mavenEnvironment.getLog().debug(anyObject(String.class));
+    expectLastCall().anyTimes();
+    mavenEnvironment.replay();
+    replay(factory);
+
+    // A tests jar of the same version is a separate class path entry, not a duplicate.
+    List<ProjectDependency> dependencies
+        = factory.createFromArtifacts(Arrays.asList(main, tests, main), 1);
+
+    mavenEnvironment.verify();
+    verify(factory);
+    assertEquals(2, dependencies.size());
+    assertEquals(mainJar.getPath(), dependencies.get(0).getClassPath());
+    assertEquals(testsJar.getPath(), dependencies.get(1).getClassPath());
+    assertEquals(mainJar.getPath(), state.get("foo:bar:1.0:jar").getClassPath());
+    assertEquals(testsJar.getPath(), state.get("foo:bar:1.0:test-jar:tests").getClassPath());
+  }
+
+  @Test
+  public void testResolutionFilter() throws MojoExecutionException {
+    // Nothing is looked up for an artifact filtered out, not even in a batch.
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact = createMock(Artifact.class);
+    BatchArtifactResolver batchResolver = createMock(BatchArtifactResolver.class);
+    expect(artifact.getGroupId()).andReturn("com.foo").anyTimes();
+    expect(artifact.getArtifactId()).andReturn("foo-driver").anyTimes();
+    expect(artifact.getVersion()).andReturn("1.0").anyTimes();
+    expect(artifact.getType()).andReturn("jar").anyTimes();
+    expect(artifact.getClassifier()).andReturn(null).anyTimes();
+    expect(artifact.getScope()).andReturn("runtime").anyTimes();
+    expect(artifact.getFile()).andReturn(new File("/to/foo-driver.jar")).anyTimes();
+    mavenEnvironment.replay();
+    replay(artifact, batchResolver);
+
+    ProjectDependencyFactory factory = new ProjectDependencyFactory(
+        mavenEnvironment, new File(mTempDir, "javadocs"), new UserPathMapping());
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    factory.setMetrics(metrics);
+    factory.setBatchArtifactResolver(batchResolver);
+    factory.setResolutionFilter(new ResolutionFilter(Arrays.asList("compile"),
+        Arrays.<String>asList(), Arrays.<String>asList()));
+    List<ProjectDependency> dependencies = factory.createFromArtifacts(Arrays.asList(artifact), 1);
+
+    mavenEnvironment.verify();
+    verify(artifact, batchResolver);
+    assertEquals(1, dependencies.size());
+    assertEquals("/to/foo-driver.jar", dependencies.get(0).getClassPath());
+    assertNull(dependencies.get(0).getSourcePath());
+    assertNull(dependencies.get(0).getJavadocPath());
+    assertEquals(1L, metrics.getCount(ResolutionFilter.FILTERED));
+  }
 }
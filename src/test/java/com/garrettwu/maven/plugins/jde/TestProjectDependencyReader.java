@@ -5,8 +5,11 @@ package com.garrettwu.maven.plugins.jde;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
@@ -34,11 +37,11 @@ public class TestProjectDependencyReader {
         .andReturn(transitiveArtifacts);
     ProjectDependency dependency1 = new ProjectDependency("a", "b", "c", "x", "y", "z");
     ProjectDependency dependency2 = new ProjectDependency("d", "e", "f", "u", "v", "w");
-    expect(projectDependencyFactory.createFromArtifact(artifact1))
-        .andReturn(dependency1)
-        .times(2);
-    expect(projectDependencyFactory.createFromArtifact(artifact2))
-        .andReturn(dependency2);
+    expect(projectDependencyFactory.createFromArtifacts(Arrays.asList(artifact1), 1))
+        .andReturn(Arrays.asList(dependency1));
+    expect(projectDependencyFactory.createFromArtifacts(
+            new ArrayList<Artifact>(transitiveArtifacts), 1))
+        .andReturn(Arrays.asList(dependency1, dependency2));
 
     mavenEnvironment.replay();
     replay(artifact1);
@@ -64,4 +67,40 @@ public class TestProjectDependencyReader {
     assertTrue(transitiveDependencies.contains(dependency1));
     assertTrue(transitiveDependencies.contains(dependency2));
   }
+
+  @Test
+  public void testGetDependenciesConcurrently() throws MojoExecutionException {
+    // Create mocks.
+    MockMavenEnvironment mavenEnvironment = new MockMavenEnvironment();
+    Artifact artifact1 = createMock(Artifact.class);
+    Artifact artifact2 = createMock(Artifact.class);
+    ProjectDependencyFactory projectDependencyFactory = createMock(ProjectDependencyFactory.class);
+
+    // Set mock expectations.
+    Set<Artifact> transitiveArtifacts = new LinkedHashSet<Artifact>();
+    transitiveArtifacts.add(artifact1);
+    transitiveArtifacts.add(artifact2);
+    expect(mavenEnvironment.getCurrentProject().getArtifacts())
+        .andReturn(transitiveArtifacts);
+    ProjectDependency dependency2 = new ProjectDependency("d", "e", "f", "u", "v", "w");
+    expect(projectDependencyFactory.createFromArtifacts(Arrays.asList(artifact1, artifact2), 2))
+        .andReturn(Arrays.asList(dependency2));
+
+    mavenEnvironment.replay();
+    replay(artifact1);
+    replay(artifact2);
+    replay(projectDependencyFactory);
+
+    // Get the dependencies.
+    ProjectDependencyReader dependencyReader
+        = new ProjectDependencyReader(mavenEnvironment, projectDependencyFactory, 2);
+    Collection<ProjectDependency> transitiveDependencies = dependencyReader.getDependencies(true);
+
+    mavenEnvironment.verify();
+    verify(artifact1);
+    verify(artifact2);
+    verify(projectDependencyFactory);
+    assertEquals(Arrays.asList(dependency2),
+        new ArrayList<ProjectDependency>(transitiveDependencies));
+  }
 }
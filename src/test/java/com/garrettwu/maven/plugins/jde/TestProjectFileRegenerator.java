@@ -0,0 +1,64 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class TestProjectFileRegenerator {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  @Test
+  public void testRegenerate() throws IOException {
+    File projectFile = new File(mTempDir, "prj.el");
+    File javadocPathsFile = new File(mTempDir, "javadoc.properties");
+    File snapshotFile = new File(mTempDir, ProjectSnapshot.FILE_NAME);
+    ProjectSnapshot snapshot = new ProjectSnapshot(projectFile, javadocPathsFile,
+        Arrays.asList("src/main/java", "src/test/java"),
+        Arrays.asList("target/classes", "target/test-classes"),
+        Arrays.asList(new ProjectDependency("a", "b", "1.0", "/b-sources.jar", "/b.jar", null)),
+        Arrays.<String>asList());
+    FileOutputStream outputStream = new FileOutputStream(snapshotFile);
+    try {
+      snapshot.write(outputStream);
+    } finally {
+      outputStream.close();
+    }
+
+    // The project file is written from the snapshot alone, and left alone when unchanged.
+    assertTrue(ProjectFileRegenerator.regenerate(snapshotFile, null));
+    String contents = Files.toString(projectFile, Charsets.UTF_8);
+    assertTrue(contents.contains("\"src/main/java\""));
+    assertTrue(contents.contains("\"target/test-classes\""));
+    assertTrue(contents.contains("\"/b-sources.jar\""));
+    assertFalse(contents.contains("http://javadoc/b"));
+    assertFalse(ProjectFileRegenerator.regenerate(snapshotFile, null));
+
+    // A new javadoc mapping is picked up without resolving anything.
+    Files.write("a\\:b\\:1.0=http\\://javadoc/b\n", javadocPathsFile, Charsets.UTF_8);
+    assertTrue(ProjectFileRegenerator.regenerate(snapshotFile, null));
+    assertTrue(Files.toString(projectFile, Charsets.UTF_8).contains("\"http://javadoc/b\""));
+  }
+}
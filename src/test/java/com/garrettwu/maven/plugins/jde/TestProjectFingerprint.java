@@ -0,0 +1,57 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class TestProjectFingerprint {
+  /** A temporary directory to store test files. */
+  private File mTempDir;
+
+  @Before
+  public void setup() throws IOException {
+    mTempDir = Files.createTempDir();
+  }
+
+  @After
+  public void teardown() throws IOException {
+    Files.deleteRecursively(mTempDir);
+  }
+
+  @Test
+  public void testFingerprint() throws IOException {
+    File file = new File(mTempDir, "javadoc.properties");
+    String absent = new ProjectFingerprint().add("a", "b").addFile("f", file).toHex();
+    Files.write("x = y\n", file, Charsets.UTF_8);
+    String present = new ProjectFingerprint().add("a", "b").addFile("f", file).toHex();
+
+    assertEquals(40, present.length());
+    assertFalse(absent.equals(present));
+    assertEquals(present, new ProjectFingerprint().add("a", "b").addFile("f", file).toHex());
+    assertFalse(present.equals(
+        new ProjectFingerprint().add("a", "c").addFile("f", file).toHex()));
+    // Keys and values can't run together.
+    assertFalse(new ProjectFingerprint().add("ab", "c").toHex().equals(
+        new ProjectFingerprint().add("a", "bc").toHex()));
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    File fingerprintFile = new File(mTempDir, "sub/prj.el.fingerprint");
+    assertNull(ProjectFingerprint.read(fingerprintFile));
+
+    String fingerprint = new ProjectFingerprint().add("a", "b").toHex();
+    ProjectFingerprint.write(fingerprint, fingerprintFile);
+    assertEquals(fingerprint, ProjectFingerprint.read(fingerprintFile));
+  }
+}
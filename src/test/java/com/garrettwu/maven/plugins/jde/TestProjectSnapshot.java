@@ -0,0 +1,83 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestProjectSnapshot {
+  /**
+   * Creates a snapshot of two dependencies, the second with javadoc mapped by the user.
+   */
+  private static ProjectSnapshot createSnapshot() {
+    return new ProjectSnapshot(new File("/p/prj.el"), new File("/home/javadoc.properties"),
+        Arrays.asList("/p/src/main/java", "/p/src/test/java"),
+        Arrays.asList("/p/target/classes", "/p/target/test-classes"),
+        Arrays.asList(
+            new ProjectDependency("b", "b", "1.0", null, "/b.jar", "/javadoc/b"),
+            new ProjectDependency("a", "a", "2.0", "/a-sources.jar", "/a.jar", "http://a/")),
+        Arrays.asList("a:a:2.0"));
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    createSnapshot().write(output);
+    ProjectSnapshot snapshot = ProjectSnapshot.read(new ByteArrayInputStream(output.toByteArray()));
+
+    assertEquals(new File("/p/prj.el"), snapshot.getProjectFile());
+    assertEquals(new File("/home/javadoc.properties"), snapshot.getJavadocPathsFile());
+    assertEquals(Arrays.asList("/p/src/main/java", "/p/src/test/java"),
+        snapshot.getSourceDirectories());
+    assertEquals(Arrays.asList("/p/target/classes", "/p/target/test-classes"),
+        snapshot.getOutputDirectories());
+    List<ProjectDependency> dependencies = snapshot.getDependencies();
+    assertEquals(2, dependencies.size());
+    // The dependencies keep their order.
+    assertEquals("b", dependencies.get(0).getArtifactId());
+    assertNull(dependencies.get(0).getSourcePath());
+    assertEquals("/b.jar", dependencies.get(0).getClassPath());
+    assertEquals("/javadoc/b", dependencies.get(0).getJavadocPath());
+    assertEquals("a", dependencies.get(1).getArtifactId());
+    assertEquals("/a-sources.jar", dependencies.get(1).getSourcePath());
+  }
+
+  @Test
+  public void testGetDependenciesAppliesMapping() throws IOException {
+    ProjectSnapshot snapshot = createSnapshot();
+
+    UserPathMapping mapping = new UserPathMapping();
+    mapping.load(new ByteArrayInputStream("b\\:b\\:1.0=http\\://b/".getBytes("UTF-8")));
+    List<ProjectDependency> dependencies = snapshot.getDependencies(mapping);
+    assertEquals("http://b/", dependencies.get(0).getJavadocPath());
+    // The mapping of a was removed, so its javadoc is left out.
+    assertNull(dependencies.get(1).getJavadocPath());
+    assertEquals("/a.jar", dependencies.get(1).getClassPath());
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadUnknownVersion() throws IOException {
+    ProjectSnapshot.read(new ByteArrayInputStream("version=99\n".getBytes("UTF-8")));
+  }
+
+  @Test
+  public void testEmptySnapshot() throws IOException {
+    ProjectSnapshot snapshot = new ProjectSnapshot(new File("prj.el"), null,
+        Collections.<String>emptyList(), Collections.<String>emptyList(),
+        Collections.<ProjectDependency>emptyList(), Collections.<String>emptyList());
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    snapshot.write(output);
+    ProjectSnapshot read = ProjectSnapshot.read(new ByteArrayInputStream(output.toByteArray()));
+    assertNull(read.getJavadocPathsFile());
+    assertTrue(read.getDependencies().isEmpty());
+  }
+}
@@ -0,0 +1,32 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class TestPropertiesFiles {
+  @Test
+  public void testStore() throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("b", "two words");
+    properties.setProperty("a", "C:\\path=x\nnext");
+    properties.setProperty("#c", "");
+
+    ByteArrayOutputStream first = new ByteArrayOutputStream();
+    PropertiesFiles.store(properties, first, "Test properties");
+    // No date comment, and the entries are sorted.
+    assertEquals("#Test properties\n\\#c=\na=C\\:\\\\path\\=x\\nnext\nb=two words\n",
+        first.toString("ISO-8859-1"));
+
+    Properties read = new Properties();
+    read.load(new ByteArrayInputStream(first.toByteArray()));
+    assertEquals(properties, read);
+  }
+}
@@ -0,0 +1,55 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestResolutionFilter {
+  /** No scopes, includes, or excludes. */
+  private static final List<String> NONE = Collections.emptyList();
+
+  @Test
+  public void testEmpty() {
+    ResolutionFilter filter = new ResolutionFilter(NONE, NONE, NONE);
+    assertTrue(filter.isEmpty());
+    assertTrue(filter.isResolved("runtime", "com.foo", "foo"));
+  }
+
+  @Test
+  public void testScopes() {
+    ResolutionFilter filter
+        = new ResolutionFilter(Arrays.asList("compile", "provided"), NONE, NONE);
+    assertFalse(filter.isEmpty());
+    assertTrue(filter.isResolved("compile", "com.foo", "foo"));
+    assertTrue(filter.isResolved("provided", "com.foo", "foo"));
+    // Artifacts without a scope are in the compile scope.
+    assertTrue(filter.isResolved(null, "com.foo", "foo"));
+    assertFalse(filter.isResolved("runtime", "com.foo", "foo"));
+    assertFalse(filter.isResolved("test", "com.foo", "foo"));
+  }
+
+  @Test
+  public void testIncludesAndExcludes() {
+    ResolutionFilter filter = new ResolutionFilter(NONE,
+        Arrays.asList("com.foo", "org.*:bar-?"), Arrays.asList("com.foo:*-driver"));
+    assertTrue(filter.isResolved("compile", "com.foo", "foo"));
+    assertFalse(filter.isResolved("compile", "com.foo", "mysql-driver"));
+    assertTrue(filter.isResolved("compile", "org.bar", "bar-1"));
+    assertFalse(filter.isResolved("compile", "org.bar", "bar-10"));
+    assertFalse(filter.isResolved("compile", "com.foobar", "foo"));
+    // Dots are literal, and wildcards do not cross the colon.
+    assertFalse(filter.isResolved("compile", "comxfoo", "foo"));
+    assertFalse(filter.isResolved("compile", "org.a:b", "bar-1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMalformedPattern() {
+    new ResolutionFilter(NONE, Arrays.asList("a:b:c"), NONE);
+  }
+}
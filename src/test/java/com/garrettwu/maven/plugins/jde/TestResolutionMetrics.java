@@ -0,0 +1,55 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class TestResolutionMetrics {
+  @Test
+  public void testCounters() {
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    assertEquals(0L, metrics.getCount(ResolutionMetrics.BYTES_UNPACKED));
+
+    metrics.count(ResolutionMetrics.BYTES_UNPACKED, 100L);
+    metrics.count(ResolutionMetrics.BYTES_UNPACKED, 23L);
+    metrics.countCacheLookup("missing-cache", true);
+    metrics.countCacheLookup("missing-cache", false);
+    metrics.countCacheLookup("missing-cache", false);
+
+    assertEquals(123L, metrics.getCount(ResolutionMetrics.BYTES_UNPACKED));
+    assertEquals(1L, metrics.getCount("missing-cache-hits"));
+    assertEquals(2L, metrics.getCount("missing-cache-misses"));
+  }
+
+  @Test
+  public void testRecordPhase() {
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    metrics.recordPhase("resolve", System.nanoTime() - 1000L);
+    metrics.recordPhase("resolve", System.nanoTime() - 1000L);
+
+    assertTrue(metrics.getPhaseNanos("resolve") >= 2000L);
+    assertEquals(0L, metrics.getPhaseNanos("write"));
+  }
+
+  @Test
+  public void testWriteJson() throws IOException {
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    metrics.recordPhase("resolve", System.nanoTime());
+    metrics.recordArtifact("foo:bar:1.0", "sources", System.nanoTime());
+    metrics.count(ResolutionMetrics.RESOLVER_FAILURES, 2L);
+
+    StringWriter json = new StringWriter();
+    metrics.writeJson(json);
+
+    String output = json.toString();
+    assertTrue(output, output.startsWith("{\n  \"phases\": {\n    \"resolve\": "));
+    assertTrue(output, output.contains("\"counters\": {\n    \"resolver-failures\": 2\n  }"));
+    assertTrue(output, output.contains("\"artifacts\": {\n    \"foo:bar:1.0\": { \"sources\": "));
+    assertTrue(output, output.endsWith("}\n  }\n}\n"));
+  }
+}
@@ -0,0 +1,148 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.logging.Log;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+public class TestResolutionPolicy {
+  /**
+   * Creates a mock remote repository with an id.
+   */
+  private static ArtifactRepository createRepository(String id) {
+    ArtifactRepository repository = createMock(ArtifactRepository.class);
+    expect(repository.getId()).andReturn(id).anyTimes();
+    replay(repository);
+    return repository;
+  }
+
+  @Test
+  public void testFoundInSecondRepository() throws Exception {
+    Artifact artifact = createNiceMock(Artifact.class);
+    ArtifactRepository localRepository = createNiceMock(ArtifactRepository.class);
+    replay(artifact, localRepository);
+    ArtifactRepository first = createRepository("first");
+    ArtifactRepository second = createRepository("second");
+    ArtifactResolver resolver = createMock(ArtifactResolver.class);
+    resolver.resolve(artifact, Collections.singletonList(first), localRepository);
+    expectLastCall().andThrow(new ArtifactNotFoundException("missing", artifact));
+    resolver.resolve(artifact, Collections.singletonList(second), localRepository);
+    replay(resolver);
+
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    ResolutionPolicy policy = new ResolutionPolicy(createNiceMock(Log.class), 0L, 0L, 2, 0L, 1);
+    assertEquals(ResolutionPolicy.Outcome.FOUND, policy.resolve(
+        resolver, artifact, Arrays.asList(first, second), localRepository, metrics));
+
+    verify(resolver);
+    // Not finding a jar is no failure of the repository.
+    assertFalse(policy.isTripped("first"));
+    assertEquals(0L, metrics.getCount(ResolutionPolicy.RETRIES));
+  }
+
+  @Test
+  public void testRetryThenTrip() throws Exception {
+    Artifact artifact = createNiceMock(Artifact.class);
+    ArtifactRepository localRepository = createNiceMock(ArtifactRepository.class);
+    replay(artifact, localRepository);
+    ArtifactRepository flaky = createRepository("flaky");
+    List<ArtifactRepository> repositories = Collections.singletonList(flaky);
+    ArtifactResolver resolver = createMock(ArtifactResolver.class);
+    resolver.resolve(artifact, repositories, localRepository);
+    expectLastCall().andThrow(new ArtifactResolutionException("transfer failed", artifact))
+        .times(3);
+    replay(resolver);
+
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    ResolutionPolicy policy = new ResolutionPolicy(createNiceMock(Log.class), 0L, 0L, 4, 1L, 3);
+    assertEquals(ResolutionPolicy.Outcome.UNAVAILABLE,
+        policy.resolve(resolver, artifact, repositories, localRepository, metrics));
+    assertTrue(policy.isTripped("flaky"));
+
+    // The repository is not queried again.
+    assertEquals(ResolutionPolicy.Outcome.UNAVAILABLE,
+        policy.resolve(resolver, artifact, repositories, localRepository, metrics));
+    verify(resolver);
+    assertEquals(2L, metrics.getCount(ResolutionPolicy.RETRIES));
+    assertEquals(2L, metrics.getCount(ResolutionPolicy.BREAKER_SKIPS));
+  }
+
+  @Test
+  public void testHungRepositoryTimesOut() throws Exception {
+    Artifact artifact = createNiceMock(Artifact.class);
+    ArtifactRepository localRepository = createNiceMock(ArtifactRepository.class);
+    replay(artifact, localRepository);
+    ArtifactRepository hung = createRepository("hung");
+    List<ArtifactRepository> repositories = Collections.singletonList(hung);
+    ArtifactResolver resolver = createMock(ArtifactResolver.class);
+    resolver.resolve(artifact, repositories, localRepository);
+    expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws InterruptedException {
+        Thread.sleep(10000L);
+        return null;
+      }
+    });
+    replay(resolver);
+
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    ResolutionPolicy policy = new ResolutionPolicy(createNiceMock(Log.class), 50L, 0L, 0, 0L, 1);
+    long startMillis = System.currentTimeMillis();
+    assertEquals(ResolutionPolicy.Outcome.UNAVAILABLE,
+        policy.resolve(resolver, artifact, repositories, localRepository, metrics));
+    policy.shutdown();
+
+    assertTrue(System.currentTimeMillis() - startMillis < 5000L);
+    assertEquals(1L, metrics.getCount(ResolutionPolicy.TIMEOUTS));
+    assertTrue(policy.isTripped("hung"));
+  }
+
+  @Test
+  public void testTimedOutJarIsNotRetried() throws Exception {
+    Artifact artifact = createNiceMock(Artifact.class);
+    ArtifactRepository localRepository = createNiceMock(ArtifactRepository.class);
+    replay(artifact, localRepository);
+    ArtifactRepository hung = createRepository("hung");
+    ArtifactRepository other = createRepository("other");
+    final AtomicInteger attempts = new AtomicInteger();
+    IAnswer<Object> hang = new IAnswer<Object>() {
+      @Override
+      public Object answer() throws InterruptedException {
+        attempts.incrementAndGet();
+        Thread.sleep(10000L);
+        return null;
+      }
+    };
+    ArtifactResolver resolver = createMock(ArtifactResolver.class);
+    resolver.resolve(artifact, Collections.singletonList(hung), localRepository);
+    expectLastCall().andAnswer(hang).anyTimes();
+    resolver.resolve(artifact, Collections.singletonList(other), localRepository);
+    expectLastCall().andAnswer(hang).anyTimes();
+    replay(resolver);
+
+    // The abandoned attempt may still be downloading the jar, so nothing else is tried.
+    ResolutionMetrics metrics = new ResolutionMetrics();
+    ResolutionPolicy policy = new ResolutionPolicy(createNiceMock(Log.class), 50L, 0L, 2, 0L, 0);
+    assertEquals(ResolutionPolicy.Outcome.UNAVAILABLE, policy.resolve(resolver, artifact,
+        Arrays.asList(hung, other), localRepository, metrics));
+    policy.shutdown();
+
+    assertEquals(1, attempts.get());
+    assertEquals(1L, metrics.getCount(ResolutionPolicy.TIMEOUTS));
+    assertEquals(0L, metrics.getCount(ResolutionPolicy.RETRIES));
+  }
+}
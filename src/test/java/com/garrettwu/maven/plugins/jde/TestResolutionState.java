@@ -0,0 +1,93 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestResolutionState {
+  @Test
+  public void testPutAndGet() {
+    ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(1));
+    assertNull(state.get("foo:bar:1.0"));
+    assertFalse(state.isModified());
+
+    state.put("foo:bar:1.0",
+        new ProjectDependency("foo", "bar", "1.0", "/bar-sources.jar", "/bar.jar", null), 42L);
+    assertTrue(state.isModified());
+    ResolutionState.Entry entry = state.get("foo:bar:1.0");
+    assertEquals("/bar.jar", entry.getClassPath());
+    assertEquals("/bar-sources.jar", entry.getSourcePath());
+    assertNull(entry.getJavadocPath());
+    assertEquals(42L, entry.getClassLastModified());
+  }
+
+  @Test
+  public void testMissingJarsExpire() {
+    // Without a time-to-live, entries missing sources or javadoc are always resolved again.
+    ResolutionState state = new ResolutionState(0L);
+    state.put("foo:bar:1.0",
+        new ProjectDependency("foo", "bar", "1.0", null, "/bar.jar", "/javadoc/bar"), 1L);
+    state.put("foo:baz:1.0",
+        new ProjectDependency("foo", "baz", "1.0", "/baz-sources.jar", "/baz.jar", "/baz"), 1L);
+    assertNull(state.get("foo:bar:1.0"));
+    assertNotNull(state.get("foo:baz:1.0"));
+  }
+
+  @Test
+  public void testStoreAndLoad() throws IOException {
+    ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(1));
+    state.setSettings("abc");
+    state.put("foo:bar:1.0",
+        new ProjectDependency("foo", "bar", "1.0", "/bar-sources.jar", "/bar.jar", null), 42L);
+    state.put("foo:baz:1.0",
+        new ProjectDependency("foo", "baz", "1.0", null, "/baz.jar", "jar:file:/b.jar!/"), 7L);
+    state.retain(Arrays.asList("foo:bar:1.0"));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    state.store(output);
+    assertFalse(state.isModified());
+
+    ResolutionState loaded = new ResolutionState(TimeUnit.HOURS.toMillis(1));
+    loaded.load(new ByteArrayInputStream(output.toByteArray()));
+    assertFalse(loaded.isModified());
+    assertEquals("/bar.jar", loaded.get("foo:bar:1.0").getClassPath());
+    assertEquals(42L, loaded.get("foo:bar:1.0").getClassLastModified());
+    assertNull(loaded.get("foo:baz:1.0"));
+    assertEquals(Arrays.asList("foo:baz:1.0"),
+        Arrays.asList(loaded.getPendingCleanup().toArray()));
+
+    // The same settings keep the entries; different settings drop them.
+    loaded.setSettings("abc");
+    assertFalse(loaded.isModified());
+    assertNotNull(loaded.get("foo:bar:1.0"));
+    loaded.setSettings("def");
+    assertTrue(loaded.isModified());
+    assertNull(loaded.get("foo:bar:1.0"));
+  }
+
+  @Test
+  public void testRetainQueuesCleanup() {
+    ResolutionState state = new ResolutionState(TimeUnit.HOURS.toMillis(1));
+    ProjectDependency bar
+        = new ProjectDependency("foo", "bar", "1.0", "/bar-sources.jar", "/bar.jar", "/bar");
+    state.put("foo:bar:1.0", bar, 1L);
+    state.retain(Arrays.asList("foo:baz:1.0"));
+    assertNull(state.get("foo:bar:1.0"));
+    assertTrue(state.getPendingCleanup().contains("foo:bar:1.0"));
+
+    // An artifact that comes back is no longer cleaned up.
+    state.put("foo:bar:1.0", bar, 1L);
+    assertTrue(state.getPendingCleanup().isEmpty());
+
+    state.retain(Arrays.asList("foo:baz:1.0"));
+    state.removePendingCleanup("foo:bar:1.0");
+    assertTrue(state.getPendingCleanup().isEmpty());
+  }
+}
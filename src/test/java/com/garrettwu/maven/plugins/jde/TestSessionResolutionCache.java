@@ -0,0 +1,115 @@
+// (c) Copyright 2011 Garrett Wu
+
+package com.garrettwu.maven.plugins.jde;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.MavenSession;
+import org.junit.Test;
+
+public class TestSessionResolutionCache {
+  @Test
+  public void testForSession() {
+    Object session1 = new Object();
+    Object session2 = new Object();
+    SessionResolutionCache cache = SessionResolutionCache.forSession(session1);
+    assertSame(cache, SessionResolutionCache.forSession(session1));
+    assertNotSame(cache, SessionResolutionCache.forSession(session2));
+  }
+
+  @Test
+  public void testForClonedSession() {
+    // A parallel build gives each module its own clone of the session.
+    Date startTime = new Date();
+    MavenSession session = createMock(MavenSession.class);
+    MavenSession clone = createMock(MavenSession.class);
+    MavenSession other = createMock(MavenSession.class);
+    expect(session.getStartTime()).andReturn(startTime);
+    expect(clone.getStartTime()).andReturn(startTime);
+    expect(other.getStartTime()).andReturn(new Date(startTime.getTime() - 1000L));
+    replay(session, clone, other);
+
+    SessionResolutionCache cache = SessionResolutionCache.forSession(session);
+    assertSame(cache, SessionResolutionCache.forSession(clone));
+    assertNotSame(cache, SessionResolutionCache.forSession(other));
+    verify(session, clone, other);
+  }
+
+  @Test
+  public void testGet() {
+    final AtomicInteger calls = new AtomicInteger();
+    final SessionResolutionCache.Entry entry = new SessionResolutionCache.Entry(
+        new ProjectDependency("a", "b", "c", "x", "y", "z"), Collections.<String>emptyList());
+    Callable<SessionResolutionCache.Entry> resolver
+        = new Callable<SessionResolutionCache.Entry>() {
+      @Override
+      public SessionResolutionCache.Entry call() {
+        calls.incrementAndGet();
+        return entry;
+      }
+    };
+
+    SessionResolutionCache cache = new SessionResolutionCache();
+    assertSame(entry, cache.get("a:b:c", resolver));
+    assertSame(entry, cache.get("a:b:c", resolver));
+    assertTrue(entry.isComplete());
+    assertEquals(1, calls.get());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testFailureIsNotCached() {
+    SessionResolutionCache cache = new SessionResolutionCache();
+    try {
+      cache.get("a:b:c", new Callable<SessionResolutionCache.Entry>() {
+        @Override
+        public SessionResolutionCache.Entry call() {
+          throw new IllegalStateException("boom");
+        }
+      });
+      fail("Expected the resolver's exception");
+    } catch (IllegalStateException e) {
+      assertEquals("boom", e.getMessage());
+    }
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testRemoveIncomplete() {
+    final SessionResolutionCache.Entry complete = new SessionResolutionCache.Entry(
+        new ProjectDependency("a", "b", "c", "x", "y", "z"), Collections.<String>emptyList());
+    final SessionResolutionCache.Entry incomplete = new SessionResolutionCache.Entry(
+        new ProjectDependency("d", "e", "f", null, "y", null),
+        Collections.singletonList(ResolutionPolicy.UNAVAILABLE));
+    SessionResolutionCache cache = new SessionResolutionCache();
+    cache.get("a:b:c", new Callable<SessionResolutionCache.Entry>() {
+      @Override
+      public SessionResolutionCache.Entry call() {
+        return complete;
+      }
+    });
+    cache.get("d:e:f", new Callable<SessionResolutionCache.Entry>() {
+      @Override
+      public SessionResolutionCache.Entry call() {
+        return incomplete;
+      }
+    });
+    assertFalse(incomplete.isComplete());
+
+    assertEquals(1, cache.removeIncomplete());
+    assertTrue(cache.contains("a:b:c"));
+    assertFalse(cache.contains("d:e:f"));
+
+    // Only the given entry is removed.
+    cache.remove("a:b:c", incomplete);
+    assertTrue(cache.contains("a:b:c"));
+    cache.remove("a:b:c", complete);
+    assertFalse(cache.contains("a:b:c"));
+  }
+}